@@ -14,6 +14,7 @@ import org.zeromq.ZMQ.Poller;
 import org.zeromq.ZMQ.Socket;
 
 import zmq.util.Draft;
+import zmq.util.ThreadAffinity;
 import zmq.util.function.BiFunction;
 
 /**
@@ -427,6 +428,26 @@ public class ZContext implements Closeable
         return context.getThreadFactory();
     }
 
+    /**
+     * Used to pin the I/O and reaper threads to CPUs, each of them calling the hook when it starts.
+     *
+     * @param threadAffinity the hook called by the threads of {@link zmq.poll.Poller}, or null to not pin them
+     * @throws IllegalStateException If context was already initialized by the creation of a socket
+     * @see zmq.util.ThreadAffinity#sched(java.util.BitSet)
+     */
+    public void setThreadAffinity(ThreadAffinity threadAffinity)
+    {
+        context.setThreadAffinity(threadAffinity);
+    }
+
+    /**
+     * @return the current thread affinity hook
+     */
+    public ThreadAffinity getThreadAffinity()
+    {
+        return context.getThreadAffinity();
+    }
+
     /**
      * @return the main
      */
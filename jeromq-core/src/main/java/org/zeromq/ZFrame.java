@@ -403,6 +403,7 @@ public class ZFrame
         }
         ZFrame frame = new ZFrame(msg);
         frame.setGroup(msg.getGroup());
+        msg.release();
         return frame;
     }
 
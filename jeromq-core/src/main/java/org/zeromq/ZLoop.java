@@ -102,14 +102,23 @@ public class ZLoop
 
     private void rebuild()
     {
-        pollact = null;
-
-        pollSize = pollers.size();
-        if (pollset != null) {
-            pollset.close();
+        //  The poll set is kept, only the items of the pollers are registered again.
+        if (pollset == null) {
+            pollset = context.poller(pollers.size());
+            assert (pollset != null);
         }
-        pollset = context.poller(pollSize);
-        assert (pollset != null);
+        else {
+            for (int itemNbr = 0; itemNbr < pollSize; itemNbr++) {
+                PollItem item = pollact[itemNbr].item;
+                if (item.getSocket() != null) {
+                    pollset.unregister(item.getSocket());
+                }
+                else {
+                    pollset.unregister(item.getRawSocket());
+                }
+            }
+        }
+        pollSize = pollers.size();
 
         pollact = new SPoller[pollSize];
 
@@ -19,6 +19,7 @@ import zmq.Ctx;
 import zmq.Msg;
 import zmq.Options;
 import zmq.SocketBase;
+import zmq.WaitStrategy;
 import zmq.ZError;
 import zmq.ZError.CtxTerminatedException;
 import zmq.io.coder.IDecoder;
@@ -26,6 +27,7 @@ import zmq.io.coder.IEncoder;
 import zmq.io.mechanism.Mechanisms;
 import zmq.io.net.SelectorProviderChooser;
 import zmq.msg.MsgAllocator;
+import zmq.pipe.ConflateKey;
 import zmq.util.Draft;
 import zmq.util.Z85;
 import zmq.util.function.BiFunction;
@@ -629,6 +631,72 @@ public class ZMQ
             return ctx.set(zmq.ZMQ.ZMQ_MAX_SOCKETS, maxSockets);
         }
 
+        /**
+         * The interval, in milliseconds, between the attempts of an I/O thread to migrate
+         * one of its busy connections to a less loaded I/O thread. 0 if disabled, the default.
+         */
+        public int getIORebalanceInterval()
+        {
+            return ctx.get(zmq.ZMQ.ZMQ_IO_REBALANCE_IVL);
+        }
+
+        /**
+         * Sets the interval, in milliseconds, between the attempts of an I/O thread to migrate
+         * one of its busy connections to a less loaded I/O thread. 0 disables it.
+         * @throws IllegalStateException If context was already initialized by the creation of a socket
+         */
+        public boolean setIORebalanceInterval(int ivl)
+        {
+            return ctx.set(zmq.ZMQ.ZMQ_IO_REBALANCE_IVL, ivl);
+        }
+
+        /**
+         * The load of each I/O thread: its number of file descriptors, and the messages and bytes
+         * transferred by its connections during the last second.
+         */
+        public List<zmq.io.IOThread.Load> getIOThreadLoads()
+        {
+            return ctx.getIoThreadLoads();
+        }
+
+        /**
+         * The time, in microseconds, an idle I/O thread keeps polling its connections without blocking.
+         * 0 if it always blocks, the default, -1 if it never blocks.
+         */
+        public int getIOBusyPoll()
+        {
+            return ctx.get(zmq.ZMQ.ZMQ_IO_BUSY_POLL);
+        }
+
+        /**
+         * Sets the time, in microseconds, an idle I/O thread keeps polling its connections without blocking,
+         * trading CPU for latency. 0 to always block, -1 to never block.
+         * @throws IllegalStateException If context was already initialized by the creation of a socket
+         */
+        public boolean setIOBusyPoll(int busyPoll)
+        {
+            return ctx.set(zmq.ZMQ.ZMQ_IO_BUSY_POLL, busyPoll);
+        }
+
+        /**
+         * True if the I/O is run by the application threads instead of an I/O thread.
+         */
+        public boolean isIOInline()
+        {
+            return ctx.get(zmq.ZMQ.ZMQ_IO_INLINE) != 0;
+        }
+
+        /**
+         * Sets whether the I/O is run by the application threads, while they wait in the calls on the sockets,
+         * instead of an I/O thread, saving the hand-offs between the threads. The connections only make progress
+         * while a thread sends, receives, polls or terminates the context.
+         * @throws IllegalStateException If context was already initialized by the creation of a socket
+         */
+        public boolean setIOInline(boolean inline)
+        {
+            return ctx.set(zmq.ZMQ.ZMQ_IO_INLINE, inline ? 1 : 0);
+        }
+
         /**
          * @deprecated use {@link #isBlocky()} instead
          */
@@ -723,6 +791,26 @@ public class ZMQ
             return ctx.getThreadFactory();
         }
 
+        /**
+         * Used to pin the I/O and reaper threads to CPUs, each of them calling the hook when it starts.
+         *
+         * @param threadAffinity the hook called by the threads of {@link zmq.poll.Poller}, or null to not pin them
+         * @throws IllegalStateException If context was already initialized by the creation of a socket
+         * @see zmq.util.ThreadAffinity#sched(java.util.BitSet)
+         */
+        public void setThreadAffinity(zmq.util.ThreadAffinity threadAffinity)
+        {
+            ctx.setThreadAffinity(threadAffinity);
+        }
+
+        /**
+         * @return the current thread affinity hook
+         */
+        public zmq.util.ThreadAffinity getThreadAffinity()
+        {
+            return ctx.getThreadAffinity();
+        }
+
         /**
          * This is an explicit "destructor". It can be called to ensure the corresponding 0MQ
          * Context has been disposed of.
@@ -1575,6 +1663,117 @@ public class ZMQ
             return setSocketOpt(zmq.ZMQ.ZMQ_RCVHWM, value);
         }
 
+        /**
+         * The ZMQ_SNDHWM_BYTES option shall return the high water mark in bytes for outbound messages on the specified socket.
+         *
+         * @return the high water mark in bytes, or zero if unlimited.
+         * @see #setSndHWMBytes(long)
+         */
+        public long getSndHWMBytes()
+        {
+            return (Long) base.getSocketOptx(zmq.ZMQ.ZMQ_SNDHWM_BYTES);
+        }
+
+        /**
+         * The ZMQ_SNDHWM_BYTES option shall set the high water mark in bytes for outbound messages on the specified socket.
+         * This is a limit on the total size of the outstanding messages ØMQ shall queue in memory
+         * for any single peer that the specified socket is communicating with.
+         * It is enforced together with ZMQ_SNDHWM: the socket enters the exceptional state when either limit is reached.
+         * The limit is checked before each message, so a single message larger than the limit is still accepted.
+         * A value of zero means no limit.
+         *
+         * @param value the high water mark in bytes.
+         * @return true if the option was set, otherwise false.
+         * @see #getSndHWMBytes()
+         */
+        public boolean setSndHWMBytes(long value)
+        {
+            return setSocketOpt(zmq.ZMQ.ZMQ_SNDHWM_BYTES, value);
+        }
+
+        /**
+         * The ZMQ_RCVHWM_BYTES option shall return the high water mark in bytes for inbound messages on the specified socket.
+         *
+         * @return the high water mark in bytes, or zero if unlimited.
+         * @see #setRcvHWMBytes(long)
+         */
+        public long getRcvHWMBytes()
+        {
+            return (Long) base.getSocketOptx(zmq.ZMQ.ZMQ_RCVHWM_BYTES);
+        }
+
+        /**
+         * The ZMQ_RCVHWM_BYTES option shall set the high water mark in bytes for inbound messages on the specified socket.
+         * This is a limit on the total size of the outstanding messages ØMQ shall queue in memory
+         * for any single peer that the specified socket is communicating with.
+         * It is enforced together with ZMQ_RCVHWM: the socket enters the exceptional state when either limit is reached.
+         * A value of zero means no limit.
+         *
+         * @param value the high water mark in bytes.
+         * @return true if the option was set, otherwise false.
+         * @see #getRcvHWMBytes()
+         */
+        public boolean setRcvHWMBytes(long value)
+        {
+            return setSocketOpt(zmq.ZMQ.ZMQ_RCVHWM_BYTES, value);
+        }
+
+        /**
+         * The ZMQ_OVERFLOW_DIR option shall return the directory where the outbound messages beyond the high water marks are stored.
+         *
+         * @return the overflow directory, or null if the messages are not stored.
+         * @see #setOverflowDir(String)
+         */
+        public String getOverflowDir()
+        {
+            return (String) base.getSocketOptx(zmq.ZMQ.ZMQ_OVERFLOW_DIR);
+        }
+
+        /**
+         * The ZMQ_OVERFLOW_DIR option shall set the directory where the outbound messages beyond the high water marks are stored.
+         * When set together with ZMQ_OVERFLOW_SIZE, instead of blocking or dropping the messages once a high water mark is reached,
+         * the socket stores them in a memory-mapped file per peer, from which the peer reads them in order when it catches up.
+         * The files are deleted when the connections with the peers are closed, with the messages not read yet.
+         * <p>
+         * The option applies to the connections established after it is set.
+         *
+         * @param value the directory of the overflow files, or null to disable the storage.
+         * @return true if the option was set, otherwise false.
+         * @see #getOverflowDir()
+         * @see #setOverflowSize(long)
+         */
+        public boolean setOverflowDir(String value)
+        {
+            return setSocketOpt(zmq.ZMQ.ZMQ_OVERFLOW_DIR, value);
+        }
+
+        /**
+         * The ZMQ_OVERFLOW_SIZE option shall return the maximal size in bytes of each overflow file.
+         *
+         * @return the maximal size of an overflow file, or zero if the messages are not stored.
+         * @see #setOverflowSize(long)
+         */
+        public long getOverflowSize()
+        {
+            return (Long) base.getSocketOptx(zmq.ZMQ.ZMQ_OVERFLOW_SIZE);
+        }
+
+        /**
+         * The ZMQ_OVERFLOW_SIZE option shall set the maximal size in bytes of each overflow file.
+         * The size is checked before each message, so a multi-part message is always stored entirely.
+         * Once the file is full, the socket enters the exceptional state of the high water marks.
+         * A value of zero disables the storage.
+         *
+         * @param value the maximal size of an overflow file, in bytes.
+         * @return true if the option was set, otherwise false.
+         * @see #getOverflowSize()
+         * @see #setOverflowDir(String)
+         */
+        public boolean setOverflowSize(long value)
+        {
+            return setSocketOpt(zmq.ZMQ.ZMQ_OVERFLOW_SIZE, value);
+        }
+
         /**
          * @return the High Water Mark.
          * @see #setHWM(int)
@@ -1686,6 +1885,69 @@ public class ZMQ
             return isConflate();
         }
 
+        /**
+         * Sets the key of the messages kept in conflate mode.
+         * If set, instead of the last message, a socket in conflate mode shall keep the last message
+         * of each key in its inbound/outbound queue, the keys being delivered in the order of their first message.
+         * Multi-part messages are supported: the key is extracted from their first part, and they are kept as a whole.
+         * <p>
+         * For instance, {@link ConflateKey#prefix(int)} keeps the last message of each topic
+         * of the given length, {@link ConflateKey#frame()} the last message of each first frame.
+         * <p>
+         * Only taken into account if {@link #setConflate(boolean) ZMQ_CONFLATE} is set.
+         *
+         * @param key the extractor of the key of the messages, or null to keep only the last message.
+         * @return true if the option was set, otherwise false.
+         * @see #getConflateKey()
+         */
+        public boolean setConflateKey(ConflateKey key)
+        {
+            return setSocketOpt(zmq.ZMQ.ZMQ_CONFLATE_KEY, key);
+        }
+
+        /**
+         * Returns the key of the messages kept in conflate mode.
+         *
+         * @return the extractor of the key of the messages, or null if only the last message is kept.
+         * @see #setConflateKey(ConflateKey)
+         */
+        public ConflateKey getConflateKey()
+        {
+            return (ConflateKey) base.getSocketOptx(zmq.ZMQ.ZMQ_CONFLATE_KEY);
+        }
+
+        /**
+         * Sets how the socket waits in blocking send and receive calls, which are woken up by the other threads.
+         * <p>
+         * Spinning strategies avoid the latency of waking up a blocked thread,
+         * at the cost of a processor core busy while waiting:
+         * <ul>
+         * <li>{@link WaitStrategy#BLOCKING} blocks the thread straight away,</li>
+         * <li>{@link WaitStrategy#BUSY_SPIN} spins until woken up,</li>
+         * <li>{@link WaitStrategy#SPIN_YIELD} spins for a while, then yields the processor until woken up,</li>
+         * <li>{@link WaitStrategy#SPIN_PARK} spins for a while, then blocks the thread.</li>
+         * </ul>
+         *
+         * @param strategy the wait strategy. Default is {@link WaitStrategy#BLOCKING}.
+         * @return true if the option was set, otherwise false.
+         * @see #getWaitStrategy()
+         */
+        public boolean setWaitStrategy(WaitStrategy strategy)
+        {
+            return setSocketOpt(zmq.ZMQ.ZMQ_WAIT_STRATEGY, strategy);
+        }
+
+        /**
+         * Returns how the socket waits in blocking send and receive calls.
+         *
+         * @return the wait strategy.
+         * @see #setWaitStrategy(WaitStrategy)
+         */
+        public WaitStrategy getWaitStrategy()
+        {
+            return (WaitStrategy) base.getSocketOptx(zmq.ZMQ.ZMQ_WAIT_STRATEGY);
+        }
+
         /**
          * Get the Swap. The 'ZMQ_SWAP' option shall set the disk offload (swap) size for the
          * specified 'socket'. A socket which has 'ZMQ_SWAP' set to a non-zero value may exceed its
@@ -2362,6 +2624,10 @@ public class ZMQ
 
         /**
          * Sets a custom message allocator.
+         * <p>
+         * A pooling allocator such as {@link zmq.msg.MsgAllocatorPooled} gets its buffers back
+         * when the received messages are released with {@link Msg#release()}.
+         * The methods returning the received data as a copy release the messages by themselves.
          *
          * @param allocator the custom allocator.
          * @return true if the option was set, otherwise false.
@@ -2392,6 +2658,59 @@ public class ZMQ
             return (SelectorProviderChooser) base.getSocketOptx(zmq.ZMQ.ZMQ_SELECTOR_PROVIDERCHOOSER);
         }
 
+        /**
+         * If set, the message queues of the pipes created afterwards by this socket are built on
+         * power-of-two array rings sized after the high watermarks, instead of linked chunks.
+         * This can lower the latency at high message rates.
+         * Not applicable to a socket in conflate mode.
+         *
+         * @param ring true to use array rings, false for standard behaviour.
+         * @return true if the option was set, otherwise false.
+         * @see #isPipeRing()
+         */
+        public boolean setPipeRing(boolean ring)
+        {
+            return setSocketOpt(zmq.ZMQ.ZMQ_PIPE_RING, ring);
+        }
+
+        /**
+         * Returns true if the message queues of the pipes created by this socket are built on array rings.
+         *
+         * @return true if array rings are used, false for standard behaviour.
+         * @see #setPipeRing(boolean)
+         */
+        public boolean isPipeRing()
+        {
+            return base.getSocketOpt(zmq.ZMQ.ZMQ_PIPE_RING) != 0;
+        }
+
+        /**
+         * If set, a PAIR, DEALER or CLIENT socket connected to a single TCP peer encodes and writes
+         * its messages to the network from the sending thread, when the connection has nothing else to send,
+         * instead of handing them over to an I/O thread. The data the network does not take at once,
+         * and the messages that cannot be written this way, are still sent by the I/O thread.
+         * This saves a thread hop on the latency path.
+         *
+         * @param speculative true to write from the sending thread, false for standard behaviour.
+         * @return true if the option was set, otherwise false.
+         * @see #isSpeculativeWrite()
+         */
+        public boolean setSpeculativeWrite(boolean speculative)
+        {
+            return setSocketOpt(zmq.ZMQ.ZMQ_SPECULATIVE_WRITE, speculative);
+        }
+
+        /**
+         * Returns true if the socket writes its messages to the network from the sending thread when it can.
+         *
+         * @return true if the messages may be written from the sending thread, false for standard behaviour.
+         * @see #setSpeculativeWrite(boolean)
+         */
+        public boolean isSpeculativeWrite()
+        {
+            return base.getSocketOpt(zmq.ZMQ.ZMQ_SPECULATIVE_WRITE) != 0;
+        }
+
         /**
          * The ZMQ_CONNECT_RID option sets the peer id of the next host connected via the connect() call,
          * and immediately readies that connection for data transfer with the named id.
@@ -3710,7 +4029,9 @@ public class ZMQ
             zmq.Msg msg = base.recv(flags);
 
             if (msg != null) {
-                return msg.data();
+                byte[] data = msg.data();
+                msg.release();
+                return data;
             }
 
             mayRaise();
@@ -3742,7 +4063,9 @@ public class ZMQ
             zmq.Msg msg = base.recv(flags, cancellationToken.canceled);
 
             if (msg != null) {
-                return msg.data();
+                byte[] data = msg.data();
+                msg.release();
+                return data;
             }
 
             mayRaise();
@@ -3773,7 +4096,9 @@ public class ZMQ
             zmq.Msg msg = base.recv(flags);
 
             if (msg != null) {
-                return msg.getBytes(0, buffer, offset, len);
+                int count = msg.getBytes(0, buffer, offset, len);
+                msg.release();
+                return count;
             }
 
             return -1;
@@ -3800,6 +4125,7 @@ public class ZMQ
 
             if (msg != null) {
                 buffer.put(msg.buf());
+                msg.release();
                 return msg.size();
             }
 
@@ -4013,6 +4339,9 @@ public class ZMQ
 
         private final List<PollItem> items;
 
+        //  The items registered in the selector once for all the polls.
+        private final zmq.poll.PollSet pollSet;
+
         private long timeout;
 
         /**
@@ -4030,6 +4359,7 @@ public class ZMQ
             assert (selector != null);
 
             items = new ArrayList<>(size);
+            pollSet = new zmq.poll.PollSet(selector);
             timeout = -1L;
         }
 
@@ -4122,8 +4452,11 @@ public class ZMQ
          */
         private int registerInternal(PollItem item)
         {
-          items.add(item);
-          return items.size() - 1;
+            items.add(item);
+            if (item != null) {
+                pollSet.add(item.base);
+            }
+            return items.size() - 1;
         }
 
         /**
@@ -4153,7 +4486,13 @@ public class ZMQ
          */
         private void unregisterInternal(Object socket)
         {
-            items.removeIf(item -> item.socket == socket || item.getRawSocket() == socket);
+            items.removeIf(item -> {
+                if (item != null && (item.socket == socket || item.getRawSocket() == socket)) {
+                    pollSet.remove(item.base);
+                    return true;
+                }
+                return false;
+            });
         }
 
         /**
@@ -4270,15 +4609,8 @@ public class ZMQ
             if (items.isEmpty()) {
                 return 0;
             }
-            zmq.poll.PollItem[] pollItems = new zmq.poll.PollItem[items.size()];
-            for (int i = 0, j = 0; i < items.size(); i++) {
-                if (items.get(i) != null) {
-                    pollItems[j++] = items.get(i).base;
-                }
-            }
-
             try {
-                return zmq.ZMQ.poll(selector, pollItems, items.size(), tout);
+                return pollSet.poll(tout);
             }
             catch (ZError.IOException e) {
                 if (context.isTerminated()) {
@@ -11,12 +11,12 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 
 import org.zeromq.ZMQ.Poller;
 import org.zeromq.ZMQ.Socket;
 
 import zmq.poll.PollItem;
+import zmq.poll.PollSet;
 import zmq.util.Objects;
 import zmq.util.function.BiFunction;
 import zmq.util.function.Function;
@@ -441,6 +441,7 @@ public class ZPoller implements Closeable
         this.creator = creator;
         this.selector = selector;
         items = new ConcurrentHashMap<>();
+        pollSet = new PollSet(selector);
     }
 
     // creates a new poll item
@@ -617,6 +618,9 @@ public class ZPoller implements Closeable
             return false;
         }
         CompositePollItem removedItems = items.remove(socketOrChannel);
+        if (removedItems != null) {
+            changed = true;
+        }
         return removedItems != null;
     }
 
@@ -655,21 +659,18 @@ public class ZPoller implements Closeable
      */
     protected int poll(final long timeout, final boolean dispatchEvents)
     {
-        // Local copy of the items, for consistency
-        Set<CompositePollItem> allPolled = new HashSet<>(items.values());
-        // get all the raw items
-        final Set<PollItem> pollItems = allPolled.stream()
-                                                 .map(CompositePollItem::item)
-                                                 .collect(Collectors.toSet());
+        if (changed) {
+            update();
+        }
         // polling time
-        final int rc = poll(selector, timeout, pollItems);
+        final int rc = pollSet.poll(timeout);
 
         if (!dispatchEvents) {
             // raw result
             return rc;
         }
 
-        if (dispatch(allPolled)) {
+        if (dispatch(polled)) {
             // returns event counts after dispatch if everything went fine
             return rc;
         }
@@ -677,7 +678,31 @@ public class ZPoller implements Closeable
         return -1;
     }
 
-    // does the effective polling
+    // registers the items added since the last poll, and cancels the removed ones
+    private void update()
+    {
+        changed = false;
+        // Local copy of the items, for consistency
+        Set<CompositePollItem> allPolled = new HashSet<>(items.values());
+        for (CompositePollItem aggregate : polled) {
+            if (!allPolled.contains(aggregate)) {
+                pollSet.remove(aggregate.item());
+            }
+        }
+        for (CompositePollItem aggregate : allPolled) {
+            if (!polled.contains(aggregate)) {
+                pollSet.add(aggregate.item());
+            }
+        }
+        polled = allPolled;
+    }
+
+    /**
+     * Polls the given items with the given selector.
+     *
+     * @deprecated the poller now registers its items once in a persistent poll set, and no longer calls this method.
+     */
+    @Deprecated
     protected int poll(final Selector selector, final long tout, final Collection<zmq.poll.PollItem> items)
     {
         return zmq.ZMQ.poll(selector, items.toArray(new PollItem[0]), items.size(), tout);
@@ -942,6 +967,11 @@ public class ZPoller implements Closeable
 
     // selector used for polling
     private final Selector selector;
+    // items registered in the selector, as of the last poll
+    private final PollSet pollSet;
+    private Set<CompositePollItem> polled = Collections.emptySet();
+    // true if items have been added or removed since the last poll
+    private volatile boolean changed;
 
     // creator of items
     private final ItemCreator creator;
@@ -975,7 +1005,9 @@ public class ZPoller implements Closeable
     {
         Object key = Optional.ofNullable(socketOrChannel).orElseGet(() -> computeSocketOrChannel(holder));
         CompositePollItem aggregate = items.computeIfAbsent(key, CompositePollItem::new);
-        return aggregate.holders.add(holder);
+        boolean rc = aggregate.holders.add(holder);
+        changed = true;
+        return rc;
     }
 
     private Object computeSocketOrChannel(final ItemHolder holder)
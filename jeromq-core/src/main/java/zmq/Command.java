@@ -59,7 +59,10 @@ public class Command
         //  are successfully deallocated.
         DONE,
         //  Cancel a single pending I/O call
-        CANCEL
+        CANCEL,
+        //  Sent to the new I/O thread of a session, to plug its engine
+        //  in there.
+        MIGRATE
     }
 
     Command(ZObject destination, Type type)
@@ -79,6 +82,12 @@ public class Command
         destination.processCommand(this);
     }
 
+    //  Object to process the command.
+    public final ZObject getDestination()
+    {
+        return destination;
+    }
+
     @Override
     public String toString()
     {
@@ -7,6 +7,19 @@ public enum Config
     //  memory allocation by approximately 99.6%
     MESSAGE_PIPE_GRANULARITY(256),
 
+    //  Maximal number of messages held by a ring of a message pipe
+    //  built on array rings. The ring is sized after the high watermark,
+    //  within this limit, and more rings are allocated when it is full.
+    MESSAGE_PIPE_RING_CAPACITY(16384),
+
+    //  Initial size of the region mapped in the overflow file of a pipe,
+    //  doubled each time more room is needed.
+    PIPE_OVERFLOW_SEGMENT(1024 * 1024),
+
+    //  Duration in nanoseconds during which the sockets with a spinning wait
+    //  strategy spin before yielding the processor or blocking.
+    WAIT_SPIN_DURATION(50000),
+
     //  Commands in pipe per allocation event.
     COMMAND_PIPE_GRANULARITY(16),
 
@@ -30,6 +43,11 @@ public enum Config
     //  unnecessary network stack traversals.
     OUT_BATCH_SIZE(8192),
 
+    //  Minimal size of a part of message body to be written as is by engines
+    //  sending with gathering writes, instead of being copied into the batch.
+    //  Smaller parts are cheaper to copy than to add to the sequence of buffers.
+    OUT_GATHER_THRESHOLD(1024),
+
     //  Maximal delta between high and low watermark.
     MAX_WM_DELTA(1024),
 
@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -26,8 +27,10 @@ import org.zeromq.ZMQException;
 import zmq.io.IOThread;
 import zmq.pipe.Pipe;
 import zmq.socket.Sockets;
+import zmq.util.Clock;
 import zmq.util.Errno;
 import zmq.util.MultiMap;
+import zmq.util.ThreadAffinity;
 import zmq.util.function.BiFunction;
 
 /**
@@ -137,9 +140,27 @@ public class Ctx
     //  Number of I/O threads to launch.
     private int ioThreadCount;
 
+    //  Interval between the attempts of an I/O thread to migrate one of its
+    //  connections to a less loaded thread, in milliseconds. 0 to disable.
+    private int ioRebalanceIvl;
+
+    //  Time an idle I/O thread keeps polling without blocking, in microseconds.
+    //  0 to always block, -1 to never block.
+    private int ioBusyPoll;
+
+    //  If true, the I/O thread is not started, its poller being run by the application threads
+    //  while they wait in the calls on the sockets.
+    private boolean ioInline;
+
+    //  The I/O thread run by the application threads, if any.
+    private volatile IOThread inlineIo;
+
     // The thread factory used by the poller
     private BiFunction<Runnable, String, Thread> threadFactory;
 
+    // The hook pinning the threads of the pollers to CPUs, if any
+    private ThreadAffinity threadAffinity;
+
     //  Does context wait (possibly forever) on termination?
     private boolean blocky;
 
@@ -308,7 +329,7 @@ public class Ctx
 
         if (!starting.get()) {
             //  Wait till reaper thread closes all the sockets.
-            Command cmd = termMailbox.recv(WAIT_FOREVER);
+            Command cmd = inlineIo == null ? termMailbox.recv(WAIT_FOREVER) : recvInline(termMailbox, WAIT_FOREVER);
             if (cmd == null) {
                 throw new ZMQException(errno.get());
             }
@@ -426,6 +447,28 @@ public class Ctx
         return threadFactory;
     }
 
+    /**
+     * Used to pin the I/O and reaper threads to CPUs, whatever the thread factory. The hook is called by
+     * each of these threads when it starts. If it fails, the notification exception handler is called and the thread
+     * runs unpinned.
+     *
+     * @param threadAffinity the hook called by the threads of {@link zmq.poll.Poller}, or null to not pin them.
+     * @throws IllegalStateException If context was already initialized by the creation of a socket
+     */
+    public void setThreadAffinity(ThreadAffinity threadAffinity)
+    {
+        chechStarted();
+        this.threadAffinity = threadAffinity;
+    }
+
+    /**
+     * @return the current hook pinning the threads to CPUs, or null.
+     */
+    public ThreadAffinity getThreadAffinity()
+    {
+        return threadAffinity;
+    }
+
     /**
      * Set an option
      * @param option the option to set
@@ -456,6 +499,36 @@ public class Ctx
                 optSync.unlock();
             }
         }
+        else if (option == ZMQ.ZMQ_IO_REBALANCE_IVL && optval >= 0) {
+            chechStarted();
+            optSync.lock();
+            try {
+                ioRebalanceIvl = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else if (option == ZMQ.ZMQ_IO_BUSY_POLL && optval >= -1) {
+            chechStarted();
+            optSync.lock();
+            try {
+                ioBusyPoll = optval;
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
+        else if (option == ZMQ.ZMQ_IO_INLINE && optval >= 0) {
+            chechStarted();
+            optSync.lock();
+            try {
+                ioInline = (optval != 0);
+            }
+            finally {
+                optSync.unlock();
+            }
+        }
         else if (option == ZMQ.ZMQ_BLOCKY && optval >= 0) {
             optSync.lock();
             try {
@@ -489,6 +562,15 @@ public class Ctx
         else if (option == ZMQ.ZMQ_IO_THREADS) {
             rc = ioThreadCount;
         }
+        else if (option == ZMQ.ZMQ_IO_REBALANCE_IVL) {
+            rc = ioRebalanceIvl;
+        }
+        else if (option == ZMQ.ZMQ_IO_BUSY_POLL) {
+            rc = ioBusyPoll;
+        }
+        else if (option == ZMQ.ZMQ_IO_INLINE) {
+            rc = ioInline ? 1 : 0;
+        }
         else if (option == ZMQ.ZMQ_BLOCKY) {
             rc = blocky ? 1 : 0;
         }
@@ -549,10 +631,13 @@ public class Ctx
             //  Initialize the array of mailboxes. Additional two slots are for
             //  zmq_term thread and reaper thread.
             int ios;
+            boolean inline;
             optSync.lock();
             try {
-                ios = ioThreadCount;
-                slotCount = maxSockets + ioThreadCount + 2;
+                inline = ioInline;
+                //  The application threads run a single I/O thread.
+                ios = inline ? Math.min(ioThreadCount, 1) : ioThreadCount;
+                slotCount = maxSockets + ios + 2;
             }
             finally {
                 optSync.unlock();
@@ -573,7 +658,13 @@ public class Ctx
                 //alloc_assert (io_thread);
                 ioThreads.add(ioThread);
                 slots[i] = ioThread.getMailbox();
-                ioThread.start();
+                if (inline) {
+                    inlineIo = ioThread;
+                    termMailbox.setWaker(this::wakeupIo);
+                }
+                else {
+                    ioThread.start();
+                }
             }
 
             //  In the unused part of the slot array, create a list of empty slots.
@@ -662,6 +753,65 @@ public class Ctx
         slots[tid].send(command);
     }
 
+    /**
+     * @return true if the I/O is run by the application threads, while they wait in the calls on the sockets.
+     */
+    public boolean isIoInline()
+    {
+        return inlineIo != null;
+    }
+
+    /**
+     * Runs the I/O from the calling thread, if the context has no I/O thread of its own and no other thread runs it.
+     * @param timeout the maximum time to wait for events, in milliseconds. 0 to return immediately, -1 to wait
+     *                until there are some or the I/O is woken up.
+     * @return false if the I/O was not run.
+     */
+    public boolean driveIo(long timeout)
+    {
+        IOThread ioThread = inlineIo;
+        return ioThread != null && ioThread.drive(timeout);
+    }
+
+    /**
+     * Wakes up the application thread running the I/O, if any.
+     */
+    public void wakeupIo()
+    {
+        IOThread ioThread = inlineIo;
+        if (ioThread != null) {
+            ioThread.wakeup();
+        }
+    }
+
+    //  Waits for a command, running the I/O meanwhile, unless another thread does.
+    //  The mailbox shall wake up the I/O when a command is sent to it.
+    Command recvInline(Mailbox mailbox, long timeout)
+    {
+        final long end = timeout < 0 ? 0 : Clock.nowNS() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (true) {
+            Command cmd = mailbox.recv(0);
+            if (cmd != null || errno.get() == ZError.EINTR) {
+                return cmd;
+            }
+            long wait = -1;
+            if (timeout >= 0) {
+                long remaining = end - Clock.nowNS();
+                if (remaining <= 0) {
+                    return null;
+                }
+                wait = Math.max(TimeUnit.NANOSECONDS.toMillis(remaining), 1);
+            }
+            if (!driveIo(wait)) {
+                //  Another thread runs the I/O, until it returns.
+                cmd = mailbox.recv(wait < 0 ? 1 : Math.min(wait, 1));
+                if (cmd != null || errno.get() == ZError.EINTR) {
+                    return cmd;
+                }
+            }
+        }
+    }
+
     //  Returns the I/O thread that is the least busy at the moment.
     //  Affinity specifies which I/O threads are eligible (0 = all).
     //  Returns NULL if no I/O thread is available.
@@ -671,22 +821,81 @@ public class Ctx
             return null;
         }
 
-        //  Find the I/O thread with minimum load.
-        int minLoad = -1;
+        //  Sum the metrics of the eligible I/O threads.
+        long fds = 0;
+        long messages = 0;
+        long bytes = 0;
+        for (int i = 0; i != ioThreads.size(); i++) {
+            if (affinity == 0 || (affinity & (1L << i)) > 0) {
+                IOThread ioThread = ioThreads.get(i);
+                fds += ioThread.getLoad();
+                messages += ioThread.getMessagesPerSecond();
+                bytes += ioThread.getBytesPerSecond();
+            }
+        }
+
+        //  Find the I/O thread with minimum load. The load of a thread is its
+        //  share of the file descriptors plus its shares of the traffic, so that
+        //  a few busy connections weigh as much as many idle ones.
+        double minLoad = -1;
         IOThread selectedIoThread = null;
 
         for (int i = 0; i != ioThreads.size(); i++) {
             if (affinity == 0 || (affinity & (1L << i)) > 0) {
-                int load = ioThreads.get(i).getLoad();
+                IOThread ioThread = ioThreads.get(i);
+                double load = share(ioThread.getLoad(), fds) + share(ioThread.getMessagesPerSecond(), messages)
+                        + share(ioThread.getBytesPerSecond(), bytes);
                 if (selectedIoThread == null || load < minLoad) {
                     minLoad = load;
-                    selectedIoThread = ioThreads.get(i);
+                    selectedIoThread = ioThread;
+                }
+            }
+        }
+        return selectedIoThread;
+    }
+
+    private static double share(long value, long total)
+    {
+        return total == 0 ? 0 : (double) value / total;
+    }
+
+    //  Returns the I/O thread with the least traffic that is eligible for the
+    //  affinity, other than the given one. Returns NULL if there is none.
+    IOThread chooseRebalanceTarget(IOThread source, long affinity)
+    {
+        IOThread selectedIoThread = null;
+        for (int i = 0; i != ioThreads.size(); i++) {
+            IOThread ioThread = ioThreads.get(i);
+            if (ioThread != source && (affinity == 0 || (affinity & (1L << i)) > 0)) {
+                if (selectedIoThread == null
+                        || ioThread.getBytesPerSecond() < selectedIoThread.getBytesPerSecond()) {
+                    selectedIoThread = ioThread;
                 }
             }
         }
         return selectedIoThread;
     }
 
+    /**
+     * Returns the load of each I/O thread, in the order used by the affinity of the sockets.
+     * The traffic is measured every second, on the connections handled by each thread.
+     * @return a snapshot of the load of the I/O threads, empty if the context is not started yet.
+     */
+    public List<IOThread.Load> getIoThreadLoads()
+    {
+        List<IOThread.Load> loads = new ArrayList<>(ioThreads.size());
+        slotSync.lock();
+        try {
+            for (IOThread ioThread : ioThreads) {
+                loads.add(ioThread.load());
+            }
+        }
+        finally {
+            slotSync.unlock();
+        }
+        return loads;
+    }
+
     //  Management of inproc endpoints.
     boolean registerEndpoint(String addr, Endpoint endpoint)
     {
@@ -820,6 +1029,20 @@ public class Ctx
         pendingConnection.connectPipe.setHwms(hwms[1], hwms[0]);
         pendingConnection.bindPipe.setHwms(hwms[0], hwms[1]);
 
+        long sndhwmBytes = 0;
+        if (pendingConnection.endpoint.options.sendHwmBytes != 0 && bindOptions.recvHwmBytes != 0) {
+            sndhwmBytes = pendingConnection.endpoint.options.sendHwmBytes + bindOptions.recvHwmBytes;
+        }
+        long rcvhwmBytes = 0;
+        if (pendingConnection.endpoint.options.recvHwmBytes != 0 && bindOptions.sendHwmBytes != 0) {
+            rcvhwmBytes = pendingConnection.endpoint.options.recvHwmBytes + bindOptions.sendHwmBytes;
+        }
+        if (!conflate) {
+            pendingConnection.connectPipe.setBytesHwms(rcvhwmBytes, sndhwmBytes);
+            pendingConnection.bindPipe.setBytesHwms(sndhwmBytes, rcvhwmBytes);
+        }
+        pendingConnection.bindPipe.setOverflow(bindOptions.overflowDir, bindOptions.overflowSize);
+
         if (bindOptions.canReceiveDisconnectMsg && bindOptions.disconnectMsg != null) {
             pendingConnection.connectPipe.setDisconnectMsg(bindOptions.disconnectMsg);
         }
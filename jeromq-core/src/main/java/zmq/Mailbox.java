@@ -2,20 +2,26 @@ package zmq;
 
 import java.io.IOException;
 import java.nio.channels.SelectableChannel;
-import java.util.Deque;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
+import zmq.pipe.MpscQueue;
 import zmq.util.Errno;
 
 public class Mailbox implements IMailbox
 {
     //  The pipe to store actual commands.
-    private final Deque<Command> cpipe;
+    //  Many threads write to it without lock, only the owner thread reads it.
+    private final MpscQueue<Command> cpipe;
 
     //  Signaler to pass signals from writer thread to reader thread.
-    // kept it although a ConcurrentLinkedDeque, because the signaler channel is used in many places.
+    //  A signal is only sent when the reader went asleep on an empty pipe.
     private final Signaler signaler;
 
+    //  Called along with the signaler, if any.
+    private volatile Runnable listener;
+
+    //  Called along with the signaler when the reader may be waiting for the I/O instead, if any.
+    private volatile Runnable waker;
+
     // mailbox name, for better debugging
     private final String name;
 
@@ -24,8 +30,8 @@ public class Mailbox implements IMailbox
     public Mailbox(Ctx ctx, String name, int tid)
     {
         this.errno = ctx.errno();
-        cpipe = new ConcurrentLinkedDeque<>();
-        signaler = new Signaler(ctx, tid, errno);
+        cpipe = new MpscQueue<>();
+        signaler = new Signaler(tid, errno);
 
         this.name = name;
     }
@@ -35,17 +41,45 @@ public class Mailbox implements IMailbox
         return signaler.getFd();
     }
 
+    //  Sets the listener told when the reader has to be woken up.
+    void setListener(Runnable listener)
+    {
+        this.listener = listener;
+    }
+
+    //  Sets what wakes up the reader when it runs the I/O while waiting for the commands.
+    void setWaker(Runnable waker)
+    {
+        this.waker = waker;
+    }
+
+    //  Sets how the reader waits for the commands.
+    void setWaitStrategy(WaitStrategy strategy)
+    {
+        signaler.setWaitStrategy(strategy);
+    }
+
     @Override
     public void send(final Command cmd)
     {
-        cpipe.addLast(cmd);
-        signaler.send();
+        if (!cpipe.push(cmd)) {
+            //  The reader is asleep, wake it up.
+            signaler.send();
+            Runnable listener = this.listener;
+            if (listener != null) {
+                listener.run();
+            }
+            Runnable waker = this.waker;
+            if (waker != null) {
+                waker.run();
+            }
+        }
     }
 
     @Override
     public Command recv(long timeout)
     {
-        Command cmd = cpipe.pollFirst();
+        Command cmd = cpipe.pollOrSleep();
         while (cmd == null) {
             //  Wait for signal from the command sender.
             boolean rc = signaler.waitEvent(timeout);
@@ -61,8 +95,8 @@ public class Mailbox implements IMailbox
             }
 
             //  Get a command.
-            //  Another thread may already fetch the command, so loop on it
-            cmd = cpipe.pollFirst();
+            //  The signal may have been sent for a command already read, so loop on it
+            cmd = cpipe.pollOrSleep();
         }
 
         return cmd;
@@ -1,37 +1,62 @@
 package zmq;
 
-import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import zmq.io.Metadata;
+import zmq.msg.MsgAllocator;
 import zmq.util.Utils;
 import zmq.util.Wire;
 
 public class Msg
 {
-    // dynamic message building used when the size is not known in advance
+    // dynamic message building used when the size is not known in advance.
+    // Bytes are appended into chunks, that are used as is by the built message.
     public static final class Builder extends Msg
     {
-        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private static final int MIN_CHUNK_SIZE = 64;
+        private static final int MAX_CHUNK_SIZE = 8192;
+
+        // the provider of the chunks
+        private final MsgAllocator allocator;
+
+        private final List<Msg>        chunks  = new ArrayList<>();
+        private final List<ByteBuffer> written = new ArrayList<>();
+
+        // the chunk being filled
+        private ByteBuffer current;
 
         public Builder()
+        {
+            this(Msg::new);
+        }
+
+        /**
+         * @param allocator the allocator of the chunks, typically a pooling one.
+         *                  The chunks are released with the built message.
+         */
+        public Builder(MsgAllocator allocator)
         {
             super();
+            this.allocator = allocator;
         }
 
         @Override
         public int size()
         {
-            return out.size();
+            return getWriteIndex();
         }
 
         @Override
         protected Msg put(int index, byte b)
         {
-            out.write(b);
+            ensure(1).put(b);
             return this;
         }
 
@@ -41,7 +66,13 @@ public class Msg
             if (src == null) {
                 return this;
             }
-            out.write(src, off, len);
+            int remaining = len;
+            while (remaining > 0) {
+                ByteBuffer chunk = ensure(remaining);
+                int count = Math.min(remaining, chunk.remaining());
+                chunk.put(src, off + len - remaining, count);
+                remaining -= count;
+            }
             setWriteIndex(getWriteIndex() + len);
             return this;
         }
@@ -52,8 +83,21 @@ public class Msg
             if (src == null) {
                 return this;
             }
-            for (int idx = off; idx < off + len; ++idx) {
-                out.write(src.get(idx));
+            ByteBuffer dup = src.duplicate();
+            dup.limit(off + len).position(off);
+            return put(dup);
+        }
+
+        @Override
+        public Msg put(ByteBuffer src)
+        {
+            final int len = src.remaining();
+            final int limit = src.limit();
+            while (src.hasRemaining()) {
+                ByteBuffer chunk = ensure(src.remaining());
+                src.limit(src.position() + Math.min(src.remaining(), chunk.remaining()));
+                chunk.put(src);
+                src.limit(limit);
             }
             setWriteIndex(getWriteIndex() + len);
             return this;
@@ -67,10 +111,8 @@ public class Msg
             }
             int length = data.length();
             Utils.checkArgument(length < 256, "String must be strictly smaller than 256 characters");
-            out.write((byte) length);
-            out.write(data.getBytes(ZMQ.CHARSET), 0, length);
-            setWriteIndex(getWriteIndex() + length + 1);
-            return this;
+            put((byte) length);
+            return put(data.getBytes(ZMQ.CHARSET), 0, length);
         }
 
         @Override
@@ -81,7 +123,45 @@ public class Msg
 
         public Msg build()
         {
-            return new Msg(this, out);
+            if (current != null) {
+                written.add(flip(current));
+                current = null;
+            }
+            final int count = written.size();
+            if (count == 0) {
+                return new Msg(this, new ByteBuffer[0], null);
+            }
+            boolean releasable = false;
+            for (Msg chunk : chunks) {
+                releasable |= chunk.isReleasable();
+            }
+            final List<Msg> owned = new ArrayList<>(chunks);
+            final Runnable releaser = releasable ? () -> owned.forEach(Msg::release) : null;
+            return new Msg(this, written.toArray(new ByteBuffer[count]), releaser);
+        }
+
+        // the current chunk, having room for at least one byte
+        private ByteBuffer ensure(int needed)
+        {
+            if (current != null && current.hasRemaining()) {
+                return current;
+            }
+            if (current != null) {
+                written.add(flip(current));
+            }
+            //  Chunks are growing with the size of the message, to limit their number.
+            int capacity = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, Math.max(needed, getWriteIndex())));
+            Msg chunk = allocator.allocate(capacity);
+            chunks.add(chunk);
+            current = chunk.buf();
+            current.clear();
+            return current;
+        }
+
+        private static ByteBuffer flip(ByteBuffer chunk)
+        {
+            chunk.flip();
+            return chunk.slice();
         }
     }
 
@@ -102,6 +182,10 @@ public class Msg
     /// The maximum length of a group (Radio/Dish)
     public static final int MAX_GROUP_LENGTH = 255;
 
+    private static final AtomicIntegerFieldUpdater<Msg> REFS = AtomicIntegerFieldUpdater.newUpdater(Msg.class, "refs");
+    private static final AtomicReferenceFieldUpdater<Msg, ByteBuffer> FLAT = AtomicReferenceFieldUpdater
+            .newUpdater(Msg.class, ByteBuffer.class, "flat");
+
     private Metadata metadata;
     private int      flags;
     private Type     type;
@@ -109,8 +193,14 @@ public class Msg
     // the file descriptor where this message originated, needs to be 64bit due to alignment
     private SocketChannel fileDesc;
 
-    private final int        size;
-    private final ByteBuffer buf;
+    private final int size;
+    // the payload, null for a composite message
+    private ByteBuffer buf;
+    // the successive parts of the payload of a composite message, null otherwise
+    private ByteBuffer[] segments;
+    // the payload of a composite message as a single buffer, built at first use.
+    // Volatile as a shared message may be read by several threads at once.
+    private volatile ByteBuffer flat;
     // keep track of relative write position
     private int writeIndex = 0;
     // keep track of relative read position
@@ -119,6 +209,11 @@ public class Msg
     private int routingId;
     private String group;
 
+    // hook invoked once the payload is not needed anymore, null if the buffer is not owned by anybody
+    private Runnable releaser;
+    // number of owners of the payload, only meaningful for shared messages
+    private volatile int refs;
+
     public Msg()
     {
         this(0);
@@ -154,22 +249,89 @@ public class Msg
         this.size = buf.remaining();
     }
 
+    /**
+     * Creates a message backed by a buffer whose lifecycle is handled by its provider.
+     * <p>
+     * The releaser is called once, at the first call of {@link #release()}.
+     *
+     * @param src the buffer holding the payload of the message.
+     * @param releaser the hook called when the payload of the message is not needed anymore. Can be null.
+     */
+    public Msg(final ByteBuffer src, final Runnable releaser)
+    {
+        this(src);
+        this.releaser = releaser;
+    }
+
+    /**
+     * Creates a composite message, whose payload is made of the given segments, without concatenation.
+     * <p>
+     * The content of each segment lies between its position and its limit.
+     * The segments are written one after the other by the engines, without being copied.
+     *
+     * @param segments the successive parts of the payload, such as a header, a body and a trailer.
+     */
+    public Msg(final ByteBuffer... segments)
+    {
+        this(Type.DATA, 0, slices(segments), null);
+    }
+
     public Msg(final Msg m)
     {
         if (m == null) {
             throw new IllegalArgumentException("Msg cannot be null");
         }
         this.type = m.type;
-        this.flags = m.flags;
+        //  The copy does not own the payload.
+        this.flags = m.flags & ~SHARED;
         this.size = m.size;
-        this.buf = m.buf != null ? m.buf.duplicate() : null;
+        final ByteBuffer payload = m.buf != null ? m.buf : m.flat;
+        this.buf = payload != null ? payload.duplicate() : null;
+        //  The segments are never modified, only their duplicates are handed out.
+        this.segments = payload == null ? m.segments : null;
+    }
+
+    private Msg(Msg src, ByteBuffer[] segments, Runnable releaser)
+    {
+        this(src.type, src.flags, segments, releaser);
     }
 
-    private Msg(Msg src, ByteArrayOutputStream out)
+    private Msg(Type type, int flags, ByteBuffer[] segments, Runnable releaser)
     {
-        this(ByteBuffer.wrap(out.toByteArray()));
-        this.type = src.type;
-        this.flags = src.flags;
+        this.type = type;
+        this.flags = flags;
+        this.releaser = releaser;
+        if (segments.length == 1) {
+            this.buf = segments[0];
+            this.size = buf.remaining();
+        }
+        else {
+            int total = 0;
+            for (ByteBuffer segment : segments) {
+                total += segment.remaining();
+            }
+            this.segments = segments;
+            this.size = total;
+            if (total == 0) {
+                this.buf = ByteBuffer.allocate(0);
+                this.segments = null;
+            }
+        }
+    }
+
+    private static ByteBuffer[] slices(ByteBuffer[] segments)
+    {
+        if (segments == null) {
+            throw new IllegalArgumentException("Segments cannot be null");
+        }
+        ByteBuffer[] slices = new ByteBuffer[segments.length];
+        for (int idx = 0; idx < segments.length; ++idx) {
+            if (segments[idx] == null) {
+                throw new IllegalArgumentException("ByteBuffer cannot be null");
+            }
+            slices[idx] = segments[idx].slice();
+        }
+        return slices;
     }
 
     public boolean isIdentity()
@@ -248,12 +410,24 @@ public class Msg
      * <p>
      * If possible, a reference to the data is returned, without copy.
      * Otherwise a new byte array will be allocated and the data will be copied.
+     * The data of a releasable message is always copied.
      *
      * @return the message data.
      */
     public byte[] data()
     {
-        if (buf.hasArray()) {
+        if (segments != null && flat == null) {
+            byte[] array = new byte[size];
+            int offset = 0;
+            for (ByteBuffer segment : segments) {
+                int length = segment.remaining();
+                segment.duplicate().get(array, offset, length);
+                offset += length;
+            }
+            return array;
+        }
+        final ByteBuffer buf = buffer();
+        if (buf.hasArray() && releaser == null) {
             byte[] array = buf.array();
             int offset = buf.arrayOffset();
 
@@ -278,7 +452,102 @@ public class Msg
 
     public ByteBuffer buf()
     {
-        return buf.duplicate();
+        return buffer().duplicate();
+    }
+
+    /**
+     * Returns the successive parts of the payload of a composite message, without copy.
+     *
+     * @return the segments of the message, or null if the payload is held in a single buffer,
+     * including once it has been concatenated by an access to the whole payload.
+     */
+    public ByteBuffer[] segments()
+    {
+        final ByteBuffer[] parts = segments;
+        if (parts == null || flat != null) {
+            return null;
+        }
+        ByteBuffer[] dups = new ByteBuffer[parts.length];
+        for (int idx = 0; idx < parts.length; ++idx) {
+            dups[idx] = parts[idx].duplicate();
+        }
+        return dups;
+    }
+
+    // the payload as a single buffer, concatenating the segments of a composite message at first use.
+    // Concurrent readers of a shared message may concatenate it each, only one of the copies being kept.
+    private ByteBuffer buffer()
+    {
+        if (buf != null) {
+            return buf;
+        }
+        ByteBuffer payload = flat;
+        if (payload == null) {
+            ByteBuffer copy = ByteBuffer.allocate(size);
+            for (ByteBuffer segment : segments) {
+                copy.put(segment.duplicate());
+            }
+            copy.flip();
+            payload = FLAT.compareAndSet(this, null, copy) ? copy : flat;
+        }
+        return payload;
+    }
+
+    /**
+     * Gives back the payload of this message to its provider, typically a pooling {@link zmq.msg.MsgAllocator}.
+     * <p>
+     * After this call, the content of the message shall not be accessed anymore,
+     * as the underlying buffer may already be reused for another message.
+     * Calling it several times, or on a message without releaser, is a no-op,
+     * unless the message is {@link #SHARED}: its payload is then given back when every owner has released it.
+     * <p>
+     * Messages that were sent are released by the library once they have been written,
+     * and shall not be released by the sender.
+     */
+    public void release()
+    {
+        if ((flags & SHARED) == SHARED && REFS.decrementAndGet(this) > 0) {
+            //  Other owners are still using the payload.
+            return;
+        }
+        final Runnable hook = releaser;
+        if (hook != null) {
+            releaser = null;
+            hook.run();
+        }
+    }
+
+    /**
+     * Adds owners to the payload of this message, flagging it as {@link #SHARED}.
+     * <p>
+     * Each owner, including the initial one, shall call {@link #release()} once,
+     * and the payload is given back when the last one does.
+     *
+     * @param count the number of owners to add.
+     */
+    public void addRefs(int count)
+    {
+        Utils.checkArgument(count >= 0, "Number of references to add shall be positive");
+        if ((flags & SHARED) == SHARED) {
+            REFS.addAndGet(this, count);
+        }
+        else {
+            refs = count + 1;
+            setFlags(SHARED);
+        }
+    }
+
+    public boolean isShared()
+    {
+        return (flags & SHARED) == SHARED;
+    }
+
+    /**
+     * @return true if this message holds a payload that shall be given back with {@link #release()}.
+     */
+    public boolean isReleasable()
+    {
+        return releaser != null;
     }
 
     public int size()
@@ -325,7 +594,7 @@ public class Msg
 
     public byte get(int index)
     {
-        return buf.get(index);
+        return buffer().get(index);
     }
 
     public Msg put(byte b)
@@ -340,7 +609,7 @@ public class Msg
 
     protected Msg put(int index, byte b)
     {
-        buf.put(index, b);
+        buffer().put(index, b);
         return this;
     }
 
@@ -354,7 +623,7 @@ public class Msg
         if (src == null) {
             return this;
         }
-        ByteBuffer dup = buf.duplicate();
+        ByteBuffer dup = buffer().duplicate();
         dup.position(writeIndex);
         writeIndex += len;
         dup.put(src, off, len);
@@ -376,7 +645,7 @@ public class Msg
 
     public Msg put(ByteBuffer src)
     {
-        ByteBuffer dup = buf.duplicate();
+        ByteBuffer dup = buffer().duplicate();
         dup.position(writeIndex);
         writeIndex += Math.min(dup.remaining(), src.remaining());
         dup.put(src);
@@ -387,6 +656,7 @@ public class Msg
     {
         int count = Math.min(len, size - index);
 
+        final ByteBuffer buf = buffer();
         if (buf.hasArray()) {
             System.arraycopy(buf.array(), buf.arrayOffset() + index, dst, off, count);
         }
@@ -401,7 +671,7 @@ public class Msg
 
     public int getBytes(int index, ByteBuffer bb, int len)
     {
-        ByteBuffer dup = buf.duplicate();
+        ByteBuffer dup = buffer().duplicate();
         dup.position(index);
         int count = Math.min(bb.remaining(), dup.remaining());
         count = Math.min(count, len);
@@ -427,21 +697,22 @@ public class Msg
 
     public long getLong(int offset)
     {
-        return Wire.getUInt64(buf, offset);
+        return Wire.getUInt64(buffer(), offset);
     }
 
     public int getInt(int offset)
     {
-        return Wire.getUInt32(buf, offset);
+        return Wire.getUInt32(buffer(), offset);
     }
 
     public int getShort(int offset)
     {
-        return Wire.getUInt16(buf, offset);
+        return Wire.getUInt16(buffer(), offset);
     }
 
     public void transfer(ByteBuffer destination, int srcOffset, int srcLength)
     {
+        final ByteBuffer buf = buffer();
         int position = buf.position();
         int limit = buf.limit();
 
@@ -463,7 +734,7 @@ public class Msg
         if (data == null) {
             return this;
         }
-        ByteBuffer dup = buf.duplicate();
+        ByteBuffer dup = buffer().duplicate();
         dup.position(writeIndex);
         writeIndex += Wire.putShortString(dup, data);
         return this;
@@ -13,6 +13,7 @@ import zmq.io.net.tcp.TcpAddress;
 import zmq.io.net.tcp.TcpAddress.TcpAddressMask;
 import zmq.msg.MsgAllocator;
 import zmq.msg.MsgAllocatorThreshold;
+import zmq.pipe.ConflateKey;
 import zmq.util.Errno;
 import zmq.util.ValueReference;
 import zmq.util.Z85;
@@ -23,6 +24,16 @@ public class Options
     public int sendHwm = ZMQ.DEFAULT_SEND_HWM;
     public int recvHwm = ZMQ.DEFAULT_RECV_HWM;
 
+    //  High-water marks in bytes for message pipes, enforced together with
+    //  the ones in messages. Zero means no limit.
+    public long sendHwmBytes = ZMQ.DEFAULT_SEND_HWM_BYTES;
+    public long recvHwmBytes = ZMQ.DEFAULT_RECV_HWM_BYTES;
+
+    //  Directory of the files storing the outbound messages beyond the
+    //  high-water marks, and maximal size of each file. Disabled if null or zero.
+    public String overflowDir  = ZMQ.DEFAULT_OVERFLOW_DIR;
+    public long   overflowSize = ZMQ.DEFAULT_OVERFLOW_SIZE;
+
     //  I/O thread affinity.
     public long affinity = ZMQ.DEFAULT_AFFINITY;
 
@@ -121,6 +132,22 @@ public class Options
     //  Ignores hwm
     public boolean conflate = ZMQ.DEFAULT_CONFLATE;
 
+    //  If not null, the conflating pipes keep the latest message for each key
+    //  instead of the latest one. Multi-part messages are conflated as a whole.
+    public ConflateKey conflateKey = ZMQ.DEFAULT_CONFLATE_KEY;
+
+    //  How the socket waits for the commands of the other threads in blocking calls.
+    public WaitStrategy waitStrategy = ZMQ.DEFAULT_WAIT_STRATEGY;
+
+    //  If true, the message pipes of the socket are built on array rings
+    //  instead of linked chunks.
+    //  Not applicable to conflating sockets.
+    public boolean pipeRing = ZMQ.DEFAULT_PIPE_RING;
+
+    //  If true, a PAIR, DEALER or CLIENT socket with a single TCP peer writes
+    //  its messages to the network from its own thread when it can.
+    public boolean speculativeWrite = ZMQ.DEFAULT_SPECULATIVE_WRITE;
+
     //  If connection handshake is not done after this many milliseconds,
     //  close socket.  Default is 30 secs.  0 means no handshake timeout.
     public int handshakeIvl = ZMQ.DEFAULT_HANDSHAKE_IVL;
@@ -207,6 +234,31 @@ public class Options
             }
             return true;
 
+        case ZMQ.ZMQ_SNDHWM_BYTES:
+            sendHwmBytes = (Long) optval;
+            if (sendHwmBytes < 0) {
+                throw new IllegalArgumentException("sendHwmBytes " + optval);
+            }
+            return true;
+
+        case ZMQ.ZMQ_RCVHWM_BYTES:
+            recvHwmBytes = (Long) optval;
+            if (recvHwmBytes < 0) {
+                throw new IllegalArgumentException("recvHwmBytes " + optval);
+            }
+            return true;
+
+        case ZMQ.ZMQ_OVERFLOW_DIR:
+            overflowDir = optval == null ? null : parseString(option, optval);
+            return true;
+
+        case ZMQ.ZMQ_OVERFLOW_SIZE:
+            overflowSize = (Long) optval;
+            if (overflowSize < 0) {
+                throw new IllegalArgumentException("overflowSize " + optval);
+            }
+            return true;
+
         case ZMQ.ZMQ_AFFINITY:
             affinity = (Long) optval;
             return true;
@@ -394,6 +446,41 @@ public class Options
             conflate = parseBoolean(option, optval);
             return true;
 
+        case ZMQ.ZMQ_CONFLATE_KEY:
+            if (optval == null || optval instanceof ConflateKey) {
+                conflateKey = (ConflateKey) optval;
+                return true;
+            }
+            else if (optval instanceof Integer) {
+                //  Length of the prefix used as key.
+                conflateKey = ConflateKey.prefix((Integer) optval);
+                return true;
+            }
+            return false;
+
+        case ZMQ.ZMQ_PIPE_RING:
+            pipeRing = parseBoolean(option, optval);
+            return true;
+
+        case ZMQ.ZMQ_SPECULATIVE_WRITE:
+            speculativeWrite = parseBoolean(option, optval);
+            return true;
+
+        case ZMQ.ZMQ_WAIT_STRATEGY:
+            if (optval instanceof WaitStrategy) {
+                waitStrategy = (WaitStrategy) optval;
+                return true;
+            }
+            else if (optval instanceof Integer) {
+                int ordinal = (Integer) optval;
+                if (ordinal < 0 || ordinal >= WaitStrategy.values().length) {
+                    return false;
+                }
+                waitStrategy = WaitStrategy.values()[ordinal];
+                return true;
+            }
+            return false;
+
         case ZMQ.ZMQ_GSSAPI_SERVER:
             asServer = parseBoolean(option, optval);
             mechanism = Mechanisms.GSSAPI;
@@ -665,6 +752,18 @@ public class Options
         case ZMQ.ZMQ_RCVHWM:
             return recvHwm;
 
+        case ZMQ.ZMQ_SNDHWM_BYTES:
+            return sendHwmBytes;
+
+        case ZMQ.ZMQ_RCVHWM_BYTES:
+            return recvHwmBytes;
+
+        case ZMQ.ZMQ_OVERFLOW_DIR:
+            return overflowDir;
+
+        case ZMQ.ZMQ_OVERFLOW_SIZE:
+            return overflowSize;
+
         case ZMQ.ZMQ_AFFINITY:
             return affinity;
 
@@ -771,6 +870,18 @@ public class Options
         case ZMQ.ZMQ_CONFLATE:
             return conflate;
 
+        case ZMQ.ZMQ_CONFLATE_KEY:
+            return conflateKey;
+
+        case ZMQ.ZMQ_PIPE_RING:
+            return pipeRing;
+
+        case ZMQ.ZMQ_SPECULATIVE_WRITE:
+            return speculativeWrite;
+
+        case ZMQ.ZMQ_WAIT_STRATEGY:
+            return waitStrategy;
+
         case ZMQ.ZMQ_GSSAPI_SERVER:
             return asServer && mechanism == Mechanisms.GSSAPI;
 
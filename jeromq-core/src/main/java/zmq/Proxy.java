@@ -4,6 +4,7 @@ import java.nio.channels.Selector;
 import java.util.Arrays;
 
 import zmq.poll.PollItem;
+import zmq.poll.PollSet;
 
 class Proxy
 {
@@ -59,9 +60,23 @@ class Proxy
         Selector selector = frontend.getCtx().createSelector();
 
         try {
+            //  The items are registered once for all the polls.
+            PollSet pollin = new PollSet(selector);
+            for (PollItem item : items) {
+                if (!pollin.add(item)) {
+                    return false;
+                }
+            }
+            PollSet pollout = new PollSet(selector);
+            for (PollItem item : itemsout) {
+                if (!pollout.add(item)) {
+                    return false;
+                }
+            }
+
             while (state != State.TERMINATED) {
                 //  Wait while there are either requests or replies to process.
-                rc = ZMQ.poll(selector, items, -1);
+                rc = pollin.poll(-1);
                 if (rc < 0) {
                     return false;
                 }
@@ -70,7 +85,7 @@ class Proxy
                 //  because pollout shall most of the time return directly.
                 //  POLLOUT is only checked when frontend and backend sockets are not the same.
                 if (frontend != backend) {
-                    rc = ZMQ.poll(selector, itemsout, 0L);
+                    rc = pollout.poll(0L);
                     if (rc < 0) {
                         return false;
                     }
@@ -5,12 +5,11 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
-import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.Pipe;
 import java.nio.channels.SelectableChannel;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import zmq.util.Errno;
 import zmq.util.Utils;
@@ -19,6 +18,12 @@ import zmq.util.Utils;
 //  to signal_fd there can be at most one signal in the signaler at any
 //  given moment. Attempt to send a signal before receiving the previous
 //  one will result in undefined behaviour.
+//
+//  The file descriptor is only created when requested, to be polled.
+//  Until then, the writers only count the signals.
+//  Whether or not it exists, the reader waits for signals by parking its thread
+//  and the writers unpark it, so that a virtual thread waiting for a signal
+//  releases its carrier thread instead of blocking it in a selector.
 final class Signaler implements Closeable
 {
     private interface IoOperation<O>
@@ -26,43 +31,34 @@ final class Signaler implements Closeable
         O call() throws IOException;
     }
 
-    //  Underlying write & read file descriptor.
-    private final Pipe.SinkChannel   w;
-    private final Pipe.SourceChannel r;
-    private final Selector           selector;
+    //  Set in the write cursor once the signals are passed through the file descriptor.
+    private static final long FD_MODE = Long.MIN_VALUE;
+
+    //  Underlying write & read file descriptor, created on demand.
+    private Pipe.SinkChannel   w;
+    private Pipe.SourceChannel r;
     private final ThreadLocal<ByteBuffer>         wdummy = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1));
     private final ThreadLocal<ByteBuffer>         rdummy = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1));
 
     // Selector.selectNow at every sending message doesn't show enough performance
+    // The number of signals sent, with the mode of the signaler.
     private final AtomicLong wcursor = new AtomicLong(0);
     private long             rcursor = 0;
 
+    //  Thread of the reader waiting for a signal, if any.
+    private volatile Thread waiter;
+    private volatile boolean closed;
+
+    //  How the reader waits for a signal.
+    private volatile WaitStrategy strategy = WaitStrategy.BLOCKING;
+
     private final Errno errno;
     private final int   pid;
-    private final Ctx   ctx;
 
-    Signaler(Ctx ctx, int pid, Errno errno)
+    Signaler(int pid, Errno errno)
     {
-        this.ctx = ctx;
         this.pid = pid;
         this.errno = errno;
-        //  Create the socket pair for signaling.
-
-        try {
-            Pipe pipe = Pipe.open();
-
-            r = pipe.source();
-            w = pipe.sink();
-
-            //  Set both fds to non-blocking mode.
-            Utils.unblockSocket(w, r);
-
-            selector = ctx.createSelector();
-            r.register(selector, SelectionKey.OP_READ);
-        }
-        catch (IOException e) {
-            throw new ZError.IOException(e);
-        }
     }
 
     private <O> O maksInterrupt(IoOperation<O> operation) throws IOException
@@ -88,8 +84,16 @@ final class Signaler implements Closeable
     }
 
     @Override
-    public void close() throws IOException
+    public synchronized void close() throws IOException
     {
+        closed = true;
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        if (r == null) {
+            return;
+        }
         IOException exception = null;
         IoOperation<Object> op1 = () -> {
             r.close();
@@ -99,12 +103,8 @@ final class Signaler implements Closeable
             w.close();
             return null;
         };
-        IoOperation<Object> op3 = () -> {
-            ctx.closeSelector(selector);
-            return null;
-        };
 
-        for (IoOperation<?> op : new IoOperation<?>[] {op1, op2, op3}) {
+        for (IoOperation<?> op : new IoOperation<?>[] {op1, op2}) {
             try {
                 maksInterrupt(op);
             }
@@ -120,12 +120,48 @@ final class Signaler implements Closeable
         }
     }
 
-    SelectableChannel getFd()
+    //  Returns the file descriptor readable when a signal is pending,
+    //  creating it on the first call. Called by the reader.
+    synchronized SelectableChannel getFd()
     {
+        if (r == null) {
+            //  Create the socket pair for signaling.
+            try {
+                Pipe pipe = Pipe.open();
+
+                r = pipe.source();
+                w = pipe.sink();
+
+                //  Set both fds to non-blocking mode.
+                Utils.unblockSocket(w, r);
+            }
+            catch (IOException e) {
+                throw new ZError.IOException(e);
+            }
+
+            //  From now on, the writers pass the signals through the file descriptor.
+            //  The ones already sent but not received yet are passed on behalf of them.
+            long sent = wcursor.getAndUpdate(cursor -> cursor | FD_MODE);
+            for (long pending = sent - rcursor; pending > 0; --pending) {
+                write();
+            }
+        }
         return r;
     }
 
     void send()
+    {
+        long cursor = wcursor.getAndIncrement();
+        if ((cursor & FD_MODE) != 0) {
+            write();
+        }
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void write()
     {
         int nbytes = 0;
 
@@ -138,7 +174,18 @@ final class Signaler implements Closeable
                 throw new ZError.IOException(e);
             }
         }
-        wcursor.incrementAndGet();
+    }
+
+    void setWaitStrategy(WaitStrategy strategy)
+    {
+        assert (strategy != null);
+        this.strategy = strategy;
+    }
+
+    //  Returns true if a signal has been sent and not received yet.
+    private boolean pending()
+    {
+        return rcursor < (wcursor.get() & ~FD_MODE);
     }
 
     boolean waitEvent(long timeout)
@@ -148,54 +195,103 @@ final class Signaler implements Closeable
             errno.set(ZError.EINTR);
             return false;
         }
-        int rc;
-        boolean brc = (rcursor < wcursor.get());
-        if (brc) {
+        if (pending()) {
             return true;
         }
-        try {
-            if (timeout == 0) {
-                // waitEvent(0) is called every read/send of SocketBase
-                // instant readiness is not strictly required
-                // On the other hand, we can save lots of system call and increase performance
+        if (timeout == 0) {
+            // waitEvent(0) is called every read/send of SocketBase
+            // instant readiness is not strictly required
+            // On the other hand, we can save lots of system call and increase performance
+            errno.set(ZError.EAGAIN);
+            return false;
+        }
+        final WaitStrategy strategy = this.strategy;
+        if (strategy != WaitStrategy.BLOCKING) {
+            if (spin(strategy, timeout)) {
+                return true;
+            }
+            if (closed || Thread.interrupted()) {
+                errno.set(ZError.EINTR);
+                return false;
+            }
+            if (strategy != WaitStrategy.SPIN_PARK) {
+                //  The timeout has expired while spinning.
                 errno.set(ZError.EAGAIN);
                 return false;
+            }
+        }
+        return park(timeout);
+    }
 
+    //  Waits for a signal without blocking the thread, spinning for a while, or until the timeout
+    //  for the busy spin strategy, then yielding the processor for the spin-yield strategy.
+    //  Returns true if a signal is pending, false if the spin is over or was interrupted.
+    private boolean spin(WaitStrategy strategy, long timeout)
+    {
+        final long start = System.nanoTime();
+        final long spin = strategy == WaitStrategy.BUSY_SPIN ? Long.MAX_VALUE : Config.WAIT_SPIN_DURATION.getValue();
+        final long limit = timeout < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (!pending()) {
+            if (closed || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            final long elapsed = System.nanoTime() - start;
+            if (elapsed >= limit) {
+                return false;
             }
-            else if (timeout < 0) {
-                rc = selector.select(0);
+            if (elapsed < spin) {
+                Thread.onSpinWait();
+            }
+            else if (strategy == WaitStrategy.SPIN_YIELD) {
+                Thread.yield();
             }
             else {
-                rc = selector.select(timeout);
+                return false;
             }
         }
-        catch (ClosedSelectorException e) {
-            errno.set(ZError.EINTR);
-            return false;
-        }
-        catch (IOException e) {
-            errno.set(ZError.exccode(e));
-            return false;
-        }
+        return true;
+    }
 
-        if (Thread.interrupted() || (rc == 0 && timeout <= 0 && ! selector.keys().isEmpty())) {
-            errno.set(ZError.EINTR);
-            return false;
+    //  Waits for a signal, counted before its byte is written to the file descriptor if any.
+    private boolean park(long timeout)
+    {
+        final long deadline = timeout < 0 ? 0 : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        waiter = Thread.currentThread();
+        try {
+            while (!pending()) {
+                if (closed || Thread.interrupted()) {
+                    errno.set(ZError.EINTR);
+                    return false;
+                }
+                if (timeout < 0) {
+                    LockSupport.park(this);
+                }
+                else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        errno.set(ZError.EAGAIN);
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+            return true;
         }
-        else if (rc == 0) {
-            errno.set(ZError.EAGAIN);
-            return false;
+        finally {
+            waiter = null;
         }
-
-        selector.selectedKeys().clear();
-
-        return true;
     }
 
     void recv()
     {
+        if ((wcursor.get() & FD_MODE) == 0) {
+            assert (pending());
+            rcursor++;
+            return;
+        }
         int nbytes = 0;
         // On windows, there may be a need to try several times until it succeeds
+        // The byte of a signal may also be written just after the signal was counted.
         while (nbytes == 0) {
             try {
                 rdummy.get().clear();
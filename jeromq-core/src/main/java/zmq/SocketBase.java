@@ -93,9 +93,15 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
     //  Socket's mailbox object.
     private final IMailbox mailbox;
 
+    //  Told when commands have been processed, except to check the events.
+    private volatile Runnable commandListener;
+
     //  the attached pipes.
     private final Set<Pipe> pipes;
 
+    //  The only attached pipe, if the socket may write its messages to the network from its own thread.
+    private Pipe speculativePipe;
+
     //  Reaper's poller and handle of this socket within it.
     private Poller poller;
     private Poller.Handle handle;
@@ -126,6 +132,9 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
     // Mutex for synchronize access to the socket in thread safe mode
     private final ReentrantLock threadSafeSync;
 
+    // Indicate if the I/O of the context is run by the application threads
+    private final boolean ioInline;
+
     protected SocketBase(Ctx parent, int tid, int sid)
     {
         this(parent, tid, sid, false);
@@ -156,6 +165,12 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
         this.threadSafeSync = new ReentrantLock();
 
         mailbox = new Mailbox(parent, "socket-" + sid, tid);
+
+        //  The thread waiting for the commands may be running the I/O instead.
+        ioInline = parent.isIoInline();
+        if (ioInline) {
+            ((Mailbox) mailbox).setWaker(parent::wakeupIo);
+        }
     }
 
     //  Concrete algorithms for the x- methods are to be defined by
@@ -245,6 +260,7 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
         //  First, register the pipe so that we can terminate it later on.
         pipe.setEventSink(this);
         pipes.add(pipe);
+        updateSpeculativePipe();
 
         //  Let the derived socket type know about new pipe.
         xattachPipe(pipe, subscribe2all, isLocallyInitiated);
@@ -277,6 +293,12 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
             //  the generic option parser.
             rc = options.setSocketOpt(option, optval);
             if (rc) {
+                if (option == ZMQ.ZMQ_WAIT_STRATEGY) {
+                    ((Mailbox) mailbox).setWaitStrategy(options.waitStrategy);
+                }
+                else if (option == ZMQ.ZMQ_SPECULATIVE_WRITE) {
+                    updateSpeculativePipe();
+                }
                 errno.set(0);
             }
             return rc;
@@ -301,7 +323,7 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
                 return rcvmore ? 1 : 0;
             }
             if (option == ZMQ.ZMQ_EVENTS) {
-                boolean rc = processCommands(0, false, null);
+                boolean rc = processCommands(0, false, null, false);
                 if (!rc && (errno.get() == ZError.ETERM || errno.get() == ZError.EINTR)) {
                     return -1;
                 }
@@ -351,7 +373,7 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
         }
 
         if (option == ZMQ.ZMQ_EVENTS) {
-            boolean rc = processCommands(0, false, null);
+            boolean rc = processCommands(0, false, null, false);
             if (!rc && (errno.get() == ZError.ETERM || errno.get() == ZError.EINTR)) {
                 return -1;
             }
@@ -521,6 +543,21 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
             else if (options.recvHwm != 0 && peer.options.sendHwm != 0) {
                 rcvhwm = options.recvHwm + peer.options.sendHwm;
             }
+            //  Same with the high-water marks in bytes.
+            long sndhwmBytes = 0;
+            if (peer.socket == null) {
+                sndhwmBytes = options.sendHwmBytes;
+            }
+            else if (options.sendHwmBytes != 0 && peer.options.recvHwmBytes != 0) {
+                sndhwmBytes = options.sendHwmBytes + peer.options.recvHwmBytes;
+            }
+            long rcvhwmBytes = 0;
+            if (peer.socket == null) {
+                rcvhwmBytes = options.recvHwmBytes;
+            }
+            else if (options.recvHwmBytes != 0 && peer.options.sendHwmBytes != 0) {
+                rcvhwmBytes = options.recvHwmBytes + peer.options.sendHwmBytes;
+            }
 
             //  Create a bi-directional pipe to connect the peers.
             ZObject[] parents = {this, peer.socket == null ? this : peer.socket};
@@ -531,7 +568,17 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
 
             int[] hwms = {conflate ? -1 : sndhwm, conflate ? -1 : rcvhwm};
             boolean[] conflates = {conflate, conflate};
-            Pipe[] pipes = Pipe.pair(parents, hwms, conflates);
+            Pipe[] pipes = Pipe.pair(parents, hwms, conflates, options.pipeRing, options.conflateKey);
+            if (!conflate) {
+                pipes[0].setBytesHwms(rcvhwmBytes, sndhwmBytes);
+                pipes[1].setBytesHwms(sndhwmBytes, rcvhwmBytes);
+            }
+            //  Each socket stores its own outbound messages. The overflow of a peer
+            //  not bound yet is set up when connecting the pending connection.
+            pipes[0].setOverflow(options.overflowDir, options.overflowSize);
+            if (peer.socket != null) {
+                pipes[1].setOverflow(peer.options.overflowDir, peer.options.overflowSize);
+            }
 
             //  Attach local end of the pipe to this socket object.
             attachPipe(pipes[0], true);
@@ -653,7 +700,12 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
 
             int[] hwms = {conflate ? -1 : options.sendHwm, conflate ? -1 : options.recvHwm};
             boolean[] conflates = {conflate, conflate};
-            Pipe[] pipes = Pipe.pair(parents, hwms, conflates);
+            Pipe[] pipes = Pipe.pair(parents, hwms, conflates, options.pipeRing, options.conflateKey);
+            if (!conflate) {
+                pipes[0].setBytesHwms(options.recvHwmBytes, options.sendHwmBytes);
+                pipes[1].setBytesHwms(options.sendHwmBytes, options.recvHwmBytes);
+            }
+            pipes[0].setOverflow(options.overflowDir, options.overflowSize);
 
             //  Attach local end of the pipe to the socket object.
             attachPipe(pipes[0], subscribe2all, true);
@@ -814,10 +866,16 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
 
             msg.resetMetadata();
 
+            //  A message to the only peer may be written to the network right away.
+            if (speculativePipe != null && !msg.hasMore() && writeSpeculatively(msg)) {
+                return true;
+            }
+
             //  Try to send the message.
             boolean rc = xsend(msg);
 
             if (rc) {
+                flushIo(flags);
                 return true;
             }
 
@@ -861,6 +919,7 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
                     }
                 }
             }
+            flushIo(flags);
             return true;
         }
         finally {
@@ -868,6 +927,15 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
         }
     }
 
+    //  Without an I/O thread of its own, the context only writes the last part of a message
+    //  to the network once the application runs the I/O.
+    private void flushIo(int flags)
+    {
+        if (ioInline && (flags & ZMQ.ZMQ_SNDMORE) == 0) {
+            getCtx().driveIo(0);
+        }
+    }
+
     public final Msg recv(int flags)
     {
         return recv(flags, null);
@@ -1129,11 +1197,18 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
     //  If throttle argument is true, commands are processed at most once
     //  in a predefined time period.
     private boolean processCommands(int timeout, boolean throttle, AtomicBoolean canceled)
+    {
+        return processCommands(timeout, throttle, canceled, true);
+    }
+
+    //  If the notify argument is true, the command listener is told when commands have been processed,
+    //  as they may have changed the events of the socket.
+    private boolean processCommands(int timeout, boolean throttle, AtomicBoolean canceled, boolean notify)
     {
         Command cmd;
         if (timeout != 0) {
-            //  If we are asked to wait, simply ask mailbox to wait.
-            cmd = mailbox.recv(timeout);
+            //  If we are asked to wait, simply ask mailbox to wait, running the I/O meanwhile if needed.
+            cmd = ioInline ? getCtx().recvInline((Mailbox) mailbox, timeout) : mailbox.recv(timeout);
         }
         else {
             //  If we are asked not to wait, check whether we haven't processed
@@ -1158,11 +1233,22 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
                 lastTsc = tsc;
             }
 
+            //  Let the I/O run by the application threads deliver its commands.
+            if (ioInline) {
+                getCtx().driveIo(0);
+            }
+
             //  Check whether there are any commands pending for this thread.
             cmd = mailbox.recv(0);
         }
 
         //  Process all the commands available at the moment.
+        if (cmd != null && notify) {
+            Runnable listener = commandListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
         while (cmd != null) {
             cmd.process();
             cmd = mailbox.recv(0);
@@ -1388,11 +1474,33 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
         //  Remove the pipe from the list of attached pipes and confirm its
         //  termination if we are already shutting down.
         pipes.remove(pipe);
+        updateSpeculativePipe();
         if (isTerminating()) {
             unregisterTermAck();
         }
     }
 
+    //  Only the sockets exchanging with a single peer may write their messages from their own thread.
+    private void updateSpeculativePipe()
+    {
+        boolean exclusive = options.type == ZMQ.ZMQ_PAIR || options.type == ZMQ.ZMQ_DEALER
+                || options.type == ZMQ.ZMQ_CLIENT;
+        if (options.speculativeWrite && exclusive && pipes.size() == 1) {
+            speculativePipe = pipes.iterator().next();
+        }
+        else {
+            speculativePipe = null;
+        }
+    }
+
+    //  Writes the message to the network from the thread of the socket, if the peer is connected
+    //  through an engine having nothing else to send. Returns false if it has to be sent as usual.
+    private boolean writeSpeculatively(Msg msg)
+    {
+        ZObject parent = speculativePipe.getPeerParent();
+        return parent instanceof SessionBase && ((SessionBase) parent).writeSpeculatively(speculativePipe, msg);
+    }
+
     //  Moves the flags from the message to local variables,
     //  to be later retrieved by getSocketOpt.
     private void extractFlags(Msg msg)
@@ -1610,6 +1718,22 @@ public abstract class SocketBase extends Own implements IPollEvents, Pipe.IPipeE
         return ((Mailbox) mailbox).getFd();
     }
 
+    //  Sets the listener called when a command is sent to the socket while it is not
+    //  processing commands, and when commands are processed by a call other than the one
+    //  checking the events of the socket. Null to remove it.
+    //  Used by socket groups and reactors instead of the file descriptor. Thread-safe sockets
+    //  are rejected, as other threads may receive from them concurrently with the one notified.
+    public final boolean setCommandListener(Runnable listener)
+    {
+        if (threadSafe) {
+            errno.set(ZError.EINVAL);
+            return false;
+        }
+        commandListener = listener;
+        ((Mailbox) mailbox).setListener(listener);
+        return true;
+    }
+
     public String typeString()
     {
         return Sockets.name(options.type);
@@ -0,0 +1,16 @@
+package zmq;
+
+//  How a socket waits for the commands of the other threads in blocking
+//  calls, such as the activation of a pipe on which messages arrived.
+//  Spinning strategies trade a processor core for a lower wakeup latency.
+public enum WaitStrategy
+{
+    //  The thread blocks until woken up by a signal.
+    BLOCKING,
+    //  The thread spins until the signal arrives, never releasing the processor.
+    BUSY_SPIN,
+    //  The thread spins for a while, then yields the processor between the checks.
+    SPIN_YIELD,
+    //  The thread spins for a while, then blocks until woken up by a signal.
+    SPIN_PARK
+}
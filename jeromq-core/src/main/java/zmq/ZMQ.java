@@ -19,6 +19,7 @@ import zmq.io.mechanism.Mechanisms;
 import zmq.io.net.SelectorProviderChooser;
 import zmq.msg.MsgAllocator;
 import zmq.msg.MsgAllocatorThreshold;
+import zmq.pipe.ConflateKey;
 import zmq.poll.PollItem;
 import zmq.util.Clock;
 import zmq.util.Utils;
@@ -157,6 +158,17 @@ public class ZMQ
     public static final int ZMQ_MSG_ALLOCATION_HEAP_THRESHOLD = ZMQ_CUSTOM_OPTION + 4;
     public static final int ZMQ_HEARTBEAT_CONTEXT             = ZMQ_CUSTOM_OPTION + 5;
     public static final int ZMQ_SELECTOR_PROVIDERCHOOSER      = ZMQ_CUSTOM_OPTION + 6;
+    public static final int ZMQ_PIPE_RING                     = ZMQ_CUSTOM_OPTION + 7;
+    public static final int ZMQ_SNDHWM_BYTES                  = ZMQ_CUSTOM_OPTION + 8;
+    public static final int ZMQ_RCVHWM_BYTES                  = ZMQ_CUSTOM_OPTION + 9;
+    public static final int ZMQ_OVERFLOW_DIR                  = ZMQ_CUSTOM_OPTION + 10;
+    public static final int ZMQ_OVERFLOW_SIZE                 = ZMQ_CUSTOM_OPTION + 11;
+    public static final int ZMQ_CONFLATE_KEY                  = ZMQ_CUSTOM_OPTION + 12;
+    public static final int ZMQ_WAIT_STRATEGY                 = ZMQ_CUSTOM_OPTION + 13;
+    public static final int ZMQ_IO_REBALANCE_IVL              = ZMQ_CUSTOM_OPTION + 14;
+    public static final int ZMQ_IO_BUSY_POLL                  = ZMQ_CUSTOM_OPTION + 15;
+    public static final int ZMQ_SPECULATIVE_WRITE             = ZMQ_CUSTOM_OPTION + 16;
+    public static final int ZMQ_IO_INLINE                     = ZMQ_CUSTOM_OPTION + 17;
 
     /*  Message options                                                           */
     public static final int ZMQ_MORE = 1;
@@ -277,6 +289,14 @@ public class ZMQ
      * Default value for {@link ZMQ#ZMQ_CONFLATE}
      */
     public static final boolean DEFAULT_CONFLATE = false;
+    /**
+     * Default value for {@link ZMQ#ZMQ_CONFLATE_KEY}
+     */
+    public static final ConflateKey DEFAULT_CONFLATE_KEY = null;
+    /**
+     * Default value for {@link ZMQ#ZMQ_PIPE_RING}
+     */
+    public static final boolean DEFAULT_PIPE_RING = false;
     /**
      * Default value for {@link ZMQ#ZMQ_DISCONNECT_MSG}
      */
@@ -337,6 +357,22 @@ public class ZMQ
      * Default value for {@link ZMQ#ZMQ_MECHANISM}
      */
     public static final Mechanisms DEFAULT_MECHANISM = Mechanisms.NULL;
+    /**
+     * Default value for {@link ZMQ#ZMQ_OVERFLOW_DIR}
+     */
+    public static final String DEFAULT_OVERFLOW_DIR = null;
+    /**
+     * Default value for {@link ZMQ#ZMQ_OVERFLOW_SIZE}
+     */
+    public static final long DEFAULT_OVERFLOW_SIZE = 0;
+    /**
+     * Default value for {@link ZMQ#ZMQ_WAIT_STRATEGY}
+     */
+    public static final WaitStrategy DEFAULT_WAIT_STRATEGY = WaitStrategy.BLOCKING;
+    /**
+     * Default value for {@link ZMQ#ZMQ_SPECULATIVE_WRITE}
+     */
+    public static final boolean DEFAULT_SPECULATIVE_WRITE = false;
     /**
      * Default value for {@link ZMQ#ZMQ_MSG_ALLOCATION_HEAP_THRESHOLD}
      */
@@ -357,6 +393,10 @@ public class ZMQ
      * Default value for {@link ZMQ#ZMQ_RCVHWM}
      */
     public static final int DEFAULT_RECV_HWM = 1000;
+    /**
+     * Default value for {@link ZMQ#ZMQ_RCVHWM_BYTES}
+     */
+    public static final long DEFAULT_RECV_HWM_BYTES = 0;
     /**
      * Default value for {@link ZMQ#ZMQ_RCVTIMEO}
      */
@@ -381,6 +421,10 @@ public class ZMQ
      * Default value for {@link ZMQ#ZMQ_SNDHWM}
      */
     public static final int DEFAULT_SEND_HWM = 1000;
+    /**
+     * Default value for {@link ZMQ#ZMQ_SNDHWM_BYTES}
+     */
+    public static final long DEFAULT_SEND_HWM_BYTES = 0;
     /**
      * Default value for {@link ZMQ#ZMQ_SNDTIMEO}
      */
@@ -1048,6 +1092,11 @@ public class ZMQ
                 }
             }
 
+            //  The I/O of a context without I/O thread runs while waiting.
+            if (waitMillis != 0) {
+                waitMillis = PollItem.runIo(items, count, waitMillis);
+            }
+
             //  Wait for events.
             try {
                 int rc;
@@ -52,7 +52,7 @@ public abstract class ZObject
             break;
 
         case ACTIVATE_WRITE:
-            processActivateWrite((Long) cmd.arg);
+            processActivateWrite();
             break;
 
         case STOP:
@@ -123,6 +123,10 @@ public abstract class ZObject
             processCancel();
             break;
 
+        case MIGRATE:
+            processMigrate();
+            break;
+
         case DONE:
         default:
             throw new IllegalArgumentException();
@@ -170,6 +174,12 @@ public abstract class ZObject
         return ctx.chooseIoThread(affinity);
     }
 
+    //  Chooses the I/O thread with the least traffic, other than the given one.
+    protected final IOThread chooseRebalanceTarget(IOThread source, long affinity)
+    {
+        return ctx.chooseRebalanceTarget(source, affinity);
+    }
+
     protected final void sendStop()
     {
         //  'stop' command goes always from administrative thread to
@@ -236,9 +246,9 @@ public abstract class ZObject
         sendCommand(cmd);
     }
 
-    protected final void sendActivateWrite(Pipe destination, long msgsRead)
+    protected final void sendActivateWrite(Pipe destination)
     {
-        Command cmd = new Command(destination, Command.Type.ACTIVATE_WRITE, msgsRead);
+        Command cmd = new Command(destination, Command.Type.ACTIVATE_WRITE);
         sendCommand(cmd);
     }
 
@@ -314,6 +324,20 @@ public abstract class ZObject
         sendCommand(cmd);
     }
 
+    protected final void sendMigrate(SessionBase destination, IOThread ioThread)
+    {
+        //  The session keeps its thread ID, so the command goes
+        //  straight to the mailbox of its new thread.
+        Command cmd = new Command(destination, Command.Type.MIGRATE);
+        ctx.sendCommand(ioThread.getTid(), cmd);
+    }
+
+    //  Passes a command to the thread an object has migrated to.
+    protected final void forwardCommand(Command cmd, IOThread ioThread)
+    {
+        ctx.sendCommand(ioThread.getTid(), cmd);
+    }
+
     protected void processStop()
     {
         throw new UnsupportedOperationException();
@@ -344,7 +368,7 @@ public abstract class ZObject
         throw new UnsupportedOperationException();
     }
 
-    protected void processActivateWrite(long msgsRead)
+    protected void processActivateWrite()
     {
         throw new UnsupportedOperationException();
     }
@@ -405,6 +429,11 @@ public abstract class ZObject
     {
     }
 
+    protected void processMigrate()
+    {
+        throw new UnsupportedOperationException();
+    }
+
     private void sendCommand(Command cmd)
     {
         ctx.sendCommand(cmd.destination.getTid(), cmd);
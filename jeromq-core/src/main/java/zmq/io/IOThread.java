@@ -3,16 +3,51 @@ package zmq.io;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.channels.SelectableChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import zmq.Command;
 import zmq.Ctx;
 import zmq.Mailbox;
+import zmq.ZMQ;
 import zmq.ZObject;
+import zmq.pipe.Pipe;
 import zmq.poll.IPollEvents;
 import zmq.poll.Poller;
+import zmq.util.Clock;
 
 public class IOThread extends ZObject implements IPollEvents, Closeable
 {
+    //  Snapshot of the load of an I/O thread.
+    public static final class Load
+    {
+        //  Number of file descriptors registered in the thread.
+        public final int  fds;
+        //  Traffic of the thread, measured during the last second.
+        public final long messagesPerSecond;
+        public final long bytesPerSecond;
+
+        public Load(int fds, long messagesPerSecond, long bytesPerSecond)
+        {
+            this.fds = fds;
+            this.messagesPerSecond = messagesPerSecond;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Load[fds=" + fds + ", messages/s=" + messagesPerSecond + ", bytes/s=" + bytesPerSecond + "]";
+        }
+    }
+
+    //  ID of the timer measuring the traffic.
+    private static final int LOAD_TIMER_ID = 0x10;
+
+    //  Interval between two measures of the traffic, in milliseconds.
+    private static final int LOAD_IVL = 1000;
+
     //  I/O thread accesses incoming commands via this mailbox.
     private final Mailbox mailbox;
 
@@ -22,16 +57,42 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
     //  I/O multiplexing is performed using a poller object.
     private final Poller poller;
 
+    //  Engines plugged in this thread. Their traffic makes the load of the thread.
+    private final Set<StreamEngine> engines = new HashSet<>();
+
+    //  True if the load timer is running.
+    private boolean hasLoadTimer;
+
+    //  Time of the last measure of the traffic.
+    private long lastMeasure;
+
+    //  Traffic measured during the last interval, readable from any thread.
+    private volatile long messagesPerSecond;
+    private volatile long bytesPerSecond;
+
+    //  Interval between the attempts to migrate a connection to a less
+    //  loaded thread, in milliseconds. 0 if the rebalancing is disabled.
+    private final int  rebalanceIvl;
+    private long       nextRebalance;
+
+    //  True if at least one session has migrated from this thread to another one.
+    private boolean migrated;
+
+    //  Held by the application thread running the poller of a thread that is not started.
+    private final ReentrantLock driver = new ReentrantLock();
+
     public IOThread(Ctx ctx, int tid)
     {
         super(ctx, tid);
         String name = "iothread-" + tid;
-        poller = new Poller(ctx, name);
+        poller = new Poller(ctx, name, ctx.get(ZMQ.ZMQ_IO_BUSY_POLL));
 
         mailbox = new Mailbox(ctx, name, tid);
         SelectableChannel fd = mailbox.getFd();
         mailboxHandle = poller.addHandle(fd, this);
         poller.setPollIn(mailboxHandle);
+
+        rebalanceIvl = ctx.get(ZMQ.ZMQ_IO_REBALANCE_IVL);
     }
 
     public void start()
@@ -51,6 +112,33 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
         sendStop();
     }
 
+    //  Runs the poller from the calling thread, for a thread that is not started,
+    //  waiting for events at most the given time, in milliseconds, -1 to wait until there are some.
+    //  Returns false without waiting if another thread is running it, or if the calling thread
+    //  is already running it, when called back by one of its handlers.
+    public boolean drive(long timeout)
+    {
+        if (driver.isHeldByCurrentThread() || !driver.tryLock()) {
+            return false;
+        }
+        try {
+            poller.runOnce(timeout);
+        }
+        finally {
+            driver.unlock();
+        }
+        return true;
+    }
+
+    //  Wakes up the application thread waiting in the poller, if any.
+    //  The thread running the poller sees the commands it sends once the poller returns.
+    public void wakeup()
+    {
+        if (!driver.isHeldByCurrentThread()) {
+            poller.wakeup();
+        }
+    }
+
     public Mailbox getMailbox()
     {
         return mailbox;
@@ -61,6 +149,21 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
         return poller.getLoad();
     }
 
+    public long getMessagesPerSecond()
+    {
+        return messagesPerSecond;
+    }
+
+    public long getBytesPerSecond()
+    {
+        return bytesPerSecond;
+    }
+
+    public Load load()
+    {
+        return new Load(getLoad(), messagesPerSecond, bytesPerSecond);
+    }
+
     @Override
     public void inEvent()
     {
@@ -74,8 +177,120 @@ public class IOThread extends ZObject implements IPollEvents, Closeable
                 break;
             }
 
-            //  Process the command.
-            cmd.process();
+            //  Process the command, unless its destination has migrated.
+            IOThread target = migrated ? migratedTo(cmd) : null;
+            if (target == null) {
+                cmd.process();
+            }
+            else {
+                forwardCommand(cmd, target);
+            }
+        }
+    }
+
+    //  Returns the thread the destination of the command lives in, if it
+    //  belongs to a session that has migrated from this thread.
+    private IOThread migratedTo(Command cmd)
+    {
+        ZObject destination = cmd.getDestination();
+        if (destination instanceof Pipe) {
+            destination = ((Pipe) destination).getParent();
+        }
+        if (destination instanceof SessionBase) {
+            IOThread target = ((SessionBase) destination).migratedTo();
+            if (target != this) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void timerEvent(int id)
+    {
+        assert (id == LOAD_TIMER_ID);
+
+        measure();
+        if (engines.isEmpty()) {
+            hasLoadTimer = false;
+        }
+        else {
+            poller.addTimer(LOAD_IVL, this, LOAD_TIMER_ID);
+        }
+    }
+
+    //  Called by the engines when they are plugged in the thread.
+    void register(StreamEngine engine)
+    {
+        engines.add(engine);
+        if (!hasLoadTimer) {
+            hasLoadTimer = true;
+            lastMeasure = Clock.nowMS();
+            nextRebalance = lastMeasure + rebalanceIvl;
+            poller.addTimer(LOAD_IVL, this, LOAD_TIMER_ID);
+        }
+    }
+
+    //  Called by the engines when they are unplugged from the thread.
+    void unregister(StreamEngine engine)
+    {
+        engines.remove(engine);
+    }
+
+    //  Measures the traffic of the engines since the last measure.
+    private void measure()
+    {
+        long now = Clock.nowMS();
+        long elapsed = Math.max(1, now - lastMeasure);
+        lastMeasure = now;
+
+        boolean rebalance = rebalanceIvl > 0 && now >= nextRebalance;
+        if (rebalance) {
+            nextRebalance = now + rebalanceIvl;
+        }
+
+        long messages = 0;
+        long bytes = 0;
+        long[] rates = rebalance ? new long[engines.size()] : null;
+        int index = 0;
+        for (StreamEngine engine : engines) {
+            messages += engine.takeMessages();
+            long engineBytes = engine.takeBytes();
+            bytes += engineBytes;
+            if (rebalance) {
+                rates[index++] = engineBytes * 1000 / elapsed;
+            }
+        }
+        messagesPerSecond = messages * 1000 / elapsed;
+        bytesPerSecond = bytes * 1000 / elapsed;
+
+        if (rebalance) {
+            rebalance(rates);
+        }
+    }
+
+    //  Migrates the busiest engine that can move to another thread without
+    //  making it busier than this one.
+    private void rebalance(long[] rates)
+    {
+        StreamEngine candidate = null;
+        IOThread candidateTarget = null;
+        long candidateRate = 0;
+        int index = 0;
+        for (StreamEngine engine : engines) {
+            long rate = rates[index++];
+            if (rate > candidateRate && engine.canMigrate()) {
+                IOThread target = chooseRebalanceTarget(this, engine.getAffinity());
+                if (target != null && target.getBytesPerSecond() + rate < bytesPerSecond) {
+                    candidate = engine;
+                    candidateTarget = target;
+                    candidateRate = rate;
+                }
+            }
+        }
+        if (candidate != null) {
+            candidate.migrate(candidateTarget);
+            migrated = true;
         }
     }
 
@@ -44,12 +44,19 @@ public class SessionBase extends Own implements Pipe.IPipeEvents, IPollEvents
     //  The protocol I/O engine connected to the session.
     private IEngine engine;
 
+    //  The engine the socket may write its messages to from its own thread, if enabled.
+    private volatile StreamEngine speculativeEngine;
+
     //  The socket the session belongs to.
     protected final SocketBase socket;
 
     //  I/O thread the session is living in. It will be used to plug in
     //  the engines into the same thread.
-    private final IOThread ioThread;
+    private IOThread ioThread;
+
+    //  I/O thread the session has migrated to, if any. The session keeps the
+    //  thread ID of its first thread, that forwards the commands to the new one.
+    private IOThread migratedTo;
 
     //  ID of the linger timer
     private static final int LINGER_TIMER_ID = 0x20;
@@ -60,7 +67,7 @@ public class SessionBase extends Own implements Pipe.IPipeEvents, IPollEvents
     //  Protocol and address to use when connecting.
     private final Address addr;
 
-    private final IOObject ioObject;
+    private IOObject ioObject;
 
     public SessionBase(IOThread ioThread, boolean connect, SocketBase socket, Options options, Address addr)
     {
@@ -223,6 +230,7 @@ public class SessionBase extends Own implements Pipe.IPipeEvents, IPollEvents
             if (engine != null) {
                 engine.terminate();
                 engine = null;
+                speculativeEngine = null;
             }
         }
 
@@ -338,6 +346,45 @@ public class SessionBase extends Own implements Pipe.IPipeEvents, IPollEvents
         return options.mechanism != Mechanisms.NULL || (options.zapDomain != null && !options.zapDomain.isEmpty());
     }
 
+    //  Returns true if the session and its engine are in a state allowing to migrate.
+    boolean canMigrate()
+    {
+        //  A session migrates at most once, so that its commands are
+        //  forwarded by a single thread and stay in order.
+        return migratedTo == null && !isTerminating() && !pending && !hasLingerTimer
+                && engine instanceof StreamEngine && ((StreamEngine) engine).canDetach();
+    }
+
+    //  Moves the session and its engine to another I/O thread.
+    void migrate(IOThread target)
+    {
+        assert (canMigrate());
+        assert (target != ioThread);
+
+        ((StreamEngine) engine).detach();
+        ioObject.unplug();
+        ioThread = target;
+        ioObject = new IOObject(target, this);
+        ioObject.plug();
+        migratedTo = target;
+
+        sendMigrate(this, target);
+    }
+
+    //  Returns the I/O thread the session has migrated to, or null.
+    IOThread migratedTo()
+    {
+        return migratedTo;
+    }
+
+    @Override
+    protected void processMigrate()
+    {
+        //  The engine has been detached from the previous thread, and
+        //  nothing has happened to the session since then.
+        ((StreamEngine) engine).attach(ioThread);
+    }
+
     @Override
     protected void processAttach(IEngine engine)
     {
@@ -351,7 +398,13 @@ public class SessionBase extends Own implements Pipe.IPipeEvents, IPollEvents
 
             int[] hwms = { conflate ? -1 : options.recvHwm, conflate ? -1 : options.sendHwm };
             boolean[] conflates = { conflate, conflate };
-            Pipe[] pipes = Pipe.pair(parents, hwms, conflates);
+            Pipe[] pipes = Pipe.pair(parents, hwms, conflates, options.pipeRing, options.conflateKey);
+            if (!conflate) {
+                pipes[0].setBytesHwms(options.sendHwmBytes, options.recvHwmBytes);
+                pipes[1].setBytesHwms(options.recvHwmBytes, options.sendHwmBytes);
+            }
+            //  Only the outbound messages of the socket are stored.
+            pipes[1].setOverflow(options.overflowDir, options.overflowSize);
 
             //  Plug the local end of the pipe.
             pipes[0].setEventSink(this);
@@ -368,12 +421,24 @@ public class SessionBase extends Own implements Pipe.IPipeEvents, IPollEvents
         assert (this.engine == null);
         this.engine = engine;
         this.engine.plug(ioThread, this);
+        if (options.speculativeWrite && engine instanceof StreamEngine) {
+            speculativeEngine = (StreamEngine) engine;
+        }
+    }
+
+    //  Writes a message of the socket from the thread of the socket, straight to the engine.
+    //  Returns false if the message has to go through the pipe.
+    public boolean writeSpeculatively(Pipe pipe, Msg msg)
+    {
+        StreamEngine engine = speculativeEngine;
+        return engine != null && engine.writeSpeculatively(pipe, msg);
     }
 
     public void engineError(boolean handshaked, ErrorReason reason)
     {
         //  Engine is dead. Let's forget about it.
         engine = null;
+        speculativeEngine = null;
 
         //  Remove any half-done messages from the pipes.
         if (pipe != null) {
@@ -4,7 +4,10 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import zmq.Config;
 import zmq.Msg;
@@ -12,6 +15,7 @@ import zmq.Options;
 import zmq.SocketBase;
 import zmq.ZError;
 import zmq.ZMQ;
+import zmq.io.coder.EncoderBase;
 import zmq.io.coder.IDecoder;
 import zmq.io.coder.IDecoder.Step;
 import zmq.io.coder.IEncoder;
@@ -24,6 +28,7 @@ import zmq.io.coder.v2.V2Encoder;
 import zmq.io.mechanism.Mechanism;
 import zmq.io.mechanism.Mechanisms;
 import zmq.io.net.Address;
+import zmq.pipe.Pipe;
 import zmq.poll.IPollEvents;
 import zmq.poll.Poller;
 import zmq.util.Blob;
@@ -80,6 +85,13 @@ public class StreamEngine implements IEngine, IPollEvents
 
     private IOObject ioObject;
 
+    //  I/O thread the engine is plugged in.
+    private IOThread ioThread;
+
+    //  Messages and bytes transferred since the last measure of the I/O thread.
+    private long messages;
+    private long bytes;
+
     //  Underlying socket.
     private SocketChannel fd;
 
@@ -93,6 +105,13 @@ public class StreamEngine implements IEngine, IPollEvents
     private int outsize;
     private IEncoder encoder;
 
+    //  The sequence of buffers to write with a single gathering write,
+    //  when the encoder supports it.
+    private final List<ByteBuffer> outbufs = new ArrayList<>();
+    private ByteBuffer[] outarray = new ByteBuffer[0];
+    private int outindex;
+    private int outcount;
+
     private Metadata metadata;
 
     //  When true, we are still trying to determine whether
@@ -156,6 +175,7 @@ public class StreamEngine implements IEngine, IPollEvents
     private boolean hasTtlTimer;
     private boolean hasTimeoutTimer;
     private boolean hasHeartbeatTimer;
+    private int heartbeatTtl;
     private final int heartbeatTimeout;
     private final byte[] heartbeatContext;
 
@@ -167,6 +187,10 @@ public class StreamEngine implements IEngine, IPollEvents
 
     private final Errno errno;
 
+    //  Held by the I/O thread while handling the events of the engine, and by the socket
+    //  writing its messages from its own thread. Null if the socket does not.
+    private final ReentrantLock lock;
+
     public StreamEngine(SocketChannel fd, final Options options, final String endpoint)
     {
         this.errno = options.errno;
@@ -175,6 +199,7 @@ public class StreamEngine implements IEngine, IPollEvents
         greetingSize = V2_GREETING_SIZE;
         this.options = options;
         this.endpoint = endpoint;
+        lock = options.speculativeWrite ? new ReentrantLock() : null;
         Supplier<Msg> nextIdentity = this::identityMsg;
         nextMsg = nextIdentity;
         processMsg = processIdentity;
@@ -237,6 +262,17 @@ public class StreamEngine implements IEngine, IPollEvents
 
     @Override
     public void plug(IOThread ioThread, SessionBase session)
+    {
+        lock();
+        try {
+            plugLocked(ioThread, session);
+        }
+        finally {
+            unlock();
+        }
+    }
+
+    private void plugLocked(IOThread ioThread, SessionBase session)
     {
         assert (!plugged);
         plugged = true;
@@ -248,6 +284,8 @@ public class StreamEngine implements IEngine, IPollEvents
         socket = session.getSocket();
 
         //  Connect to I/O threads poller object.
+        this.ioThread = ioThread;
+        ioThread.register(this);
         ioObject = new IOObject(ioThread, this);
         ioObject.plug();
         handle = ioObject.addFd(fd);
@@ -260,11 +298,11 @@ public class StreamEngine implements IEngine, IPollEvents
         if (options.rawSocket) {
             decoder = instantiate(options.decoder, inBatchSize, options.maxMsgSize);
             if (decoder == null) {
-                decoder = new RawDecoder(inBatchSize);
+                decoder = new RawDecoder(inBatchSize, options.allocator);
             }
             encoder = instantiate(options.encoder, outBatchSize, options.maxMsgSize);
             if (encoder == null) {
-                encoder = new RawEncoder(errno, outBatchSize);
+                encoder = new RawEncoder(errno, outBatchSize, options.allocator);
             }
 
             // disable handshaking for raw socket
@@ -365,12 +403,129 @@ public class StreamEngine implements IEngine, IPollEvents
 
         //  Disconnect from I/O threads poller object.
         ioObject.unplug();
+        ioThread.unregister(this);
 
         session = null;
     }
 
+    //  Returns true if the engine can be detached from its I/O thread.
+    boolean canDetach()
+    {
+        return plugged && !handshaking && !ioError && !hasHandshakeTimer
+                && (mechanism == null || mechanism.status() == Mechanism.Status.READY);
+    }
+
+    //  Unplugs the engine from its I/O thread, to be attached to another one
+    //  by the session.
+    void detach()
+    {
+        assert (canDetach());
+
+        //  The timers are cancelled but their flags are kept to restart them afterwards.
+        if (hasTtlTimer) {
+            ioObject.cancelTimer(HEARTBEAT_TTL_TIMER_ID);
+        }
+        if (hasTimeoutTimer) {
+            ioObject.cancelTimer(HEARTBEAT_TIMEOUT_TIMER_ID);
+        }
+        if (hasHeartbeatTimer) {
+            ioObject.cancelTimer(HEARTBEAT_IVL_TIMER_ID);
+        }
+
+        ioObject.removeHandle(handle);
+        handle = null;
+
+        ioObject.unplug();
+        ioThread.unregister(this);
+    }
+
+    //  Plugs a detached engine into its new I/O thread.
+    void attach(IOThread ioThread)
+    {
+        assert (plugged);
+        assert (handle == null);
+
+        this.ioThread = ioThread;
+        ioThread.register(this);
+        ioObject = new IOObject(ioThread, this);
+        ioObject.plug();
+        handle = ioObject.addFd(fd);
+
+        if (hasTtlTimer) {
+            ioObject.addTimer(heartbeatTtl, HEARTBEAT_TTL_TIMER_ID);
+        }
+        if (hasTimeoutTimer) {
+            ioObject.addTimer(heartbeatTimeout, HEARTBEAT_TIMEOUT_TIMER_ID);
+        }
+        if (hasHeartbeatTimer) {
+            ioObject.addTimer(options.heartbeatInterval, HEARTBEAT_IVL_TIMER_ID);
+        }
+
+        if (!inputStopped) {
+            ioObject.setPollIn(handle);
+        }
+        if (!outputStopped) {
+            ioObject.setPollOut(handle);
+        }
+    }
+
+    boolean canMigrate()
+    {
+        return session.canMigrate();
+    }
+
+    //  Moves the engine and its session to another I/O thread.
+    void migrate(IOThread target)
+    {
+        session.migrate(target);
+    }
+
+    long getAffinity()
+    {
+        return options.affinity;
+    }
+
+    //  Returns the number of messages transferred since the previous call.
+    long takeMessages()
+    {
+        lock();
+        try {
+            long count = messages;
+            messages = 0;
+            return count;
+        }
+        finally {
+            unlock();
+        }
+    }
+
+    //  Returns the number of bytes transferred since the previous call.
+    long takeBytes()
+    {
+        lock();
+        try {
+            long count = bytes;
+            bytes = 0;
+            return count;
+        }
+        finally {
+            unlock();
+        }
+    }
+
     @Override
     public void terminate()
+    {
+        lock();
+        try {
+            terminateLocked();
+        }
+        finally {
+            unlock();
+        }
+    }
+
+    private void terminateLocked()
     {
         unplug();
         destroy();
@@ -378,6 +533,17 @@ public class StreamEngine implements IEngine, IPollEvents
 
     @Override
     public void inEvent()
+    {
+        lock();
+        try {
+            inEventLocked();
+        }
+        finally {
+            unlock();
+        }
+    }
+
+    private void inEventLocked()
     {
         assert (!ioError);
 
@@ -446,6 +612,7 @@ public class StreamEngine implements IEngine, IPollEvents
             if (!rc) {
                 break;
             }
+            messages++;
         }
 
         // Tear down the connection if we have failed to decode input data
@@ -466,6 +633,17 @@ public class StreamEngine implements IEngine, IPollEvents
 
     @Override
     public void outEvent()
+    {
+        lock();
+        try {
+            outEventLocked();
+        }
+        finally {
+            unlock();
+        }
+    }
+
+    private void outEventLocked()
     {
         assert (!ioError);
 
@@ -478,21 +656,29 @@ public class StreamEngine implements IEngine, IPollEvents
                 assert (handshaking);
                 return;
             }
-            outpos.set(null);
-            outsize = encoder.encode(outpos, 0);
-
             //  Make sure batch sizes match large buffer sizes
             final int outBatchSize = Math.max(options.sndbuf, Config.OUT_BATCH_SIZE.getValue());
 
-            while (outsize < outBatchSize) {
-                Msg msg = nextMsg.get();
-                if (msg == null) {
-                    break;
+            if (encoder instanceof EncoderBase) {
+                //  Headers and message bodies are gathered without being
+                //  concatenated, and written in a single call.
+                gather((EncoderBase) encoder, outBatchSize);
+            }
+            else {
+                outpos.set(null);
+                outsize = encoder.encode(outpos, 0);
+
+                while (outsize < outBatchSize) {
+                    Msg msg = nextMsg.get();
+                    if (msg == null) {
+                        break;
+                    }
+                    messages++;
+                    encoder.loadMsg(msg);
+                    int n = encoder.encode(outpos, outBatchSize - outsize);
+                    assert (n > 0);
+                    outsize += n;
                 }
-                encoder.loadMsg(msg);
-                int n = encoder.encode(outpos, outBatchSize - outsize);
-                assert (n > 0);
-                outsize += n;
             }
 
             //  If there is no data to send, stop polling for output.
@@ -513,7 +699,7 @@ public class StreamEngine implements IEngine, IPollEvents
         //  arbitrarily large. However, we assume that underlying TCP layer has
         //  limited transmission buffer and thus the actual number of bytes
         //  written should be reasonably modest.
-        int nbytes = write(outpos.get());
+        int nbytes = outcount > 0 ? writeGathered() : write(outpos.get());
 
         //  IO error has occurred. We stop waiting for output events.
         //  The engine is not terminated until we detect input error;
@@ -534,8 +720,42 @@ public class StreamEngine implements IEngine, IPollEvents
         }
     }
 
+    //  Fills the sequence of buffers to write with a batch of encoded messages.
+    private void gather(EncoderBase encoder, int outBatchSize)
+    {
+        outbufs.clear();
+        outsize = encoder.encode(outbufs, outBatchSize);
+
+        while (outsize < outBatchSize) {
+            Msg msg = nextMsg.get();
+            if (msg == null) {
+                break;
+            }
+            messages++;
+            encoder.loadMsg(msg);
+            int n = encoder.encode(outbufs, outBatchSize - outsize);
+            assert (n > 0);
+            outsize += n;
+        }
+
+        outarray = outbufs.toArray(outarray);
+        outcount = outbufs.size();
+        outindex = 0;
+    }
+
     @Override
     public void restartOutput()
+    {
+        lock();
+        try {
+            restartOutputLocked();
+        }
+        finally {
+            unlock();
+        }
+    }
+
+    private void restartOutputLocked()
     {
         if (ioError) {
             return;
@@ -553,8 +773,67 @@ public class StreamEngine implements IEngine, IPollEvents
         outEvent();
     }
 
+    //  Writes a message of the socket from the thread of the socket, saving the hop to the I/O thread.
+    //  This is only done when the engine has nothing else to send and has read all the messages
+    //  of the pipe, for the message not to overtake them. The data the network does not take at once
+    //  are left to the I/O thread. Returns false if the message has to go through the pipe.
+    public boolean writeSpeculatively(Pipe pipe, Msg msg)
+    {
+        if (lock == null || !lock.tryLock()) {
+            return false;
+        }
+        try {
+            if (!plugged || handshaking || ioError || !outputStopped || outsize > 0 || nextMsg != pullAndEncode
+                    || !(encoder instanceof EncoderBase) || !pipe.isDrained()) {
+                return false;
+            }
+            //  Large messages are left to the I/O thread, the encoder has to be empty afterwards.
+            final int outBatchSize = Math.max(options.sndbuf, Config.OUT_BATCH_SIZE.getValue());
+            if (msg.size() > outBatchSize / 2) {
+                return false;
+            }
+            EncoderBase encoder = (EncoderBase) this.encoder;
+            outbufs.clear();
+            int pending = encoder.encode(outbufs, outBatchSize);
+            assert (pending == 0);
+            encoder.loadMsg(mechanism.encode(msg));
+            outsize = encoder.encode(outbufs, outBatchSize);
+            outarray = outbufs.toArray(outarray);
+            outcount = outbufs.size();
+            outindex = 0;
+            messages++;
+            encoder.encoded();
+
+            //  On error, the engine is terminated by the I/O thread once it detects it on input.
+            int nbytes = writeGathered();
+            if (nbytes > 0) {
+                outsize -= nbytes;
+            }
+            if (outsize > 0 && nbytes >= 0) {
+                //  The I/O thread is woken up as if a message had been written to the pipe,
+                //  and polls for output until the rest is written.
+                pipe.resumeReader();
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     public void restartInput()
+    {
+        lock();
+        try {
+            restartInputLocked();
+        }
+        finally {
+            unlock();
+        }
+    }
+
+    private void restartInputLocked()
     {
         assert (inputStopped);
         assert (session != null);
@@ -570,6 +849,7 @@ public class StreamEngine implements IEngine, IPollEvents
             }
             return;
         }
+        messages++;
         boolean decodingSuccess = decodeCurrentInputs();
         if (!decodingSuccess && errno.is(ZError.EAGAIN)) {
             session.flush();
@@ -606,6 +886,7 @@ public class StreamEngine implements IEngine, IPollEvents
             if (!processMsg.apply(decoder.msg())) {
                 return false;
             }
+            messages++;
         }
         return true;
     }
@@ -731,7 +1012,7 @@ public class StreamEngine implements IEngine, IPollEvents
 
             zmtpVersion = Protocol.V0;
 
-            encoder = new V1Encoder(errno, outBatchSize);
+            encoder = new V1Encoder(errno, outBatchSize, options.allocator);
             decoder = new V1Decoder(errno, inBatchSize, options.maxMsgSize, options.allocator);
 
             //  We have already sent the message header.
@@ -778,7 +1059,7 @@ public class StreamEngine implements IEngine, IPollEvents
                 error(ErrorReason.PROTOCOL);
                 return false;
             }
-            encoder = new V1Encoder(errno, outBatchSize);
+            encoder = new V1Encoder(errno, outBatchSize, options.allocator);
             decoder = new V1Decoder(errno, inBatchSize, options.maxMsgSize, options.allocator);
 
             decodeDataAfterHandshake(V2_GREETING_SIZE);
@@ -793,7 +1074,7 @@ public class StreamEngine implements IEngine, IPollEvents
                 error(ErrorReason.PROTOCOL);
                 return false;
             }
-            encoder = new V2Encoder(errno, outBatchSize);
+            encoder = new V2Encoder(errno, outBatchSize, options.allocator);
             decoder = new V2Decoder(errno, inBatchSize, options.maxMsgSize, options.allocator);
 
             decodeDataAfterHandshake(V2_GREETING_SIZE);
@@ -801,7 +1082,7 @@ public class StreamEngine implements IEngine, IPollEvents
         else {
             zmtpVersion = Protocol.V3;
 
-            encoder = new V2Encoder(errno, outBatchSize);
+            encoder = new V2Encoder(errno, outBatchSize, options.allocator);
             decoder = new V2Decoder(errno, inBatchSize, options.maxMsgSize, options.allocator);
 
             greetingRecv.position(V2_GREETING_SIZE);
@@ -939,6 +1220,17 @@ public class StreamEngine implements IEngine, IPollEvents
 
     @Override
     public void zapMsgAvailable()
+    {
+        lock();
+        try {
+            zapMsgAvailableLocked();
+        }
+        finally {
+            unlock();
+        }
+    }
+
+    private void zapMsgAvailableLocked()
     {
         assert (mechanism != null);
 
@@ -1142,6 +1434,17 @@ public class StreamEngine implements IEngine, IPollEvents
 
     @Override
     public void timerEvent(int id)
+    {
+        lock();
+        try {
+            timerEventLocked(id);
+        }
+        finally {
+            unlock();
+        }
+    }
+
+    private void timerEventLocked(int id)
     {
         if (id == HANDSHAKE_TIMER_ID) {
             hasHandshakeTimer = false;
@@ -1225,6 +1528,7 @@ public class StreamEngine implements IEngine, IPollEvents
         if (!hasTtlTimer && remoteHeartbeatTtl > 0) {
             ioObject.addTimer(remoteHeartbeatTtl, HEARTBEAT_TTL_TIMER_ID);
             hasTtlTimer = true;
+            heartbeatTtl = remoteHeartbeatTtl;
         }
         // extract the ping context that will be sent back inside the pong message
         int remaining = msg.size() - 7;
@@ -1245,6 +1549,20 @@ public class StreamEngine implements IEngine, IPollEvents
         return true;
     }
 
+    private void lock()
+    {
+        if (lock != null) {
+            lock.lock();
+        }
+    }
+
+    private void unlock()
+    {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
     //  Writes data to the socket. Returns the number of bytes actually
     //  written (even zero is to be considered to be a success). In case
     //  of error or orderly shutdown by the other peer -1 is returned.
@@ -1256,6 +1574,7 @@ public class StreamEngine implements IEngine, IPollEvents
             if (nbytes == 0) {
                 errno.set(ZError.EAGAIN);
             }
+            bytes += nbytes;
         }
         catch (IOException e) {
             errno.set(ZError.ENOTCONN);
@@ -1265,6 +1584,34 @@ public class StreamEngine implements IEngine, IPollEvents
         return nbytes;
     }
 
+    //  Writes the gathered sequence of buffers to the socket, in a single call.
+    //  Returns the number of bytes actually written or -1 on error.
+    private int writeGathered()
+    {
+        long nbytes;
+        try {
+            nbytes = fd.write(outarray, outindex, outcount - outindex);
+            if (nbytes == 0) {
+                errno.set(ZError.EAGAIN);
+            }
+            bytes += nbytes;
+        }
+        catch (IOException e) {
+            errno.set(ZError.ENOTCONN);
+            return -1;
+        }
+
+        //  Skip the buffers fully written.
+        while (outindex < outcount && !outarray[outindex].hasRemaining()) {
+            outarray[outindex++] = null;
+        }
+        if (outindex == outcount) {
+            outcount = 0;
+            outindex = 0;
+        }
+        return (int) nbytes;
+    }
+
     //  Reads data from the socket (up to 'size' bytes).
     //  Returns the number of bytes actually read or -1 on error.
     //  Zero indicates the peer has closed the connection.
@@ -1288,6 +1635,9 @@ public class StreamEngine implements IEngine, IPollEvents
                     nbytes = -1;
                 }
             }
+            else {
+                bytes += nbytes;
+            }
         }
         catch (IOException e) {
             errno.set(ZError.ENOTCONN);
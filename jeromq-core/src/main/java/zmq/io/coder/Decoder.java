@@ -68,7 +68,7 @@ public abstract class Decoder extends DecoderBase
 
     public Decoder(Errno errno, int bufsize, long maxmsgsize, MsgAllocator allocator)
     {
-        super(errno, bufsize);
+        super(errno, bufsize, allocator);
         this.maxmsgsize = maxmsgsize;
         this.allocator = allocator;
     }
@@ -3,6 +3,7 @@ package zmq.io.coder;
 import java.nio.ByteBuffer;
 
 import zmq.Msg;
+import zmq.msg.MsgAllocator;
 import zmq.util.Errno;
 import zmq.util.ValueReference;
 
@@ -32,18 +33,34 @@ public abstract class DecoderBase implements IDecoder
 
     private final ByteBuffer buf;
 
+    //  The owner of the buffer, if provided by an allocator.
+    private final Msg batch;
+
     private Step next;
 
     private final Errno errno;
 
     public DecoderBase(Errno errno, int bufsize)
+    {
+        this(errno, bufsize, null);
+    }
+
+    //  The buffer for data to decode is provided by the allocator, if any.
+    public DecoderBase(Errno errno, int bufsize, MsgAllocator allocator)
     {
         next = null;
         readPos = null;
         toRead = 0;
         this.bufsize = bufsize;
         assert (bufsize > 0);
-        buf = ByteBuffer.allocateDirect(bufsize);
+        if (allocator == null) {
+            batch = null;
+            buf = ByteBuffer.allocateDirect(bufsize);
+        }
+        else {
+            batch = allocator.allocateBatch(bufsize);
+            buf = batch.buf();
+        }
         this.errno = errno;
     }
 
@@ -154,5 +171,8 @@ public abstract class DecoderBase implements IDecoder
     @Override
     public void destroy()
     {
+        if (batch != null) {
+            batch.release();
+        }
     }
 }
@@ -1,5 +1,6 @@
 package zmq.io.coder;
 
+import zmq.msg.MsgAllocator;
 import zmq.util.Errno;
 
 public abstract class Encoder extends EncoderBase
@@ -13,6 +14,11 @@ public abstract class Encoder extends EncoderBase
         super(errno, bufsize);
     }
 
+    protected Encoder(Errno errno, int bufsize, MsgAllocator allocator)
+    {
+        super(errno, bufsize, allocator);
+    }
+
     protected abstract void sizeReady();
 
     protected abstract void messageReady();
@@ -1,8 +1,12 @@
 package zmq.io.coder;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
+import zmq.Config;
 import zmq.Msg;
+import zmq.msg.MsgAllocator;
 import zmq.util.Errno;
 import zmq.util.ValueReference;
 
@@ -11,6 +15,31 @@ public abstract class EncoderBase implements IEncoder
     //  Where to get the data to write from.
     private ByteBuffer writeBuf;
 
+    //  The remaining parts to write of a composite message, if any.
+    private ByteBuffer[] segments;
+    private int          segment;
+
+    //  If true, the data to write belongs to the message being encoded,
+    //  and can be handed over as is instead of being copied.
+    private boolean body;
+
+    //  Minimal size of a part of message body to be handed over without copy
+    //  when encoding a sequence of buffers.
+    private final int gatherThreshold = Config.OUT_GATHER_THRESHOLD.getValue();
+
+    //  Start of the region of the encoder buffer not yet added to the sequence of buffers.
+    private int mark;
+
+    //  Last region of the encoder buffer added to the sequence of buffers.
+    private ByteBuffer copied;
+
+    //  Messages whose body is referenced by the sequence of buffers being written.
+    private final List<Msg> referenced = new ArrayList<>();
+
+    //  If true, the message in progress is one of the referenced ones.
+    //  It stays referenced until the batch holding its last byte has been written.
+    private boolean held;
+
     //  Next step. If set to null, it means that associated data stream
     //  is dead.
     private Runnable next;
@@ -24,6 +53,9 @@ public abstract class EncoderBase implements IEncoder
     //  The buffer for encoded data.
     private final ByteBuffer buffer;
 
+    //  The owner of the buffer, if provided by an allocator.
+    private final Msg batch;
+
     private final int bufferSize;
 
     private boolean error;
@@ -33,10 +65,23 @@ public abstract class EncoderBase implements IEncoder
     private final Errno errno;
 
     protected EncoderBase(Errno errno, int bufferSize)
+    {
+        this(errno, bufferSize, null);
+    }
+
+    //  The buffer for encoded data is provided by the allocator, if any.
+    protected EncoderBase(Errno errno, int bufferSize, MsgAllocator allocator)
     {
         this.errno = errno;
         this.bufferSize = bufferSize;
-        buffer = ByteBuffer.allocateDirect(bufferSize);
+        if (allocator == null) {
+            batch = null;
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        else {
+            batch = allocator.allocateBatch(bufferSize);
+            buffer = batch.buf();
+        }
         error = false;
     }
 
@@ -76,6 +121,9 @@ public abstract class EncoderBase implements IEncoder
             //  in the buffer.
             if (toWrite == 0) {
                 if (newMsgFlag) {
+                    //  The whole message has been either copied or written,
+                    //  its payload can be given back.
+                    inProgress.release();
                     inProgress = null;
                     break;
                 }
@@ -93,24 +141,38 @@ public abstract class EncoderBase implements IEncoder
             //  other engines running in the same I/O thread for excessive
             //  amounts of time.
             if (pos == 0 && data.get() == null && toWrite >= bufferSize) {
-                writeBuf.limit(writeBuf.capacity());
-                data.set(writeBuf);
-                pos = toWrite;
-                writeBuf = null;
-                toWrite = 0;
-                return pos;
+                if (segments == null) {
+                    writeBuf.limit(writeBuf.capacity());
+                    data.set(writeBuf);
+                    pos = toWrite;
+                    writeBuf = null;
+                    toWrite = 0;
+                    return pos;
+                }
+                //  Same with the large segments of a composite message.
+                if (writeBuf.remaining() >= bufferSize) {
+                    data.set(writeBuf);
+                    pos = writeBuf.remaining();
+                    toWrite -= pos;
+                    nextSegment();
+                    return pos;
+                }
             }
 
             //  Copy data to the buffer. If the buffer is full, return.
             int toCopy = Math.min(toWrite, bufferSize - pos);
             int limit = writeBuf.limit();
-            writeBuf.limit(Math.min(writeBuf.capacity(), writeBuf.position() + toCopy));
+            writeBuf.limit(Math.min(limit, writeBuf.position() + toCopy));
             int current = buf.position();
             buf.put(writeBuf);
             toCopy = buf.position() - current;
             writeBuf.limit(limit);
             pos += toCopy;
             toWrite -= toCopy;
+
+            if (segments != null && !writeBuf.hasRemaining()) {
+                nextSegment();
+            }
         }
 
         data.set(buf);
@@ -118,6 +180,109 @@ public abstract class EncoderBase implements IEncoder
         return pos;
     }
 
+    //  The function appends a batch of binary data to a sequence of buffers,
+    //  to be written at once with a gathering write. Header data and small message parts
+    //  are copied into the encoder buffer, while the large parts of message bodies are
+    //  referenced as is. An empty sequence starts a new batch: the previous one shall have been fully written.
+    //  Returns the number of bytes added to the sequence, at most size.
+    public final int encode(List<ByteBuffer> data, int size)
+    {
+        if (data.isEmpty()) {
+            //  The previous batch has been written, the messages it referenced can be released,
+            //  except the one in progress, whose body is still being read.
+            for (Msg msg : referenced) {
+                if (!held || msg != inProgress) {
+                    msg.release();
+                }
+            }
+            referenced.clear();
+            if (held) {
+                referenced.add(inProgress);
+            }
+            buffer.clear();
+            mark = 0;
+            copied = null;
+        }
+
+        if (inProgress == null) {
+            return 0;
+        }
+
+        int pos = 0;
+        while (pos < size) {
+            //  If there are no more data to return, run the state machine.
+            //  If there are still no data, return what we already have.
+            if (toWrite == 0) {
+                if (newMsgFlag) {
+                    //  A referenced message is released once the batch has been written.
+                    if (!held) {
+                        inProgress.release();
+                    }
+                    held = false;
+                    inProgress = null;
+                    break;
+                }
+                next();
+            }
+
+            if (toWrite > 0 && body && writeBuf.remaining() >= gatherThreshold) {
+                //  Hand over the part of the body, after the data copied so far.
+                appendCopied(data);
+                int count = Math.min(writeBuf.remaining(), size - pos);
+                ByteBuffer part = writeBuf.duplicate();
+                part.limit(part.position() + count);
+                writeBuf.position(part.limit());
+                data.add(part);
+                if (!held) {
+                    referenced.add(inProgress);
+                    held = true;
+                }
+                pos += count;
+                toWrite -= count;
+            }
+            else if (toWrite > 0) {
+                //  Copy data to the buffer. If the buffer is full, return.
+                if (!buffer.hasRemaining()) {
+                    break;
+                }
+                int toCopy = Math.min(Math.min(toWrite, size - pos), buffer.remaining());
+                int limit = writeBuf.limit();
+                writeBuf.limit(Math.min(limit, writeBuf.position() + toCopy));
+                int current = buffer.position();
+                buffer.put(writeBuf);
+                toCopy = buffer.position() - current;
+                writeBuf.limit(limit);
+                pos += toCopy;
+                toWrite -= toCopy;
+            }
+
+            if (segments != null && !writeBuf.hasRemaining()) {
+                nextSegment();
+            }
+        }
+
+        appendCopied(data);
+        return pos;
+    }
+
+    //  Adds the data copied into the encoder buffer since the last call to the sequence of buffers.
+    private void appendCopied(List<ByteBuffer> data)
+    {
+        if (buffer.position() > mark) {
+            if (!data.isEmpty() && data.get(data.size() - 1) == copied) {
+                //  Contiguous with the last added region, extend it.
+                copied.limit(buffer.position());
+            }
+            else {
+                copied = buffer.duplicate();
+                copied.flip();
+                copied.position(mark);
+                data.add(copied);
+            }
+            mark = buffer.position();
+        }
+    }
+
     @Override
     public void encoded()
     {
@@ -141,20 +306,49 @@ public abstract class EncoderBase implements IEncoder
         }
     }
 
+    //  Schedules the writing of the body of a message.
+    //  The segments of a composite message are written one after the other, without concatenation.
     protected void nextStep(Msg msg, Runnable state, boolean beginning)
     {
         if (msg == null) {
             nextStep((byte[]) null, 0, state, beginning);
+            return;
+        }
+        ByteBuffer[] parts = msg.segments();
+        if (parts == null) {
+            nextStep(msg.buf(), msg.size(), state, beginning);
+            body = true;
         }
         else {
-            nextStep(msg.buf(), state, beginning);
+            body = true;
+            segments = parts;
+            segment = -1;
+            toWrite = msg.size();
+            next = state;
+            newMsgFlag = beginning;
+            nextSegment();
         }
     }
 
+    //  Moves to the next non-empty segment of a composite message.
+    private void nextSegment()
+    {
+        writeBuf = null;
+        while (toWrite > 0 && ++segment < segments.length) {
+            if (segments[segment].hasRemaining()) {
+                writeBuf = segments[segment];
+                return;
+            }
+        }
+        segments = null;
+    }
+
     //  This function should be called from derived class to write the data
     //  to the buffer and schedule next state machine action.
     private void nextStep(byte[] buf, int toWrite, Runnable next, boolean newMsgFlag)
     {
+        segments = null;
+        body = false;
         if (buf != null) {
             writeBuf = ByteBuffer.wrap(buf);
             writeBuf.limit(toWrite);
@@ -172,13 +366,10 @@ public abstract class EncoderBase implements IEncoder
         nextStep((byte[]) null, 0, next, newMsgFlag);
     }
 
-    private void nextStep(ByteBuffer buf, Runnable next, boolean newMsgFlag)
-    {
-        nextStep(buf, buf.limit(), next, newMsgFlag);
-    }
-
     protected void nextStep(ByteBuffer buf, int toWrite, Runnable next, boolean newMsgFlag)
     {
+        segments = null;
+        body = false;
         buf.limit(toWrite);
         buf.position(toWrite);
         buf.flip();
@@ -201,5 +392,17 @@ public abstract class EncoderBase implements IEncoder
     @Override
     public void destroy()
     {
+        for (Msg msg : referenced) {
+            msg.release();
+        }
+        referenced.clear();
+        if (inProgress != null && !held) {
+            inProgress.release();
+        }
+        inProgress = null;
+        held = false;
+        if (batch != null) {
+            batch.release();
+        }
     }
 }
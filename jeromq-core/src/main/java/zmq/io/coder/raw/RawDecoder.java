@@ -4,6 +4,7 @@ import java.nio.ByteBuffer;
 
 import zmq.Msg;
 import zmq.io.coder.IDecoder;
+import zmq.msg.MsgAllocator;
 import zmq.util.ValueReference;
 
 public class RawDecoder implements IDecoder
@@ -11,11 +12,27 @@ public class RawDecoder implements IDecoder
     //  The buffer for data to decode.
     private final ByteBuffer buffer;
 
+    //  The owner of the buffer, if provided by an allocator.
+    private final Msg batch;
+
     protected Msg inProgress;
 
     public RawDecoder(int bufsize)
     {
-        buffer = ByteBuffer.allocateDirect(bufsize);
+        this(bufsize, null);
+    }
+
+    //  The buffer for data to decode is provided by the allocator, if any.
+    public RawDecoder(int bufsize, MsgAllocator allocator)
+    {
+        if (allocator == null) {
+            batch = null;
+            buffer = ByteBuffer.allocateDirect(bufsize);
+        }
+        else {
+            batch = allocator.allocateBatch(bufsize);
+            buffer = batch.buf();
+        }
         inProgress = new Msg();
     }
 
@@ -45,5 +62,8 @@ public class RawDecoder implements IDecoder
     @Override
     public void destroy()
     {
+        if (batch != null) {
+            batch.release();
+        }
     }
 }
@@ -1,6 +1,7 @@
 package zmq.io.coder.raw;
 
 import zmq.io.coder.Encoder;
+import zmq.msg.MsgAllocator;
 import zmq.util.Errno;
 
 //  Encoder for 0MQ framing protocol. Converts messages into data batches.
@@ -9,7 +10,13 @@ public class RawEncoder extends Encoder
 {
     public RawEncoder(Errno errno, int bufsize)
     {
-        super(errno, bufsize);
+        this(errno, bufsize, null);
+    }
+
+    //  The batch buffer is provided by the allocator, if any.
+    public RawEncoder(Errno errno, int bufsize, MsgAllocator allocator)
+    {
+        super(errno, bufsize, allocator);
         //  Write 0 bytes to the batch and go to messageReady state.
         initStep(messageReady, true);
     }
@@ -23,6 +30,6 @@ public class RawEncoder extends Encoder
     @Override
     protected void messageReady()
     {
-        nextStep(inProgress.buf(), inProgress.size(), messageReady, true);
+        nextStep(inProgress, messageReady, true);
     }
 }
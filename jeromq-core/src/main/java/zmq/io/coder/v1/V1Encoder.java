@@ -4,6 +4,7 @@ import java.nio.ByteBuffer;
 
 import zmq.Msg;
 import zmq.io.coder.Encoder;
+import zmq.msg.MsgAllocator;
 import zmq.util.Errno;
 import zmq.util.Wire;
 
@@ -14,7 +15,13 @@ public class V1Encoder extends Encoder
 
     public V1Encoder(Errno errno, int bufsize)
     {
-        super(errno, bufsize);
+        this(errno, bufsize, null);
+    }
+
+    //  The batch buffer is provided by the allocator, if any.
+    public V1Encoder(Errno errno, int bufsize, MsgAllocator allocator)
+    {
+        super(errno, bufsize, allocator);
         tmpbufWrap = ByteBuffer.allocate(10);
 
         //  Write 0 bytes to the batch and go to messageReady state.
@@ -25,7 +32,7 @@ public class V1Encoder extends Encoder
     protected void sizeReady()
     {
         //  Write message body into the buffer.
-        nextStep(inProgress.buf(), inProgress.size(), messageReady, true);
+        nextStep(inProgress, messageReady, true);
     }
 
     @Override
@@ -3,6 +3,7 @@ package zmq.io.coder.v2;
 import java.nio.ByteBuffer;
 
 import zmq.io.coder.Encoder;
+import zmq.msg.MsgAllocator;
 import zmq.util.Errno;
 import zmq.util.Wire;
 
@@ -13,7 +14,13 @@ public class V2Encoder extends Encoder
 
     public V2Encoder(Errno errno, int bufsize)
     {
-        super(errno, bufsize);
+        this(errno, bufsize, null);
+    }
+
+    //  The batch buffer is provided by the allocator, if any.
+    public V2Encoder(Errno errno, int bufsize, MsgAllocator allocator)
+    {
+        super(errno, bufsize, allocator);
         tmpbufWrap = ByteBuffer.allocate(9);
 
         //  Write 0 bytes to the batch and go to messageReady state.
@@ -59,6 +66,6 @@ public class V2Encoder extends Encoder
     protected void sizeReady()
     {
         //  Write message body into the buffer.
-        nextStep(inProgress.buf(), inProgress.size(), messageReady, true);
+        nextStep(inProgress, messageReady, true);
     }
 }
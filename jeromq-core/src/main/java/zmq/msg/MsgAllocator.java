@@ -1,8 +1,23 @@
 package zmq.msg;
 
+import java.nio.ByteBuffer;
+
 import zmq.Msg;
 
 public interface MsgAllocator
 {
     Msg allocate(int size);
+
+    /**
+     * Allocates a buffer used by an engine to batch the data read from or written to the network.
+     * <p>
+     * The buffer is held by the engine for its whole life, and the returned message is released when the engine is closed.
+     *
+     * @param size the size of the buffer.
+     * @return a message whose payload is the buffer.
+     */
+    default Msg allocateBatch(int size)
+    {
+        return new Msg(ByteBuffer.allocateDirect(size));
+    }
 }
@@ -0,0 +1,173 @@
+package zmq.msg;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import zmq.Msg;
+import zmq.util.Utils;
+
+/**
+ * Allocator recycling direct buffers, sorted by power-of-two size classes.
+ * <p>
+ * Each thread allocating or releasing messages owns a small cache per size class,
+ * backed by a shared pool per size class where buffers released by other threads can be picked up,
+ * typically when messages are allocated by an I/O thread and released by an application thread.
+ * <p>
+ * Buffers come back in the pool when {@link Msg#release()} is called, either by the library
+ * once a message has been sent, or by the application once it is done with a received message.
+ * A message that is never released is simply reclaimed by the garbage collector.
+ * <p>
+ * Messages larger than the maximum size class are allocated without pooling.
+ */
+public class MsgAllocatorPooled implements MsgAllocator
+{
+    // a pooled buffer, also used as the release hook of the messages built on top of it
+    private final class Slot implements Runnable
+    {
+        private final ByteBuffer buffer;
+        private final int        sizeClass;
+
+        private Slot(ByteBuffer buffer, int sizeClass)
+        {
+            this.buffer = buffer;
+            this.sizeClass = sizeClass;
+        }
+
+        @Override
+        public void run()
+        {
+            free(this);
+        }
+    }
+
+    // per-thread cache of slots, one stack per size class
+    private final class Cache
+    {
+        private final Slot[][] slots = new Slot[classes][];
+        private final int[]    counts = new int[classes];
+
+        private Cache()
+        {
+            for (int idx = 0; idx < classes; ++idx) {
+                slots[idx] = new Slot[capacity(localBytes, idx)];
+            }
+        }
+    }
+
+    private final int minShift;
+    private final int maxShift;
+    private final int classes;
+    private final int localBytes;
+
+    private final Queue<Slot>[]   shared;
+    private final AtomicInteger[] sharedCounts;
+    private final int[]           sharedCapacities;
+
+    private final ThreadLocal<Cache> local = ThreadLocal.withInitial(Cache::new);
+
+    public MsgAllocatorPooled()
+    {
+        this(64, 1024 * 1024, 256 * 1024, 4 * 1024 * 1024);
+    }
+
+    /**
+     * @param minSize the size of the smallest size class. Rounded up to the next power of two.
+     * @param maxSize the size of the largest size class. Rounded up to the next power of two.
+     * @param localBytes the number of bytes cached per size class for each thread.
+     *                   At least one buffer per size class is cached.
+     * @param sharedBytes the number of bytes pooled per size class and shared among all threads.
+     *                    At least one buffer per size class is pooled.
+     */
+    @SuppressWarnings("unchecked")
+    public MsgAllocatorPooled(int minSize, int maxSize, int localBytes, int sharedBytes)
+    {
+        Utils.checkArgument(minSize > 0, "Minimum size shall be strictly positive");
+        Utils.checkArgument(maxSize >= minSize, "Maximum size shall be greater than minimum size");
+        Utils.checkArgument(maxSize <= 1 << 30, "Maximum size shall be at most 1GB");
+        Utils.checkArgument(localBytes >= 0, "Thread cache size shall be positive");
+        Utils.checkArgument(sharedBytes >= 0, "Shared pool size shall be positive");
+
+        this.minShift = shift(minSize);
+        this.maxShift = shift(maxSize);
+        this.classes = maxShift - minShift + 1;
+        this.localBytes = localBytes;
+
+        shared = (Queue<Slot>[]) new Queue<?>[classes];
+        sharedCounts = new AtomicInteger[classes];
+        sharedCapacities = new int[classes];
+        for (int idx = 0; idx < classes; ++idx) {
+            shared[idx] = new ConcurrentLinkedQueue<>();
+            sharedCounts[idx] = new AtomicInteger();
+            sharedCapacities[idx] = capacity(sharedBytes, idx);
+        }
+    }
+
+    @Override
+    public Msg allocate(int size)
+    {
+        if (size == 0) {
+            return new Msg();
+        }
+        final int shift = shift(size);
+        if (shift > maxShift) {
+            return new Msg(ByteBuffer.allocateDirect(size));
+        }
+        final int sizeClass = Math.max(shift, minShift) - minShift;
+        Slot slot = poll(sizeClass);
+        if (slot == null) {
+            slot = new Slot(ByteBuffer.allocateDirect(1 << (sizeClass + minShift)), sizeClass);
+        }
+        ByteBuffer buffer = slot.buffer;
+        buffer.clear().limit(size);
+        return new Msg(buffer.slice(), slot);
+    }
+
+    private Slot poll(int sizeClass)
+    {
+        final Cache cache = local.get();
+        int count = cache.counts[sizeClass];
+        if (count > 0) {
+            cache.counts[sizeClass] = --count;
+            Slot slot = cache.slots[sizeClass][count];
+            cache.slots[sizeClass][count] = null;
+            return slot;
+        }
+        Slot slot = shared[sizeClass].poll();
+        if (slot != null) {
+            sharedCounts[sizeClass].decrementAndGet();
+        }
+        return slot;
+    }
+
+    private void free(Slot slot)
+    {
+        final int sizeClass = slot.sizeClass;
+        final Cache cache = local.get();
+        final int count = cache.counts[sizeClass];
+        if (count < cache.slots[sizeClass].length) {
+            cache.slots[sizeClass][count] = slot;
+            cache.counts[sizeClass] = count + 1;
+            return;
+        }
+        if (sharedCounts[sizeClass].incrementAndGet() <= sharedCapacities[sizeClass]) {
+            shared[sizeClass].offer(slot);
+        }
+        else {
+            // pool is full, let the garbage collector reclaim the buffer
+            sharedCounts[sizeClass].decrementAndGet();
+        }
+    }
+
+    private int capacity(int bytes, int sizeClass)
+    {
+        return Math.max(1, bytes >>> (sizeClass + minShift));
+    }
+
+    // the exponent of the smallest power of two greater or equal to the given size
+    private static int shift(int size)
+    {
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
@@ -0,0 +1,69 @@
+package zmq.msg;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+
+/**
+ * An allocator of messages outside of the Java heap, whose memory is freed when it is closed.
+ * <p>
+ * The allocator in off-heap slabs managed by the foreign memory API requires Java 22 or later.
+ * It is only shipped in the multi-release jar, when built with Java 22 or later, and is obtained with
+ * {@link #arena(int, int, long, boolean)}.
+ */
+public interface OffHeapMsgAllocator extends MsgAllocator, AutoCloseable
+{
+    //  The implementation in the multi-release jar, not visible on older runtimes.
+    String ARENA_CLASS = "zmq.msg.MsgAllocatorArena";
+
+    /**
+     * Frees the memory held by the allocator. The messages it allocated cannot be used anymore.
+     */
+    @Override
+    void close();
+
+    /**
+     * Creates an allocator in off-heap slabs, with a slab capacity of 64MB and size classes from 64B to 1MB,
+     * also allocating the batch buffers of the engines.
+     *
+     * @return the allocator, or empty if the runtime or the jar does not provide it.
+     */
+    static Optional<OffHeapMsgAllocator> arena()
+    {
+        return arena(64, 1024 * 1024, 64L * 1024 * 1024, true);
+    }
+
+    /**
+     * Creates an allocator in off-heap slabs, sorted by power-of-two size classes.
+     *
+     * @param minSize the size of the smallest size class. Rounded up to the next power of two.
+     * @param maxSize the size of the largest size class. Rounded up to the next power of two.
+     * @param capacity the maximum number of bytes held in slabs.
+     * @param batches true to allocate the batch buffers of the engines in the slabs too.
+     * @return the allocator, or empty if the runtime or the jar does not provide it.
+     * @throws IllegalArgumentException if a size or the capacity is invalid.
+     */
+    static Optional<OffHeapMsgAllocator> arena(int minSize, int maxSize, long capacity, boolean batches)
+    {
+        final Class<? extends OffHeapMsgAllocator> type;
+        try {
+            type = Class.forName(ARENA_CLASS, true, OffHeapMsgAllocator.class.getClassLoader())
+                    .asSubclass(OffHeapMsgAllocator.class);
+        }
+        catch (ClassNotFoundException | LinkageError e) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(type.getConstructor(int.class, int.class, long.class, boolean.class)
+                                       .newInstance(minSize, maxSize, capacity, batches));
+        }
+        catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to create the foreign memory allocator", e.getCause());
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create the foreign memory allocator", e);
+        }
+    }
+}
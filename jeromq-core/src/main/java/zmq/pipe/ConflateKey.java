@@ -0,0 +1,52 @@
+package zmq.pipe;
+
+import zmq.Msg;
+import zmq.util.Blob;
+
+/**
+ * Extracts the key of the messages of a keyed conflating pipe.
+ * <p>
+ * Such a pipe keeps only the latest message for each key, and delivers the
+ * keys in the order of their first message. The key is extracted from the
+ * first part of each message, and compared with {@link Object#equals(Object)}.
+ */
+@FunctionalInterface
+public interface ConflateKey
+{
+    /**
+     * Returns the key of a message.
+     *
+     * @param msg the first part of the message.
+     * @return the key of the message, or null if the message shall not be conflated.
+     */
+    Object key(Msg msg);
+
+    /**
+     * Creates a key made of the first bytes of the messages, such as a topic.
+     *
+     * @param length the maximal number of bytes of the key.
+     * @return the key extractor.
+     */
+    static ConflateKey prefix(int length)
+    {
+        if (length <= 0) {
+            throw new IllegalArgumentException("length " + length);
+        }
+        return msg -> {
+            //  Only the bytes of the key are copied.
+            byte[] key = new byte[Math.min(msg.size(), length)];
+            msg.getBytes(0, key, 0, key.length);
+            return Blob.createBlob(key);
+        };
+    }
+
+    /**
+     * Creates a key made of the whole first part of the messages, such as the topic of a multi-part message.
+     *
+     * @return the key extractor.
+     */
+    static ConflateKey frame()
+    {
+        return Blob::createBlob;
+    }
+}
@@ -0,0 +1,88 @@
+package zmq.pipe;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+//  Lock-free unbounded queue with many writers and a single reader.
+//
+//  Writers swap the tail of the linked list of items, then link the
+//  previous tail to the new one. Until the link is done, the item is not
+//  visible to the reader, which sees the queue as empty.
+//
+//  As with ypipe, the reader goes asleep when it finds the queue empty,
+//  and the first writer to push an item afterwards is told to wake it up.
+public final class MpscQueue<T>
+{
+    private static final class Node<T>
+    {
+        private T                value;
+        private volatile Node<T> next;
+
+        private Node(T value)
+        {
+            this.value = value;
+        }
+    }
+
+    //  Last pushed node, shared by the writers.
+    private final AtomicReference<Node<T>> tail;
+
+    //  Node preceding the next item to read, owned by the reader.
+    private Node<T> head;
+
+    //  Set when the reader found the queue empty, cleared by the writer in charge of waking it up.
+    //  The reader starts asleep, so that it gets woken up if it starts by polling the signal.
+    private final AtomicBoolean asleep = new AtomicBoolean(true);
+
+    public MpscQueue()
+    {
+        head = new Node<>(null);
+        tail = new AtomicReference<>(head);
+    }
+
+    //  Pushes an item at the end of the queue. Can be called by any thread.
+    //  Returns false if the reader is asleep. In that case, caller is obliged
+    //  to wake the reader up.
+    public boolean push(T value)
+    {
+        assert (value != null);
+        Node<T> node = new Node<>(value);
+        Node<T> prev = tail.getAndSet(node);
+        prev.next = node;
+
+        return !(asleep.get() && asleep.compareAndSet(true, false));
+    }
+
+    //  Removes the first item of the queue, null if the queue is empty.
+    //  Can only be called by the reader.
+    public T poll()
+    {
+        Node<T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        T value = next.value;
+        next.value = null;
+        head = next;
+        return value;
+    }
+
+    //  Removes the first item of the queue. If the queue is empty, the reader
+    //  goes asleep and null is returned: the next writer will wake it up.
+    //  Can only be called by the reader.
+    public T pollOrSleep()
+    {
+        T value = poll();
+        if (value != null) {
+            return value;
+        }
+        asleep.set(true);
+        //  An item may have been pushed in between.
+        value = poll();
+        if (value != null) {
+            //  If a writer already cleared the flag, the reader will be woken up in vain.
+            asleep.compareAndSet(true, false);
+        }
+        return value;
+    }
+}
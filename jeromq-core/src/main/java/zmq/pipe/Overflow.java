@@ -0,0 +1,445 @@
+package zmq.pipe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import zmq.Config;
+import zmq.Msg;
+
+//  Append-only file where the messages written beyond the high watermark
+//  of a pipe are stored. The file is memory-mapped, created on the first
+//  message stored and deleted when closed.
+//
+//  The writer stores the messages at the tail of the file, while the reader
+//  reads them from its head, in its own thread. A run of stored messages is
+//  announced to the reader by a marker written in the underlying pipe, and
+//  ended by a return record after which the reader gets back to the pipe.
+//  This way the messages are read in order, whatever the storage they went through.
+final class Overflow
+{
+    //  Message written in the underlying pipe to let the reader know that
+    //  the following messages are stored in the overflow file.
+    static final class Marker extends Msg
+    {
+        private final Overflow overflow;
+        private final int      start;
+
+        private Marker(Overflow overflow, int start)
+        {
+            this.overflow = overflow;
+            this.start = start;
+        }
+
+        //  Starts reading the stored messages. Called by the reader.
+        Overflow enter()
+        {
+            overflow.reading = true;
+            overflow.head = start;
+            return overflow;
+        }
+    }
+
+    //  Kinds of records.
+    private static final byte DATA   = 0;
+    private static final byte JOIN   = 1;
+    private static final byte LEAVE  = 2;
+    private static final byte RETURN = 3;
+
+    //  Directory where the file is created.
+    private final Path directory;
+
+    //  Maximal size of the file, checked before each new message, so that
+    //  a multi-part message is never cut.
+    private final long capacity;
+
+    private Path        file;
+    private FileChannel channel;
+
+    //  Mapped region of the file, replaced by the writer when it grows.
+    private volatile MappedByteBuffer map;
+
+    //  Position past the last complete message, published by the writer.
+    private volatile int committed;
+
+    //  Position of the next record to read, published by the reader.
+    private volatile int head;
+
+    //  Number of runs fully read, published by the reader.
+    private volatile int ended;
+
+    //  Set by the reader when waiting for messages to be stored.
+    private final AtomicBoolean parked = new AtomicBoolean();
+
+    //  Writer side: position past the last stored part, and whether
+    //  the messages are currently stored.
+    private int     tail;
+    private boolean spilling;
+
+    //  Writer side: number of runs started.
+    private int runs;
+
+    //  Writer side: number of messages and bytes stored so far,
+    //  and bytes of the parts of the message being stored.
+    private long storedMsgs;
+    private long storedBytes;
+    private long partialBytes;
+
+    //  Writer side: failure met when growing the file, after which no more message is stored.
+    private IOException failure;
+
+    //  Reader side: the view of the mapped region, whether the stored
+    //  messages are being read, and the number of messages and bytes read so far.
+    private ByteBuffer view;
+    private boolean    reading;
+    private long       readMsgs;
+    private long       readBytes;
+
+    Overflow(Path directory, long capacity)
+    {
+        this.directory = directory;
+        this.capacity = Math.min(capacity, Integer.MAX_VALUE);
+    }
+
+    //  Returns true if the messages are currently stored in the file.
+    boolean isSpilling()
+    {
+        return spilling;
+    }
+
+    //  Returns true if the parts of a message are being stored.
+    boolean isPartial()
+    {
+        return tail > committed;
+    }
+
+    //  Returns true if another message part can be stored.
+    boolean accepts()
+    {
+        //  The parts of a message being stored are always accepted,
+        //  and the file is reused from the start once fully read.
+        return tail > committed || failure == null && (tail < capacity || !spilling && ended == runs);
+    }
+
+    //  Makes room for the message part, and for the end of the run after it.
+    //  Returns false if the file cannot grow, in which case no more message is stored.
+    boolean reserve(Msg msg)
+    {
+        if (failure != null) {
+            return false;
+        }
+        try {
+            ensure((long) tail + length(msg) + 1);
+            return true;
+        }
+        catch (IOException e) {
+            failure = e;
+            return false;
+        }
+    }
+
+    //  Drops a part of a message that could not be stored, with the parts stored before it.
+    void drop(Msg msg)
+    {
+        msg.release();
+        if (!msg.hasMore()) {
+            rollback();
+        }
+    }
+
+    //  Returns the size of the record of a message part.
+    private static int length(Msg msg)
+    {
+        final String group = msg.getGroup();
+        final int groupLength = group == null ? 0 : group.getBytes(StandardCharsets.UTF_8).length;
+        return 1 + 4 + 4 + 2 + groupLength + 4 + msg.size();
+    }
+
+    //  Starts a run of stored messages and returns the marker to write in the underlying pipe.
+    Msg start()
+    {
+        assert (!spilling);
+        if (ended == runs) {
+            //  Everything has been read, start over at the beginning of the file.
+            tail = 0;
+            committed = 0;
+        }
+        runs++;
+        spilling = true;
+        return new Marker(this, tail);
+    }
+
+    //  Stores a message part at the end of the file, once room has been reserved for it.
+    //  Returns true if the reader has to be activated.
+    boolean append(Msg msg)
+    {
+        assert (spilling);
+        final String group = msg.getGroup();
+        final byte[] groupBytes = group == null ? null : group.getBytes(StandardCharsets.UTF_8);
+        final int size = msg.size();
+
+        final MappedByteBuffer buffer = map;
+        assert (buffer.capacity() > tail + length(msg));
+        buffer.position(tail);
+        buffer.put(msg.isJoin() ? JOIN : msg.isLeave() ? LEAVE : DATA);
+        buffer.putInt(msg.flags() & ~Msg.SHARED);
+        buffer.putInt(msg.getRoutingId());
+        if (groupBytes == null) {
+            buffer.putShort((short) -1);
+        }
+        else {
+            buffer.putShort((short) groupBytes.length);
+            buffer.put(groupBytes);
+        }
+        buffer.putInt(size);
+        ByteBuffer data = msg.buf();
+        data.position(0).limit(size);
+        buffer.put(data);
+        tail = buffer.position();
+        partialBytes += size;
+
+        //  The payload has been copied, it can be given back to its provider.
+        msg.release();
+
+        if (msg.hasMore()) {
+            return false;
+        }
+        storedMsgs++;
+        storedBytes += partialBytes;
+        partialBytes = 0;
+        return commit();
+    }
+
+    //  Ends the run of stored messages, the reader gets back to the underlying pipe.
+    //  Returns true if the reader has to be activated.
+    boolean finish()
+    {
+        assert (spilling && tail == committed);
+        //  Room was reserved with the last message part stored.
+        map.put(tail, RETURN);
+        tail++;
+        spilling = false;
+        return commit();
+    }
+
+    //  Removes the parts of the incomplete message.
+    void rollback()
+    {
+        tail = committed;
+        partialBytes = 0;
+    }
+
+    //  Publishes the stored records to the reader.
+    private boolean commit()
+    {
+        committed = tail;
+        return parked.compareAndSet(true, false);
+    }
+
+    //  Returns true if the next record is a stored message. Called by the reader.
+    boolean hasMessage()
+    {
+        final int pos = head;
+        return pos < committed && view().get(pos) != RETURN;
+    }
+
+    //  Skips the end of the run if it is the next record. Called by the reader.
+    boolean skipReturn()
+    {
+        final int pos = head;
+        if (pos < committed && view().get(pos) == RETURN) {
+            reading = false;
+            head = pos + 1;
+            ended++;
+            return true;
+        }
+        return false;
+    }
+
+    //  Returns true if the stored messages are being read. Called by the reader.
+    boolean isReading()
+    {
+        return reading;
+    }
+
+    //  Returns the next stored message part, or null if none is available yet
+    //  or if the end of the run was reached. Called by the reader.
+    Msg read()
+    {
+        int pos = head;
+        if (pos >= committed) {
+            return null;
+        }
+        final ByteBuffer buffer = view();
+        buffer.position(pos);
+        final byte kind = buffer.get();
+        if (kind == RETURN) {
+            skipReturn();
+            return null;
+        }
+        final int flags = buffer.getInt();
+        final int routingId = buffer.getInt();
+        final int groupLength = buffer.getShort();
+        String group = null;
+        if (groupLength >= 0) {
+            byte[] groupBytes = new byte[groupLength];
+            buffer.get(groupBytes);
+            group = new String(groupBytes, StandardCharsets.UTF_8);
+        }
+        final int size = buffer.getInt();
+
+        Msg msg = new Msg(size);
+        if (size > 0) {
+            ByteBuffer data = buffer.duplicate();
+            data.limit(data.position() + size);
+            msg.put(data);
+        }
+        if (kind == JOIN) {
+            msg.initJoin();
+        }
+        else if (kind == LEAVE) {
+            msg.initLeave();
+        }
+        msg.setFlags(flags);
+        msg.setRoutingId(routingId);
+        if (group != null) {
+            msg.setGroup(group);
+        }
+
+        readBytes += size;
+        if (!msg.hasMore()) {
+            readMsgs++;
+        }
+        head = buffer.position() + size;
+        return msg;
+    }
+
+    //  Waits for messages to be stored. Returns true if the reader has to wait
+    //  for an activation, false if a record is already available. Called by the reader.
+    boolean park()
+    {
+        parked.set(true);
+        if (head == committed) {
+            return true;
+        }
+        //  A record was stored in the meantime. If the writer already cleared
+        //  the flag, the activation sent is ignored since the reader is active.
+        parked.compareAndSet(true, false);
+        return false;
+    }
+
+    //  Returns the number of stored messages not read yet.
+    //  Only valid once the reader does not read anymore.
+    long pendingMsgs()
+    {
+        return storedMsgs - readMsgs;
+    }
+
+    //  Returns the number of stored bytes not read yet.
+    //  Only valid once the reader does not read anymore.
+    long pendingBytes()
+    {
+        return storedBytes - readBytes;
+    }
+
+    //  Drops the stored messages. Only valid once the reader does not read anymore.
+    void reset()
+    {
+        tail = 0;
+        committed = 0;
+        head = 0;
+        runs = 0;
+        ended = 0;
+        spilling = false;
+        reading = false;
+        storedMsgs = 0;
+        storedBytes = 0;
+        partialBytes = 0;
+        readMsgs = 0;
+        readBytes = 0;
+        parked.set(false);
+    }
+
+    //  Returns the reader's view of the mapped region, refreshed when the file has grown.
+    private ByteBuffer view()
+    {
+        final MappedByteBuffer current = map;
+        if (view == null || view.capacity() != current.capacity()) {
+            view = current.duplicate();
+        }
+        return view;
+    }
+
+    //  Makes sure the mapped region is large enough, creating the file if needed.
+    private void ensure(long size) throws IOException
+    {
+        MappedByteBuffer current = map;
+        if (current != null && size <= current.capacity()) {
+            return;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Overflow file full in " + directory);
+        }
+        long mapped = current == null ? Math.min(capacity, Config.PIPE_OVERFLOW_SEGMENT.getValue())
+                : current.capacity();
+        while (mapped < size) {
+            mapped = Math.min(mapped * 2, Integer.MAX_VALUE);
+        }
+        if (channel == null) {
+            file = Files.createTempFile(directory, "pipe-", ".overflow");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        current = channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped);
+        //  Published before the records stored in the new region.
+        map = current;
+    }
+
+    //  Drops the stored messages, closes and deletes the file. Only valid once the reader does not read anymore.
+    //  Returns the failure to report, including the one met when growing the file, if any.
+    //  If the file could not be deleted, it is deleted when the JVM exits.
+    IOException close()
+    {
+        reset();
+        map = null;
+        view = null;
+        IOException failure = this.failure;
+        this.failure = null;
+        if (channel == null) {
+            return failure;
+        }
+        //  The regions are unmapped by the garbage collector.
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+            else {
+                failure.addSuppressed(e);
+            }
+        }
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+            else {
+                failure.addSuppressed(e);
+            }
+            //  A file still mapped cannot be deleted on Windows.
+            file.toFile().deleteOnExit();
+        }
+        channel = null;
+        file = null;
+        return failure;
+    }
+}
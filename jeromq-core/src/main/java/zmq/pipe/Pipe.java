@@ -1,5 +1,9 @@
 package zmq.pipe;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import zmq.Config;
 import zmq.Msg;
 import zmq.ZObject;
@@ -43,9 +47,47 @@ public class Pipe extends ZObject
     //  can be higher at the moment.
     private long peersMsgsRead;
 
+    //  High watermark in bytes for the outbound pipe, zero if unlimited.
+    private long bytesHwm;
+
+    //  Low watermark in bytes for the inbound pipe, zero if unlimited.
+    private long bytesLwm;
+
+    //  Number of payload bytes read and written so far.
+    //  Written bytes are only counted once the message is complete.
+    private long bytesRead;
+    private long bytesWritten;
+
+    //  Payload bytes of the parts of the outbound message written so far.
+    private long bytesPending;
+
+    //  True while the outbound message has more parts to be written.
+    private boolean incompleteOut;
+
+    //  Last received peer's bytesRead.
+    private long peersBytesRead;
+
+    //  File storing the outbound messages beyond the high watermarks, null if disabled.
+    private Overflow overflow;
+
+    //  Overflow file of the peer the inbound messages are currently read from, if any.
+    private Overflow spill;
+
     //  The pipe object on the other side of the pipepair.
     private Pipe peer;
 
+    //  Set by the peer while an activate_read command sent to this pipe is pending,
+    //  so that no other one is sent until it is processed.
+    private final AtomicBoolean activateReadPending = new AtomicBoolean();
+
+    //  Set by the peer while an activate_write command sent to this pipe is pending,
+    //  so that no other one is sent until it is processed.
+    private final AtomicBoolean activateWritePending = new AtomicBoolean();
+
+    //  Latest read counters posted by the peer, taken when the activate_write command is processed.
+    private volatile long postedMsgsRead;
+    private volatile long postedBytesRead;
+
     //  Sink to send events to.
     private IPipeEvents sink;
 
@@ -88,6 +130,12 @@ public class Pipe extends ZObject
 
     private final boolean conflate;
 
+    //  Key of the messages conflated by the pipe, null to keep only the latest message.
+    private final ConflateKey conflateKey;
+
+    //  If true, the underlying pipes are built on array rings.
+    private final boolean ring;
+
     private Msg disconnectMsg;
 
     // JeroMQ only
@@ -95,7 +143,8 @@ public class Pipe extends ZObject
 
     //  Constructor is private. Pipe can only be created using
     //  pipepair function.
-    private Pipe(ZObject parent, YPipeBase<Msg> inpipe, YPipeBase<Msg> outpipe, int inhwm, int outhwm, boolean conflate)
+    private Pipe(ZObject parent, YPipeBase<Msg> inpipe, YPipeBase<Msg> outpipe, int inhwm, int outhwm, boolean conflate,
+            ConflateKey conflateKey, boolean ring)
     {
         super(parent);
         this.inpipe = inpipe;
@@ -112,6 +161,8 @@ public class Pipe extends ZObject
         state = State.ACTIVE;
         this.delay = true;
         this.conflate = conflate;
+        this.conflateKey = conflateKey;
+        this.ring = ring;
         disconnectMsg = null;
 
         this.parent = parent;
@@ -125,18 +176,31 @@ public class Pipe extends ZObject
     //  pipe receives all the pending messages before terminating, otherwise it
     //  terminates straight away.
     public static Pipe[] pair(ZObject[] parents, int[] hwms, boolean[] conflates)
+    {
+        return pair(parents, hwms, conflates, false);
+    }
+
+    //  Ring specifies if the pipes are built on array rings, sized after the
+    //  high watermarks, instead of linked chunks.
+    public static Pipe[] pair(ZObject[] parents, int[] hwms, boolean[] conflates, boolean ring)
+    {
+        return pair(parents, hwms, conflates, ring, null);
+    }
+
+    //  Conflate key specifies the key of the messages conflated by the pipes: if not null,
+    //  conflated pipes keep the latest message for each key instead of the latest one.
+    public static Pipe[] pair(ZObject[] parents, int[] hwms, boolean[] conflates, boolean ring,
+                              ConflateKey conflateKey)
     {
         Pipe[] pipes = new Pipe[2];
         //   Creates two pipe objects. These objects are connected by two ypipes,
         //   each to pass messages in one direction.
 
-        YPipeBase<Msg> upipe1 = conflates[0] ? new YPipeConflate<>()
-                : new YPipe<>(Config.MESSAGE_PIPE_GRANULARITY.getValue());
-        YPipeBase<Msg> upipe2 = conflates[1] ? new YPipeConflate<>()
-                : new YPipe<>(Config.MESSAGE_PIPE_GRANULARITY.getValue());
+        YPipeBase<Msg> upipe1 = ypipe(conflates[0], conflateKey, ring, hwms[0]);
+        YPipeBase<Msg> upipe2 = ypipe(conflates[1], conflateKey, ring, hwms[1]);
 
-        pipes[0] = new Pipe(parents[0], upipe1, upipe2, hwms[1], hwms[0], conflates[0]);
-        pipes[1] = new Pipe(parents[1], upipe2, upipe1, hwms[0], hwms[1], conflates[1]);
+        pipes[0] = new Pipe(parents[0], upipe1, upipe2, hwms[1], hwms[0], conflates[0], conflateKey, ring);
+        pipes[1] = new Pipe(parents[1], upipe2, upipe1, hwms[0], hwms[1], conflates[1], conflateKey, ring);
 
         pipes[0].setPeer(pipes[1]);
         pipes[1].setPeer(pipes[0]);
@@ -144,6 +208,22 @@ public class Pipe extends ZObject
         return pipes;
     }
 
+    //  Creates the underlying pipe to pass messages in one direction.
+    private static YPipeBase<Msg> ypipe(boolean conflate, ConflateKey conflateKey, boolean ring, int hwm)
+    {
+        if (conflate) {
+            return conflateKey == null ? new YPipeConflate<>() : new YPipeKeyedConflate<>(conflateKey);
+        }
+        final int granularity = Config.MESSAGE_PIPE_GRANULARITY.getValue();
+        if (ring) {
+            //  Size the ring so that it holds all the messages up to the high watermark.
+            //  Rings are chained if the watermark is larger or unlimited.
+            int capacity = hwm > granularity ? Math.min(hwm, Config.MESSAGE_PIPE_RING_CAPACITY.getValue()) : granularity;
+            return new YPipeRing<>(capacity);
+        }
+        return new YPipe<>(granularity);
+    }
+
     //  Pipepair uses this function to let us know about
     //  the peer pipe object.
     private void setPeer(Pipe peer)
@@ -161,6 +241,18 @@ public class Pipe extends ZObject
         this.sink = sink;
     }
 
+    //  Returns the object that created the pipe endpoint.
+    public ZObject getParent()
+    {
+        return parent;
+    }
+
+    //  Returns the object that created the peer pipe endpoint.
+    public ZObject getPeerParent()
+    {
+        return peer.parent;
+    }
+
     //  Pipe endpoint can store an opaque ID to be used by its clients.
     public void setIdentity(Blob identity)
     {
@@ -198,6 +290,20 @@ public class Pipe extends ZObject
             return false;
         }
 
+        //  Messages stored by the peer in its overflow file come first.
+        while (spill != null && !spill.hasMessage()) {
+            if (spill.skipReturn()) {
+                spill = null;
+            }
+            else if (spill.park()) {
+                inActive = false;
+                return false;
+            }
+        }
+        if (spill != null) {
+            return true;
+        }
+
         //  Check if there's an item in the pipe.
         if (!inpipe.checkRead()) {
             inActive = false;
@@ -226,14 +332,60 @@ public class Pipe extends ZObject
             return null;
         }
 
+        Msg msg = fetch();
+        if (msg == null) {
+            return null;
+        }
+
+        final long bytes = bytesRead;
+        if (!msg.hasMore() && !msg.isIdentity()) {
+            msgsRead++;
+        }
+        bytesRead += msg.size();
+
+        if (lwm > 0 && msgsRead % lwm == 0 || bytesLwm > 0 && bytesRead / bytesLwm != bytes / bytesLwm) {
+            activateWrite();
+        }
+        return msg;
+    }
+
+    //  Fetches the next message from the underlying pipe, handling
+    //  credentials and delimiter on the way.
+    private Msg fetch()
+    {
         while (true) {
-            Msg msg = inpipe.read();
+            Msg msg;
+            if (spill != null) {
+                msg = spill.read();
+                if (msg == null) {
+                    if (spill.isReading()) {
+                        //  Wait for the peer to store more messages.
+                        if (spill.park()) {
+                            inActive = false;
+                            return null;
+                        }
+                        continue;
+                    }
+                    //  End of the stored messages, get back to the pipe.
+                    spill = null;
+                    continue;
+                }
+            }
+            else {
+                msg = inpipe.read();
+            }
 
             if (msg == null) {
                 inActive = false;
                 return null;
             }
 
+            //  The following messages have been stored by the peer in its overflow file.
+            if (msg instanceof Overflow.Marker) {
+                spill = ((Overflow.Marker) msg).enter();
+                continue;
+            }
+
             //  If this is a credential, save a copy and receive next message.
             if (msg.isCredential()) {
                 credential = Blob.createBlob(msg);
@@ -246,13 +398,6 @@ public class Pipe extends ZObject
                 return null;
             }
 
-            if (!msg.hasMore() && !msg.isIdentity()) {
-                msgsRead++;
-            }
-
-            if (lwm > 0 && msgsRead % lwm == 0) {
-                sendActivateWrite(peer, msgsRead);
-            }
             return msg;
         }
     }
@@ -268,6 +413,11 @@ public class Pipe extends ZObject
         // TODO DIFF V4 small change, it is done like this in 4.2.2
         boolean full = !checkHwm();
 
+        //  Beyond the high watermarks, messages are stored in the overflow file while there is room.
+        if (full && overflow != null) {
+            full = !overflow.accepts();
+        }
+
         if (full) {
             outActive = false;
             return false;
@@ -285,16 +435,101 @@ public class Pipe extends ZObject
         }
 
         boolean more = msg.hasMore();
-        boolean identity = msg.isIdentity();
+        if (overflow != null && !overflow.isPartial() && !checkHwm() && !overflow.reserve(msg)) {
+            //  The overflow file cannot grow, the pipe is full.
+            outActive = false;
+            return false;
+        }
+        if (overflow != null && spill(msg, more)) {
+            return true;
+        }
         outpipe.write(msg, more);
+        written(msg, more);
 
-        if (!more && !identity) {
-            msgsWritten++;
-        }
+        return true;
+    }
 
+    //  Stores the message part in the overflow file if the pipe is beyond its high watermarks.
+    //  Returns false if the message part has to be written to the underlying pipe.
+    private boolean spill(Msg msg, boolean more)
+    {
+        //  The high watermarks are only crossed between messages, see checkWrite.
+        final boolean full = !checkHwm();
+        if (!overflow.isSpilling()) {
+            if (!full) {
+                return false;
+            }
+            //  Let the reader know that the next messages are stored.
+            outpipe.write(overflow.start(), false);
+            flush();
+        }
+        else if (!full && !overflow.isPartial()) {
+            //  The peer has caught up, the messages are written to the pipe again
+            //  once it has read the stored ones.
+            activate(overflow.finish());
+            return false;
+        }
+        if (!overflow.reserve(msg)) {
+            //  The file cannot grow in the middle of a message, which is dropped.
+            overflow.drop(msg);
+            incompleteOut = more;
+            if (!more) {
+                bytesPending = 0;
+            }
+            return true;
+        }
+        written(msg, more);
+        activate(overflow.append(msg));
         return true;
     }
 
+    //  Activates the reader waiting for stored messages.
+    private void activate(boolean parked)
+    {
+        if (parked && state != State.TERM_ACK_SENT) {
+            activateRead();
+        }
+    }
+
+    //  Lets the peer know that there are messages to read,
+    //  unless a previous notification has not been processed yet.
+    private void activateRead()
+    {
+        if (peer.activateReadPending.compareAndSet(false, true)) {
+            sendActivateRead(peer);
+        }
+    }
+
+    //  Lets the peer know about the messages read so far. If a previous
+    //  notification has not been processed yet, it will carry these counters.
+    private void activateWrite()
+    {
+        //  Posted before the flag is checked: if the counters are taken before they are
+        //  both posted, the flag is already cleared and another command is sent.
+        peer.postedMsgsRead = msgsRead;
+        peer.postedBytesRead = bytesRead;
+        if (!peer.activateWritePending.getAndSet(true)) {
+            sendActivateWrite(peer);
+        }
+    }
+
+    //  Accounts for a message part written to the underlying pipe.
+    private void written(Msg msg, boolean more)
+    {
+        //  Credentials are skipped by the reader, their size is not accounted for.
+        if (!msg.isCredential()) {
+            bytesPending += msg.size();
+        }
+        incompleteOut = more;
+        if (!more) {
+            if (!msg.isIdentity()) {
+                msgsWritten++;
+            }
+            bytesWritten += bytesPending;
+            bytesPending = 0;
+        }
+    }
+
     //  Remove unfinished parts of the outbound message from the pipe.
     public void rollback()
     {
@@ -305,6 +540,26 @@ public class Pipe extends ZObject
                 assert (msg.hasMore());
             }
         }
+        if (overflow != null) {
+            overflow.rollback();
+        }
+        bytesPending = 0;
+        incompleteOut = false;
+    }
+
+    //  Returns true if the peer has read all the messages written to the pipe.
+    //  Only valid while the peer cannot read concurrently.
+    public boolean isDrained()
+    {
+        return state == State.ACTIVE && !incompleteOut && peer.msgsRead == msgsWritten;
+    }
+
+    //  Lets the peer know that it has to resume reading, even if no message was written.
+    public void resumeReader()
+    {
+        if (state == State.ACTIVE) {
+            activateRead();
+        }
     }
 
     //  Flush the messages downstream.
@@ -316,13 +571,16 @@ public class Pipe extends ZObject
         }
 
         if (outpipe != null && !outpipe.flush()) {
-            sendActivateRead(peer);
+            activateRead();
         }
     }
 
     @Override
     protected void processActivateRead()
     {
+        //  Further notifications have to be sent from now on.
+        activateReadPending.set(false);
+
         if (!inActive && (state == State.ACTIVE || state == State.WAITING_FOR_DELIMITER)) {
             inActive = true;
             sink.readActivated(this);
@@ -330,10 +588,15 @@ public class Pipe extends ZObject
     }
 
     @Override
-    protected void processActivateWrite(long msgsRead)
+    protected void processActivateWrite()
     {
-        //  Remember the peers's message sequence number.
-        peersMsgsRead = msgsRead;
+        //  Take the latest counters posted by the peer since the command was sent.
+        boolean pending = activateWritePending.getAndSet(false);
+        assert (pending);
+
+        //  Remember the peers's message sequence number and read bytes.
+        peersMsgsRead = postedMsgsRead;
+        peersBytesRead = postedBytesRead;
 
         if (!outActive && state == State.ACTIVE) {
             outActive = true;
@@ -350,9 +613,22 @@ public class Pipe extends ZObject
         outpipe.flush();
         Msg msg;
         while ((msg = outpipe.read()) != null) {
+            if (msg instanceof Overflow.Marker) {
+                continue;
+            }
             if (!msg.hasMore()) {
                 msgsWritten--;
             }
+            if (!msg.isCredential()) {
+                bytesWritten -= msg.size();
+            }
+        }
+
+        //  The stored messages are dropped as well, the reader does not read them anymore.
+        if (overflow != null) {
+            msgsWritten -= overflow.pendingMsgs();
+            bytesWritten -= overflow.pendingBytes();
+            overflow.reset();
         }
 
         //  Plug in the new outpipe.
@@ -424,6 +700,16 @@ public class Pipe extends ZObject
             assert (state == State.TERM_ACK_SENT || state == State.TERM_REQ_SENT_2);
         }
 
+        //  The stored messages not read yet are dropped with the file.
+        //  The pipe is terminated anyway, a failure is only reported.
+        if (overflow != null) {
+            IOException failure = overflow.close();
+            overflow = null;
+            if (failure != null) {
+                getCtx().getNotificationExceptionHandler().uncaughtException(Thread.currentThread(), failure);
+            }
+        }
+
         // TODO V4 not in zeromq, but no harm. Remove it?
         // If the inbound pipe has already been deallocated, then we're done.
         if (inpipe == null) {
@@ -504,6 +790,11 @@ public class Pipe extends ZObject
             //  Drop any unfinished outbound messages.
             rollback();
 
+            //  The stored messages are read before the delimiter.
+            if (overflow != null && overflow.isSpilling()) {
+                activate(overflow.finish());
+            }
+
             //  Write the delimiter into the pipe. Note that watermarks are not
             //  checked; thus the delimiter can be written even when the pipe is full.
 
@@ -547,6 +838,12 @@ public class Pipe extends ZObject
         return (hwm + 1) / 2;
     }
 
+    //  Computes the low watermark in bytes, following the same rules.
+    private static long computeLwm(long hwm)
+    {
+        return (hwm + 1) / 2;
+    }
+
     //  Handler for delimiter read from the pipe.
     private void processDelimiter()
     {
@@ -575,14 +872,10 @@ public class Pipe extends ZObject
         //  We'll drop the pointer to the inpipe. From now on, the peer is
         //  responsible for deallocating it.
         inpipe = null;
+        spill = null;
 
         //  Create new inpipe.
-        if (conflate) {
-            inpipe = new YPipeConflate<>();
-        }
-        else {
-            inpipe = new YPipe<>(Config.MESSAGE_PIPE_GRANULARITY.getValue());
-        }
+        inpipe = ypipe(conflate, conflateKey, ring, 0);
         inActive = true;
 
         //  Notify the peer about the hiccup.
@@ -595,10 +888,29 @@ public class Pipe extends ZObject
         hwm = outhwm;
     }
 
+    //  Sets the high watermarks in bytes. Zero means no limit.
+    public void setBytesHwms(long inhwm, long outhwm)
+    {
+        bytesLwm = computeLwm(inhwm);
+        bytesHwm = outhwm;
+    }
+
+    //  Enables the storage of the outbound messages beyond the high watermarks in a file
+    //  of the given directory, up to the given size in bytes. Not available for conflated pipes.
+    public void setOverflow(String directory, long size)
+    {
+        if (directory != null && size > 0 && !conflate) {
+            assert (overflow == null);
+            overflow = new Overflow(Paths.get(directory), size);
+        }
+    }
+
     public boolean checkHwm()
     {
         // TODO DIFF V4 small change, it is done like this in 4.2.2
         boolean full = hwm > 0 && (msgsWritten - peersMsgsRead) >= hwm;
+        //  The bytes are only counted for complete messages, a multi-part message is never cut.
+        full |= bytesHwm > 0 && (bytesWritten - peersBytesRead) >= bytesHwm;
         return !full;
     }
 
@@ -612,6 +924,9 @@ public class Pipe extends ZObject
         if (disconnectMsg != null && outpipe != null) {
             // Rollback any incomplete message in the pipe, and push the disconnect message.
             rollback();
+            if (overflow != null && overflow.isSpilling()) {
+                activate(overflow.finish());
+            }
 
             outpipe.write(disconnectMsg, false);
             flush();
@@ -624,6 +939,9 @@ public class Pipe extends ZObject
         if (hiccupMsg != null && outpipe != null) {
             // Rollback any incomplete message in the pipe, and push the hiccupMsg message.
             rollback();
+            if (overflow != null && overflow.isSpilling()) {
+                activate(overflow.finish());
+            }
 
             outpipe.write(hiccupMsg, false);
             flush();
@@ -0,0 +1,196 @@
+package zmq.pipe;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import zmq.Msg;
+
+//  Pipe keeping only the latest message for each key, for the sake of
+//  implementing the conflate socket option with a key extractor.
+//
+//  Messages are written part by part and become visible once complete,
+//  so that multi-part messages are conflated as a whole. A newer message
+//  replaces the pending one with the same key at its place, thus every
+//  key with pending messages is delivered in turn, whatever the rate of the others.
+//  Messages without key, and the ones handled by the pipe itself such as
+//  the delimiter, are never conflated. The latter are also never overtaken:
+//  a newer message whose pending one was written before them takes its place
+//  after them instead.
+public class YPipeKeyedConflate<T extends Msg> implements YPipeBase<T>
+{
+    //  A complete message, with its rank in the order of writing.
+    private static final class Entry<T>
+    {
+        private final List<T> parts;
+        private final long    rank;
+
+        private Entry(List<T> parts, long rank)
+        {
+            this.parts = parts;
+            this.rank = rank;
+        }
+    }
+
+    private final ConflateKey extractor;
+
+    //  Latest complete message for each key, in the order of the keys.
+    private final Map<Object, Entry<T>> pending = new LinkedHashMap<>();
+
+    private final Lock sync = new ReentrantLock();
+
+    //  Reader asleep behaviour is as of the usual ypipe.
+    private boolean readerAwake = true;
+
+    //  Writer side: parts of the message being written, and whether
+    //  complete messages were written since the last flush.
+    private List<T> writing = new ArrayList<>();
+    private boolean written;
+
+    //  Writer side: rank of the next complete message, and rank of the
+    //  last one handled by the pipe itself.
+    private long rank;
+    private long barrier = -1;
+
+    //  Reader side: parts of the message being read.
+    private List<T> reading;
+    private int     readPos;
+
+    public YPipeKeyedConflate(ConflateKey extractor)
+    {
+        assert (extractor != null);
+        this.extractor = extractor;
+    }
+
+    @Override
+    public void write(final T value, boolean incomplete)
+    {
+        writing.add(value);
+        if (incomplete) {
+            return;
+        }
+        final List<T> msg = writing;
+        writing = new ArrayList<>(msg.size());
+        written = true;
+
+        final T first = msg.get(0);
+        final Object key = key(first);
+        final long current = rank++;
+        if (isControl(first)) {
+            barrier = current;
+        }
+        sync.lock();
+        try {
+            //  Only the messages written since the last control one can be replaced at their place.
+            Entry<T> previous = pending.get(key);
+            if (previous != null && previous.rank < barrier) {
+                pending.remove(key);
+            }
+            pending.put(key, new Entry<>(msg, current));
+        }
+        finally {
+            sync.unlock();
+        }
+    }
+
+    //  Extracts the key of a complete message.
+    private Object key(T first)
+    {
+        Object key = null;
+        if (!isControl(first)) {
+            key = extractor.key(first);
+        }
+        //  A message without key is stored under its own one.
+        return key == null ? new Object() : key;
+    }
+
+    //  Returns true if the message is handled by the pipe itself.
+    private static boolean isControl(Msg first)
+    {
+        return first.isDelimiter() || first.isCredential() || first.isIdentity() || first.isCommand();
+    }
+
+    //  Pop an incomplete item from the pipe.
+    @Override
+    public T unwrite()
+    {
+        if (writing.isEmpty()) {
+            return null;
+        }
+        return writing.remove(writing.size() - 1);
+    }
+
+    //  Returns false if the reader thread is sleeping. In that case,
+    //  caller is obliged to wake the reader up before using the pipe again.
+    @Override
+    public boolean flush()
+    {
+        if (!written) {
+            return true;
+        }
+        written = false;
+        sync.lock();
+        try {
+            if (readerAwake) {
+                return true;
+            }
+            readerAwake = true;
+            return false;
+        }
+        finally {
+            sync.unlock();
+        }
+    }
+
+    //  Check whether item is available for reading.
+    @Override
+    public boolean checkRead()
+    {
+        if (reading != null) {
+            return true;
+        }
+        sync.lock();
+        try {
+            Iterator<Entry<T>> it = pending.values().iterator();
+            if (!it.hasNext()) {
+                readerAwake = false;
+                return false;
+            }
+            reading = it.next().parts;
+            readPos = 0;
+            it.remove();
+            return true;
+        }
+        finally {
+            sync.unlock();
+        }
+    }
+
+    //  Reads an item from the pipe. Returns null if there is no value available.
+    @Override
+    public T read()
+    {
+        if (!checkRead()) {
+            return null;
+        }
+        T value = reading.get(readPos++);
+        if (readPos == reading.size()) {
+            reading = null;
+        }
+        return value;
+    }
+
+    //  Returns the next item of the pipe without reading it.
+    //  The pipe mustn't be empty.
+    @Override
+    public T probe()
+    {
+        boolean rc = checkRead();
+        assert (rc);
+        return reading.get(readPos);
+    }
+}
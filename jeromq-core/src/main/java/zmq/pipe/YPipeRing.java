@@ -0,0 +1,285 @@
+package zmq.pipe;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+//  Lock-free single-writer single-reader pipe, storing the items in a
+//  power-of-two array ring, indexed by ever increasing sequences.
+//  Reader and writer only share two sequences, each one alone on its
+//  cache line: the sequence past the last flushed item, and the
+//  sequence of the next item to read.
+//  The pipe is not bounded: when the ring is full, the writer continues
+//  in a new ring and leaves a jump marker for the reader.
+public class YPipeRing<T> implements YPipeBase<T>
+{
+    //  Marks the slot where the reader shall move on to the next ring.
+    private static final Object JUMP = new Object();
+
+    private static class LeftPadding
+    {
+        protected long p01;
+        protected long p02;
+        protected long p03;
+        protected long p04;
+        protected long p05;
+        protected long p06;
+        protected long p07;
+    }
+
+    private static class Value extends LeftPadding
+    {
+        volatile long value;
+    }
+
+    //  A sequence alone on its cache line, to avoid false sharing.
+    private static final class Sequence extends Value
+    {
+        private static final AtomicLongFieldUpdater<Value> VALUE = AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+        protected long p11;
+        protected long p12;
+        protected long p13;
+        protected long p14;
+        protected long p15;
+        protected long p16;
+        protected long p17;
+
+        private Sequence(long initial)
+        {
+            value = initial;
+        }
+
+        private boolean compareAndSet(long expected, long update)
+        {
+            return VALUE.compareAndSet(this, expected, update);
+        }
+
+        private void lazySet(long update)
+        {
+            VALUE.lazySet(this, update);
+        }
+    }
+
+    private static final class Ring
+    {
+        private final Object[] items;
+
+        //  Sequence of the first item written in this ring.
+        private final long start;
+
+        //  The ring where the reader goes on after the jump marker.
+        private Ring next;
+
+        //  The ring written before this one, as long as incomplete items
+        //  written there may be unwritten. Used exclusively by writer thread.
+        private Ring prev;
+
+        private Ring(int capacity, long start)
+        {
+            this.items = new Object[capacity];
+            this.start = start;
+        }
+    }
+
+    private final int mask;
+
+    //  The ring being written. Used exclusively by writer thread.
+    private Ring back;
+
+    //  The ring being read. Used exclusively by reader thread.
+    private Ring front;
+
+    //  Sequence of the next item to write. Used exclusively by writer thread.
+    private long tail;
+
+    //  Sequence of the first un-flushed item. Used exclusively by writer thread.
+    private long w;
+
+    //  Sequence of the first item to be flushed in the future.
+    //  Used exclusively by writer thread.
+    private long f;
+
+    //  Last known sequence of the next item to read.
+    //  Used exclusively by writer thread.
+    private long cachedHead;
+
+    //  Sequence of the next item to read. Used exclusively by reader thread.
+    private long head;
+
+    //  Sequence past the last prefetched item, or -1 if the reader is asleep.
+    //  Used exclusively by reader thread.
+    private long r;
+
+    //  The single point of contention between writer and reader thread.
+    //  Sequence past the last flushed item. If it is -1, reader is asleep.
+    private final Sequence c = new Sequence(0);
+
+    //  Sequence of the next item to read, published for the writer
+    //  to know which slots are free.
+    private final Sequence consumed = new Sequence(0);
+
+    //  Capacity is rounded up to the next power of two.
+    public YPipeRing(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mask = size - 1;
+        back = new Ring(size, 0);
+        front = back;
+    }
+
+    //  Write an item to the pipe.  Don't flush it yet. If incomplete is
+    //  set to true the item is assumed to be continued by items
+    //  subsequently written to the pipe. Incomplete items are never
+    //  flushed down the stream.
+    @Override
+    public void write(final T value, boolean incomplete)
+    {
+        final int idx = (int) tail & mask;
+        //  The slot of the item is always free. Keep the next one free as well,
+        //  for the jump marker, or continue in a new ring.
+        if (!isFree(tail + 1)) {
+            Ring ring = new Ring(mask + 1, tail);
+            ring.prev = back;
+            back.next = ring;
+            back.items[idx] = JUMP;
+            back = ring;
+        }
+        back.items[idx] = value;
+        ++tail;
+
+        //  Move the "flush up to here" pointer.
+        if (!incomplete) {
+            f = tail;
+            //  Items of the previous rings cannot be unwritten anymore.
+            back.prev = null;
+        }
+    }
+
+    //  Returns true if the slot of the given sequence can be written in the ring being written.
+    private boolean isFree(long sequence)
+    {
+        final long used = sequence - mask - 1;
+        if (used < back.start || used < cachedHead) {
+            return true;
+        }
+        cachedHead = consumed.value;
+        return used < cachedHead;
+    }
+
+    //  Pop an incomplete item from the pipe. Returns true is such
+    //  item exists, false otherwise.
+    @Override
+    @SuppressWarnings("unchecked")
+    public T unwrite()
+    {
+        if (f == tail) {
+            return null;
+        }
+        --tail;
+        if (tail < back.start) {
+            //  The item was written in the previous ring, go back there.
+            //  The jump marker left there will be overwritten.
+            back = back.prev;
+            back.next = null;
+        }
+        final int idx = (int) tail & mask;
+        T value = (T) back.items[idx];
+        back.items[idx] = null;
+        return value;
+    }
+
+    //  Flush all the completed items into the pipe. Returns false if
+    //  the reader thread is sleeping. In that case, caller is obliged to
+    //  wake the reader up before using the pipe again.
+    @Override
+    public boolean flush()
+    {
+        //  If there are no un-flushed items, do nothing.
+        if (w == f) {
+            return true;
+        }
+
+        //  Try to set 'c' to 'f'.
+        if (!c.compareAndSet(w, f)) {
+            //  Compare-and-swap was unsuccessful because 'c' is -1.
+            //  This means that the reader is asleep. Therefore we don't
+            //  care about thread-safeness and update c in non-atomic
+            //  manner. We'll return false to let the caller know
+            //  that reader is sleeping.
+            c.value = f;
+            w = f;
+            return false;
+        }
+
+        //  Reader is alive. Nothing special to do now. Just move
+        //  the 'first un-flushed item' pointer to 'f'.
+        w = f;
+        return true;
+    }
+
+    //  Check whether item is available for reading.
+    @Override
+    public boolean checkRead()
+    {
+        //  Was the value prefetched already? If so, return.
+        if (head < r) {
+            return true;
+        }
+
+        //  There's no prefetched value, so let us prefetch more values.
+        //  Prefetching is to simply retrieve the sequence from c in
+        //  atomic fashion. If there are no items to prefetch, set c
+        //  to -1 (using compare-and-swap).
+        if (!c.compareAndSet(head, -1)) {
+            // something to have been written
+            r = c.value;
+        }
+
+        //  If there are no elements prefetched, exit.
+        return head < r;
+    }
+
+    //  Reads an item from the pipe. Returns null if there is no value.
+    //  available.
+    @Override
+    @SuppressWarnings("unchecked")
+    public T read()
+    {
+        //  Try to prefetch a value.
+        if (!checkRead()) {
+            return null;
+        }
+
+        //  There was at least one value prefetched.
+        //  Return it to the caller.
+        final int idx = (int) head & mask;
+        Object value = frontItem(idx);
+        front.items[idx] = null;
+        consumed.lazySet(++head);
+        return (T) value;
+    }
+
+    //  Returns the first element in the pipe without removing it.
+    //  The pipe mustn't be empty or the function crashes.
+    @Override
+    @SuppressWarnings("unchecked")
+    public T probe()
+    {
+        boolean rc = checkRead();
+        assert (rc);
+
+        return (T) frontItem((int) head & mask);
+    }
+
+    //  Returns the item at the given index of the ring being read,
+    //  following the jump marker if any.
+    private Object frontItem(int idx)
+    {
+        Object value = front.items[idx];
+        if (value == JUMP) {
+            front.items[idx] = null;
+            front = front.next;
+            value = front.items[idx];
+        }
+        return value;
+    }
+}
@@ -3,6 +3,7 @@ package zmq.poll;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 
+import zmq.Ctx;
 import zmq.SocketBase;
 import zmq.ZMQ;
 
@@ -146,8 +147,63 @@ public class PollItem
         return ready;
     }
 
+    //  Updates the events of an item polled by a poll set, given the operations its channel was
+    //  selected for. The channel may be polled for other operations on behalf of other items.
+    int update(SelectionKey key, int selected)
+    {
+        if (socket != null) {
+            return readyOps(key, 0);
+        }
+        ready = 0;
+        if ((selected & SelectionKey.OP_READ) != 0) {
+            ready |= ZMQ.ZMQ_POLLIN;
+        }
+        if ((selected & SelectionKey.OP_WRITE) != 0) {
+            ready |= ZMQ.ZMQ_POLLOUT;
+        }
+        ready &= zinterest;
+        if (!key.isValid() || (selected & (SelectionKey.OP_ACCEPT | SelectionKey.OP_CONNECT)) != 0) {
+            ready |= ZMQ.ZMQ_POLLERR;
+        }
+        return ready;
+    }
+
     public int readyOps()
     {
         return ready;
     }
+
+    //  Runs the I/O of the context of the sockets while waiting for their events, for a context without
+    //  an I/O thread of its own. Returns the time left to wait on the selector, in milliseconds, -1 for ever.
+    //  Only the mailboxes of the sockets of that context wake up the I/O, so that the other items
+    //  are checked every millisecond.
+    public static long runIo(PollItem[] items, int count, long waitMillis)
+    {
+        Ctx ctx = null;
+        boolean mixed = false;
+        for (int idx = 0; idx < count; ++idx) {
+            if (items[idx] == null) {
+                continue;
+            }
+            SocketBase socket = items[idx].socket;
+            if (socket == null || !socket.getCtx().isIoInline()) {
+                mixed = true;
+            }
+            else if (ctx == null) {
+                ctx = socket.getCtx();
+            }
+            else if (ctx != socket.getCtx()) {
+                mixed = true;
+            }
+        }
+        if (ctx == null) {
+            return waitMillis;
+        }
+        if (!mixed && ctx.driveIo(waitMillis)) {
+            return 0;
+        }
+        //  Another thread runs the I/O, or the I/O cannot be woken up by all the items.
+        ctx.driveIo(0);
+        return waitMillis < 0 ? 1 : Math.min(waitMillis, 1);
+    }
 }
@@ -0,0 +1,306 @@
+package zmq.poll;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import zmq.ZError;
+import zmq.util.Clock;
+
+/**
+ * A set of poll items, registered once in a selector and polled many times.
+ * <p>
+ * Whereas {@link zmq.ZMQ#poll(Selector, PollItem[], int, long)} registers the channels of the items at each call,
+ * a poll set registers them when the items are added and cancels them when they are removed,
+ * so that polling allocates nothing.
+ * <p>
+ * Several poll sets can share a selector, a channel polled by several of them being registered once.
+ * The selector shall not be used by {@link zmq.ZMQ#poll(Selector, PollItem[], int, long)} at the same time.
+ * <p>
+ * A poll set is not thread-safe.
+ */
+public final class PollSet
+{
+    //  Registration of a channel in the selector, shared by all the items polling it.
+    private static final class Registration
+    {
+        private SelectionKey key;
+
+        //  Number of items polling the channel, and of those interested in each operation.
+        private int refs;
+        private int reads;
+        private int writes;
+
+        //  Operations the channel was selected for during the last pass.
+        private int selected;
+
+        private int interestOps()
+        {
+            return (reads > 0 ? SelectionKey.OP_READ : 0) | (writes > 0 ? SelectionKey.OP_WRITE : 0);
+        }
+
+        private void update(int ops, int delta)
+        {
+            refs += delta;
+            if ((ops & SelectionKey.OP_READ) != 0) {
+                reads += delta;
+            }
+            if ((ops & SelectionKey.OP_WRITE) != 0) {
+                writes += delta;
+            }
+        }
+    }
+
+    private static final int SIZE_DEFAULT = 16;
+
+    private final Selector selector;
+
+    //  The items of the set, with the registration of their channel at the same index.
+    private PollItem[]     items;
+    private Registration[] registrations;
+    private int            count;
+
+    //  Records the operations each channel was selected for.
+    private final Consumer<SelectionKey> onSelected = key -> {
+        Object attachment = key.attachment();
+        if (attachment instanceof Registration) {
+            ((Registration) attachment).selected = key.readyOps();
+        }
+    };
+
+    /**
+     * @param selector the selector to register the items in. It is not closed by the poll set.
+     */
+    public PollSet(Selector selector)
+    {
+        this.selector = selector;
+        items = new PollItem[SIZE_DEFAULT];
+        registrations = new Registration[SIZE_DEFAULT];
+    }
+
+    /**
+     * Adds an item to the set, registering its channel in the selector if not already done.
+     * An item shall be added only once.
+     *
+     * @param item the item to poll.
+     * @return false if the selector is closed, true otherwise.
+     */
+    public boolean add(PollItem item)
+    {
+        SelectableChannel channel = item.getChannel();
+        try {
+            SelectionKey key = channel.keyFor(selector);
+            if (key != null && !key.isValid()) {
+                //  The key is canceled, but still registered until the next selection.
+                selector.selectNow(onSelected);
+                key = null;
+            }
+            Registration registration;
+            if (key == null) {
+                registration = new Registration();
+                registration.key = channel.register(selector, 0, registration);
+            }
+            else if (key.attachment() instanceof Registration) {
+                registration = (Registration) key.attachment();
+            }
+            else {
+                //  Left by a previous call to ZMQ.poll.
+                registration = new Registration();
+                registration.key = key;
+                key.attach(registration);
+            }
+            registration.update(item.interestOps(), 1);
+            registration.key.interestOps(registration.interestOps());
+
+            if (count == items.length) {
+                items = Arrays.copyOf(items, count * 2);
+                registrations = Arrays.copyOf(registrations, count * 2);
+            }
+            items[count] = item;
+            registrations[count] = registration;
+            ++count;
+            return true;
+        }
+        catch (ClosedSelectorException e) {
+            return false;
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+    }
+
+    /**
+     * Removes an item from the set, canceling the registration of its channel if no other item polls it.
+     *
+     * @param item the item to remove.
+     * @return true if the item was in the set.
+     */
+    public boolean remove(PollItem item)
+    {
+        for (int idx = 0; idx < count; ++idx) {
+            if (items[idx] == item) {
+                Registration registration = registrations[idx];
+                registration.update(item.interestOps(), -1);
+                if (registration.refs == 0) {
+                    registration.key.cancel();
+                }
+                else if (registration.key.isValid()) {
+                    try {
+                        registration.key.interestOps(registration.interestOps());
+                    }
+                    catch (CancelledKeyException e) {
+                        //  The channel has been closed meanwhile.
+                    }
+                }
+                //  The order of the items does not matter, move the last one in place.
+                --count;
+                items[idx] = items[count];
+                registrations[idx] = registrations[count];
+                items[count] = null;
+                registrations[count] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all the items from the set.
+     */
+    public void clear()
+    {
+        while (count > 0) {
+            remove(items[count - 1]);
+        }
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * Polls the items of the set, updating their ready operations.
+     *
+     * @param timeout the maximum time to wait for events, in milliseconds. 0 to return immediately, -1 to wait forever.
+     * @return the number of items with events, or -1 if the selector or one of the sockets is closed.
+     */
+    public int poll(long timeout)
+    {
+        if (count == 0) {
+            if (timeout <= 0) {
+                return 0;
+            }
+            LockSupport.parkNanos(TimeUnit.NANOSECONDS.convert(timeout, TimeUnit.MILLISECONDS));
+            return 0;
+        }
+        long now = 0L;
+        long end = 0L;
+
+        boolean firstPass = true;
+        int nevents;
+
+        while (true) {
+            //  Compute the timeout for the subsequent poll.
+            long waitMillis;
+            if (firstPass) {
+                waitMillis = 0L;
+            }
+            else if (timeout < 0L) {
+                waitMillis = -1L;
+            }
+            else {
+                waitMillis = TimeUnit.NANOSECONDS.toMillis(end - now);
+                if (waitMillis == 0) {
+                    waitMillis = 1L;
+                }
+            }
+
+            //  The I/O of a context without I/O thread runs while waiting.
+            if (waitMillis != 0) {
+                waitMillis = PollItem.runIo(items, count, waitMillis);
+            }
+
+            //  Wait for events.
+            for (int idx = 0; idx < count; ++idx) {
+                registrations[idx].selected = 0;
+            }
+            try {
+                if (waitMillis < 0) {
+                    selector.select(onSelected, 0);
+                }
+                else if (waitMillis == 0) {
+                    selector.selectNow(onSelected);
+                }
+                else {
+                    selector.select(onSelected, waitMillis);
+                }
+            }
+            catch (ClosedSelectorException e) {
+                // context was closed asynchronously, exit gracefully
+                return -1;
+            }
+            catch (IOException e) {
+                throw new ZError.IOException(e);
+            }
+
+            nevents = 0;
+            for (int idx = 0; idx < count; ++idx) {
+                Registration registration = registrations[idx];
+                int ready = items[idx].update(registration.key, registration.selected);
+                if (ready < 0) {
+                    return -1;
+                }
+                if (ready > 0) {
+                    nevents++;
+                }
+            }
+
+            //  If timeout is zero, exit immediately whether there are events or not.
+            if (timeout == 0) {
+                break;
+            }
+
+            if (nevents > 0) {
+                break;
+            }
+
+            //  At this point we are meant to wait for events but there are none.
+            //  If timeout is infinite we can just loop until we get some events.
+            if (timeout < 0) {
+                if (firstPass) {
+                    firstPass = false;
+                }
+                continue;
+            }
+
+            //  The timeout is finite and there are no events. In the first pass
+            //  we get a timestamp of when the polling have begun. (We assume that
+            //  first pass have taken negligible time). We also compute the time
+            //  when the polling should time out.
+            if (firstPass) {
+                now = Clock.nowNS();
+                end = now + TimeUnit.MILLISECONDS.toNanos(timeout);
+                if (now == end) {
+                    break;
+                }
+                firstPass = false;
+                continue;
+            }
+
+            //  Find out whether timeout have expired.
+            now = Clock.nowNS();
+            if (now >= end) {
+                break;
+            }
+        }
+        return nevents;
+    }
+}
@@ -8,14 +8,18 @@ import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import zmq.Ctx;
 import zmq.ZError;
+import zmq.util.ThreadAffinity;
 
 public final class Poller extends PollerBase implements Runnable
 {
@@ -28,6 +32,8 @@ public final class Poller extends PollerBase implements Runnable
 
         private int     ops;
         private boolean cancelled;
+        //  True if the handle is in the list of changes to apply.
+        private boolean changed;
 
         public Handle(SelectableChannel fd, IPollEvents handler)
         {
@@ -76,8 +82,8 @@ public final class Poller extends PollerBase implements Runnable
     //  stores data for registered descriptors.
     private final Set<Handle> fdTable;
 
-    //  If true, there's at least one retired event source.
-    private boolean retired = false;
+    //  Handles whose registration has to be updated, so that the loop does not scan the fdTable.
+    private final Deque<Handle> changes = new ArrayDeque<>();
 
     //  If true, thread is in the process of shutting down.
     private final AtomicBoolean  stopping = new AtomicBoolean();
@@ -86,10 +92,31 @@ public final class Poller extends PollerBase implements Runnable
 
     private Selector selector;
 
+    //  Name of the thread, given to the hook pinning it to CPUs.
+    private final String name;
+
+    //  Time an idle poller keeps polling without blocking, in nanoseconds.
+    //  0 to always block in the selector, negative to never block.
+    private final long busyPoll;
+
+    //  Dispatches the events of the selected keys, without going through the set of selected keys.
+    private final Consumer<SelectionKey> dispatcher = this::dispatch;
+
     public Poller(Ctx ctx, String name)
+    {
+        this(ctx, name, 0);
+    }
+
+    /**
+     * @param busyPoll the time an idle poller keeps polling without blocking, in microseconds.
+     *                 0 to always block in the selector, -1 to never block.
+     */
+    public Poller(Ctx ctx, String name, int busyPoll)
     {
         super(name, ctx.getThreadFactory());
         this.ctx = ctx;
+        this.name = name;
+        this.busyPoll = busyPoll < 0 ? -1 : TimeUnit.MICROSECONDS.toNanos(busyPoll);
         exnotification = ctx.getNotificationExceptionHandler();
         fdTable = new HashSet<>();
         selector = ctx.createSelector();
@@ -99,7 +126,10 @@ public final class Poller extends PollerBase implements Runnable
     {
         try {
             stop();
-            stopped.await();
+            //  A poller run by the application threads has no thread to wait for.
+            if (worker.getState() != Thread.State.NEW) {
+                stopped.await();
+            }
         }
         catch (InterruptedException e) {
             e.printStackTrace();
@@ -129,7 +159,7 @@ public final class Poller extends PollerBase implements Runnable
 
         //  Mark the fd as unused.
         handle.cancelled = true;
-        retired = true;
+        changed(handle);
 
         //  Decrease the load metric of the thread.
         adjustLoad(-1);
@@ -175,7 +205,15 @@ public final class Poller extends PollerBase implements Runnable
         else {
             handle.ops &= ~ops;
         }
-        retired = true;
+        changed(handle);
+    }
+
+    private void changed(Handle handle)
+    {
+        if (!handle.changed) {
+            handle.changed = true;
+            changes.add(handle);
+        }
     }
 
     public void start()
@@ -186,56 +224,78 @@ public final class Poller extends PollerBase implements Runnable
     public void stop()
     {
         stopping.set(true);
-        retired = false;
         selector.wakeup();
     }
 
     @Override
     public void run()
     {
+        ThreadAffinity affinity = ctx.getThreadAffinity();
+        if (affinity != null) {
+            try {
+                affinity.pin(name);
+            }
+            catch (RuntimeException e) {
+                exnotification.uncaughtException(worker, e);
+            }
+        }
+
         int returnsImmediately = 0;
 
+        //  Time since when a busy poller has found no event, 0 if it just had some.
+        long idleSince = 0;
+
         while (!stopping.get()) {
             //  Execute any due timers.
             long timeout = executeTimers();
 
-            if (retired) {
-                retired = false;
-                Iterator<Handle> iter = fdTable.iterator();
-                while (iter.hasNext()) {
-                    Handle handle = iter.next();
-                    SelectionKey key = handle.fd.keyFor(selector);
-                    if (handle.cancelled || !handle.fd.isOpen()) {
-                        if (key != null) {
-                            key.cancel();
-                        }
-                        iter.remove();
-                        continue;
-                    }
-                    if (key == null) {
-                        if (handle.fd.isOpen()) {
-                            try {
-                                key = handle.fd.register(selector, handle.ops, handle);
-                                assert (key != null);
-                            }
-                            catch (CancelledKeyException | ClosedSelectorException | ClosedChannelException e) {
-                                exnotification.uncaughtException(worker, e);
-                            }
-                        }
-                    }
-                    else if (key.isValid()) {
-                        key.interestOps(handle.ops);
+            //  Apply the changes of registration.
+            applyChanges();
+
+            //  Poll for events without blocking, as long as the busy poller is not idle for too long.
+            if (busyPoll != 0) {
+                int rc;
+                try {
+                    rc = selector.selectNow(dispatcher);
+                }
+                catch (ClosedSelectorException e) {
+                    if (stopping.get()) {
+                        break;
                     }
+                    rebuildSelector();
+                    exnotification.uncaughtException(worker, e);
+                    continue;
                 }
+                catch (IOException e) {
+                    throw new ZError.IOException(e);
+                }
+                if (rc > 0) {
+                    idleSince = 0;
+                    continue;
+                }
+                long now = System.nanoTime();
+                if (idleSince == 0) {
+                    idleSince = now;
+                }
+                if (busyPoll < 0 || now - idleSince < busyPoll) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                //  Back off, the next events will wake the poller up.
+                idleSince = 0;
             }
 
             //  Wait for events.
             int rc;
             long start = System.currentTimeMillis();
             try {
-                rc = selector.select(timeout);
+                rc = selector.select(dispatcher, timeout);
             }
             catch (ClosedSelectorException e) {
+                if (stopping.get()) {
+                    //  The selector was closed by the context while dispatching the last events.
+                    break;
+                }
                 rebuildSelector();
                 exnotification.uncaughtException(worker, e);
                 ctx.errno().set(ZError.EINTR);
@@ -245,42 +305,104 @@ public final class Poller extends PollerBase implements Runnable
                 throw new ZError.IOException(e);
             }
 
-            //  If there are no events (i.e. it's a timeout) there's no point
-            //  in checking the keys.
+            //  If there are no events (i.e. it's a timeout), check for the JDK epoll bug.
             if (rc == 0) {
                 returnsImmediately = maybeRebuildSelector(returnsImmediately, timeout, start);
-                continue;
             }
+        }
+        stopped.countDown();
+    }
 
-            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
-            while (it.hasNext()) {
-                SelectionKey key = it.next();
-                Handle pollset = (Handle) key.attachment();
-                it.remove();
-                if (pollset.cancelled) {
-                    continue;
-                }
+    //  Runs the poller once from the calling thread, for a poller that is not started:
+    //  executes the due timers, then waits for events at most the given time, in milliseconds,
+    //  0 to return immediately, -1 to wait until there are some or the poller is woken up.
+    public void runOnce(long timeout)
+    {
+        assert (!worker.isAlive());
 
+        long next = executeTimers();
+        applyChanges();
+
+        try {
+            if (timeout == 0) {
+                selector.selectNow(dispatcher);
+            }
+            else {
+                //  A timeout of 0 is infinite for the selector.
+                selector.select(dispatcher, next == 0 ? Math.max(timeout, 0) : timeout < 0 ? next : Math.min(next, timeout));
+            }
+        }
+        catch (ClosedSelectorException e) {
+            if (!stopping.get()) {
+                rebuildSelector();
+                exnotification.uncaughtException(worker, e);
+            }
+        }
+        catch (IOException e) {
+            throw new ZError.IOException(e);
+        }
+    }
+
+    //  Wakes up the poller waiting for events.
+    public void wakeup()
+    {
+        selector.wakeup();
+    }
+
+    //  Applies the changes of registration to the selector.
+    private void applyChanges()
+    {
+        Handle handle;
+        while ((handle = changes.poll()) != null) {
+            handle.changed = false;
+            SelectionKey key = handle.fd.keyFor(selector);
+            if (handle.cancelled || !handle.fd.isOpen()) {
+                if (key != null) {
+                    key.cancel();
+                }
+                fdTable.remove(handle);
+                continue;
+            }
+            if (key == null) {
                 try {
-                    if (key.isValid() && key.isAcceptable()) {
-                        pollset.handler.acceptEvent();
-                    }
-                    if (key.isValid() && key.isConnectable()) {
-                        pollset.handler.connectEvent();
-                    }
-                    if (key.isValid() && key.isWritable()) {
-                        pollset.handler.outEvent();
-                    }
-                    if (key.isValid() && key.isReadable()) {
-                        pollset.handler.inEvent();
-                    }
+                    key = handle.fd.register(selector, handle.ops, handle);
+                    assert (key != null);
                 }
-                catch (RuntimeException e) {
+                catch (CancelledKeyException | ClosedSelectorException | ClosedChannelException e) {
                     exnotification.uncaughtException(worker, e);
                 }
             }
+            else if (key.isValid()) {
+                key.interestOps(handle.ops);
+            }
+        }
+    }
+
+    //  Calls the handler of a selected key for each of its ready operations.
+    private void dispatch(SelectionKey key)
+    {
+        Handle pollset = (Handle) key.attachment();
+        if (pollset.cancelled) {
+            return;
+        }
+
+        try {
+            if (key.isValid() && key.isAcceptable()) {
+                pollset.handler.acceptEvent();
+            }
+            if (key.isValid() && key.isConnectable()) {
+                pollset.handler.connectEvent();
+            }
+            if (key.isValid() && key.isWritable()) {
+                pollset.handler.outEvent();
+            }
+            if (key.isValid() && key.isReadable()) {
+                pollset.handler.inEvent();
+            }
+        }
+        catch (RuntimeException e) {
+            exnotification.uncaughtException(worker, e);
         }
-        stopped.countDown();
     }
 
     private int maybeRebuildSelector(int returnsImmediately, long timeout, long start)
@@ -305,7 +427,10 @@ public final class Poller extends PollerBase implements Runnable
         Selector oldSelector = selector;
 
         selector = ctx.createSelector();
-        retired = true;
+        //  All the handles have to be registered again.
+        for (Handle handle : fdTable) {
+            changed(handle);
+        }
 
         ctx.closeSelector(oldSelector);
     }
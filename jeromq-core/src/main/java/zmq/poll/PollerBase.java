@@ -1,20 +1,34 @@
 package zmq.poll;
 
-import java.util.Map.Entry;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import zmq.util.Clock;
-import zmq.util.MultiMap;
 import zmq.util.function.BiFunction;
 
 abstract class PollerBase implements Runnable
 {
+    //  Number of slots of the timer wheel, one per millisecond. Must be a power of 2.
+    private static final int WHEEL_SIZE = 1 << 10;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    //  Index of the list of the timers beyond the wheel.
+    private static final int FAR = WHEEL_SIZE;
+
     private static final class TimerInfo
     {
         private final IPollEvents sink;
         private final int         id;
 
-        private boolean cancelled;
+        //  Time when the timer expires.
+        private long expiration;
+
+        //  Links in the list of the timers of the slot, valid while linked.
+        private TimerInfo prev;
+        private TimerInfo next;
+        private int       index;
+        private boolean   linked;
 
         public TimerInfo(IPollEvents sink, int id)
         {
@@ -60,14 +74,34 @@ abstract class PollerBase implements Runnable
     //  registered.
     private final AtomicInteger load = new AtomicInteger(0);
 
-    private final MultiMap<Long, TimerInfo> timers = new MultiMap<>();
+    //  Timing wheel: a timer expiring within a round of the wheel is stored in the slot
+    //  of its expiration millisecond, modulo the size of the wheel, so that each slot
+    //  holds the timers of a single millisecond. The later ones are kept in a separate list,
+    //  moved to the wheel at least half a round at a time, or when they are due.
+    private final TimerInfo[] heads = new TimerInfo[WHEEL_SIZE + 1];
+    private final TimerInfo[] tails = new TimerInfo[WHEEL_SIZE + 1];
+
+    //  One bit per slot of the wheel, set when the slot holds timers.
+    private final long[] occupied = new long[WHEEL_SIZE / Long.SIZE];
+
+    //  No timer of the far list expires before this time. It is not raised when
+    //  cancelling a timer, but when the list is visited.
+    private long farExpiration = Long.MAX_VALUE;
+
+    //  Timers by sink and id, for the cancellation.
+    private final Map<TimerInfo, TimerInfo> timers = new HashMap<>();
+
+    //  Next millisecond whose slot has to be visited. All the timers of the wheel
+    //  are stored in the slots of this millisecond or of the following ones.
+    private long tick;
+
+    //  No timer expires before this time. It is not raised when cancelling a timer,
+    //  so the poller may wake up a bit early in that case.
+    private long nextExpiration;
 
     // the thread where all events will be dispatched. So, the actual IO or Reaper threads.
     protected final Thread worker;
 
-    // did timers expiration add timer ?
-    private boolean changed;
-
     protected PollerBase(String name)
     {
         worker = createWorker(name);
@@ -113,27 +147,35 @@ abstract class PollerBase implements Runnable
     //  argument set to id_.
     public void addTimer(long timeout, IPollEvents sink, int id)
     {
-        assert (Thread.currentThread() == worker);
+        assert (Thread.currentThread() == worker || !worker.isAlive());
 
-        final long expiration = clock() + timeout;
+        final long now = clock();
         TimerInfo info = new TimerInfo(sink, id);
-        timers.insert(expiration, info);
+        info.expiration = now + timeout;
 
-        changed = true;
+        //  A timer with the same sink and id is replaced.
+        TimerInfo old = timers.put(info, info);
+        if (old != null) {
+            unlink(old);
+        }
+        if (timers.size() == 1) {
+            //  The wheel was empty, start it from now.
+            tick = Math.max(tick, now);
+            nextExpiration = Long.MAX_VALUE;
+            farExpiration = Long.MAX_VALUE;
+        }
+        schedule(info);
+        nextExpiration = Math.min(nextExpiration, info.expiration);
     }
 
     //  Cancel the timer created by sink_ object with ID equal to id_.
     public void cancelTimer(IPollEvents sink, int id)
     {
-        assert (Thread.currentThread() == worker);
+        assert (Thread.currentThread() == worker || !worker.isAlive());
 
-        TimerInfo copy = new TimerInfo(sink, id);
-        //  Complexity of this operation is O(n). We assume it is rarely used.
-
-        TimerInfo timerInfo = timers.find(copy);
+        TimerInfo timerInfo = timers.remove(new TimerInfo(sink, id));
         if (timerInfo != null) {
-            // let's defer the removal during the loop
-            timerInfo.cancelled = true;
+            unlink(timerInfo);
         }
     }
 
@@ -141,9 +183,7 @@ abstract class PollerBase implements Runnable
     //  to wait to match the next timer or 0 meaning "no timers".
     protected long executeTimers()
     {
-        assert (Thread.currentThread() == worker);
-
-        changed = false;
+        assert (Thread.currentThread() == worker || !worker.isAlive());
 
         //  Fast track.
         if (timers.isEmpty()) {
@@ -151,46 +191,154 @@ abstract class PollerBase implements Runnable
         }
 
         //  Get the current time.
-        long current = clock();
-
-        //   Execute the timers that are already due.
-        for (Entry<TimerInfo, Long> entry : timers.entries()) {
-            final TimerInfo timerInfo = entry.getKey();
-            if (timerInfo.cancelled) {
-                timers.remove(entry.getValue(), timerInfo);
-                continue;
-            }
-            //  If we have to wait to execute the item, same will be true about
-            //  all the following items (multimap is sorted). Thus we can stop
-            //  checking the subsequent timers and return the time to wait for
-            //  the next timer (at least 1ms).
+        final long current = clock();
+        if (current < nextExpiration) {
+            return nextExpiration - current;
+        }
 
-            final Long key = entry.getValue();
+        //  The far timers already due are visited with the wheel.
+        if (farExpiration <= current) {
+            cascade(current + 1);
+        }
 
-            if (key > current) {
-                return key - current;
+        //  Visit the slots up to now, skipping the ones known to be empty.
+        //  Visiting the slots of the last round is enough to find all the timers due.
+        final long start = Math.max(Math.max(tick, nextExpiration), current - WHEEL_MASK);
+        for (long slot = start; slot <= current && !timers.isEmpty(); ++slot) {
+            //  Timers added in the meantime and already due are appended to this slot.
+            tick = slot;
+            final int index = (int) (slot & WHEEL_MASK);
+            TimerInfo timerInfo = heads[index];
+            while (timerInfo != null) {
+                if (timerInfo.expiration > current) {
+                    timerInfo = timerInfo.next;
+                    continue;
+                }
+                //  Remove it from the list of active timers.
+                unlink(timerInfo);
+                timers.remove(timerInfo);
+
+                TimerInfo next = timerInfo.next;
+
+                //  Trigger the timer.
+                timerInfo.sink.timerEvent(timerInfo.id);
+
+                //  The timer event may have cancelled the following timer or appended
+                //  new ones, in that case start again from the beginning of the slot.
+                if (next == null || !next.linked) {
+                    next = heads[index];
+                }
+                timerInfo = next;
             }
+        }
+        tick = current + 1;
+
+        if (timers.isEmpty()) {
+            //  There are no more timers.
+            return 0L;
+        }
+        //  Far timers are moved by half a round at least, so that the far list is not visited
+        //  at each expiration when the timers are close to each other.
+        if (farExpiration < tick + WHEEL_SIZE / 2) {
+            cascade(tick + WHEEL_SIZE);
+        }
+        nextExpiration = Math.min(nextSlot(), farExpiration);
+        return nextExpiration - current;
+    }
 
-            //  Remove it from the list of active timers.
-            timers.remove(key, timerInfo);
+    //  Stores the timer in the wheel if it expires within a round, in the far list otherwise.
+    private void schedule(TimerInfo info)
+    {
+        if (info.expiration < tick + WHEEL_SIZE) {
+            //  A timer already due is visited with the next slot.
+            link(info, (int) (Math.max(info.expiration, tick) & WHEEL_MASK));
+        }
+        else {
+            link(info, FAR);
+            farExpiration = Math.min(farExpiration, info.expiration);
+        }
+    }
 
-            //  Trigger the timer.
-            timerInfo.sink.timerEvent(timerInfo.id);
+    //  Moves the far timers expiring before the limit to the wheel.
+    private void cascade(long limit)
+    {
+        long earliest = Long.MAX_VALUE;
+        TimerInfo timerInfo = heads[FAR];
+        while (timerInfo != null) {
+            final TimerInfo next = timerInfo.next;
+            if (timerInfo.expiration < limit) {
+                unlink(timerInfo);
+                link(timerInfo, (int) (Math.max(timerInfo.expiration, tick) & WHEEL_MASK));
+            }
+            else {
+                earliest = Math.min(earliest, timerInfo.expiration);
+            }
+            timerInfo = next;
         }
+        farExpiration = earliest;
+    }
 
-        //  Remove empty list object
-        for (Entry<TimerInfo, Long> entry : timers.entries()) {
-            final Long key = entry.getValue();
+    //  Returns the millisecond of the first slot holding timers, from the current one.
+    private long nextSlot()
+    {
+        final int from = (int) (tick & WHEEL_MASK);
+        int word = from >>> 6;
+        long bits = occupied[word] & (-1L << from);
+        for (int count = 0; count <= occupied.length; ++count) {
+            if (bits != 0) {
+                final int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return tick + ((index - from) & WHEEL_MASK);
+            }
+            word = (word + 1) % occupied.length;
+            bits = occupied[word];
+        }
+        return Long.MAX_VALUE;
+    }
 
-            if (!timers.hasValues(key)) {
-                timers.remove(key);
+    //  Appends the timer to the list of the slot, or to the far list.
+    private void link(TimerInfo timerInfo, int index)
+    {
+        TimerInfo tail = tails[index];
+        timerInfo.prev = tail;
+        timerInfo.next = null;
+        if (tail == null) {
+            heads[index] = timerInfo;
+            if (index != FAR) {
+                occupied[index >>> 6] |= 1L << index;
             }
         }
+        else {
+            tail.next = timerInfo;
+        }
+        tails[index] = timerInfo;
+        timerInfo.index = index;
+        timerInfo.linked = true;
+    }
 
-        if (changed) {
-            return executeTimers();
+    //  Removes the timer from the list of its slot.
+    //  Its next link is kept, to allow continuing the visit of the slot.
+    private void unlink(TimerInfo timerInfo)
+    {
+        if (!timerInfo.linked) {
+            return;
+        }
+        final int index = timerInfo.index;
+        if (timerInfo.prev == null) {
+            heads[index] = timerInfo.next;
+            if (heads[index] == null && index != FAR) {
+                occupied[index >>> 6] &= ~(1L << index);
+            }
+        }
+        else {
+            timerInfo.prev.next = timerInfo.next;
+        }
+        if (timerInfo.next == null) {
+            tails[index] = timerInfo.prev;
+        }
+        else {
+            timerInfo.next.prev = timerInfo.prev;
         }
-        //  There are no more timers.
-        return 0L;
+        timerInfo.prev = null;
+        timerInfo.linked = false;
     }
 }
@@ -0,0 +1,206 @@
+package zmq.poll;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import zmq.Ctx;
+import zmq.SocketBase;
+import zmq.pipe.MpscQueue;
+import zmq.util.Utils;
+
+/**
+ * A group of sockets polled through a queue of the sockets that may be ready.
+ * <p>
+ * Whereas a selector polls the file descriptor of each socket, costing a file descriptor per socket
+ * and a pass on all of them at each poll, a socket of a group queues itself when a command arrives
+ * for it or is processed, which is when its events may change. A poll then only checks the queued sockets,
+ * and those found ready by the previous poll, as they may still be.
+ * <p>
+ * Only the sockets that are not thread-safe can be grouped: other threads sharing a thread-safe socket
+ * could receive from it concurrently with the one polling the group, invalidating the events it reports.
+ * A socket can only be in one group.
+ * A group is not thread-safe: it has to be used by the thread using its sockets.
+ * <p>
+ * If a socket belongs to a context without I/O thread, the group runs its I/O while waiting.
+ */
+public final class SocketGroup
+{
+    private static final class Member
+    {
+        private final PollItem item;
+
+        //  True while the member is in the ready queue.
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        //  True if the member has been found ready by the current poll.
+        private boolean reported;
+        private boolean removed;
+
+        private Member(PollItem item)
+        {
+            this.item = item;
+        }
+    }
+
+    private final Map<PollItem, Member> members = new IdentityHashMap<>();
+
+    //  Members that may be ready. Filled by any thread, read by the polling one.
+    private final MpscQueue<Member> ready = new MpscQueue<>();
+
+    //  Members found ready by the last poll.
+    private Member[] reported = new Member[16];
+    private int      reportedCount;
+
+    //  Thread of the poller, to be woken up when a member is queued.
+    private volatile Thread waiter;
+
+    //  Context whose I/O is run by the poller while waiting, if any.
+    private volatile Ctx io;
+
+    /**
+     * Adds a socket to the group.
+     *
+     * @param item the item of the socket, with the events to poll for.
+     * @return false if the item is already in the group.
+     */
+    public boolean add(PollItem item)
+    {
+        SocketBase socket = item.getSocket();
+        Utils.checkArgument(socket != null, "Only sockets can be grouped");
+        if (members.containsKey(item)) {
+            return false;
+        }
+        Member member = new Member(item);
+        Utils.checkArgument(socket.setCommandListener(() -> queue(member)), "Thread-safe sockets cannot be grouped");
+        members.put(item, member);
+        if (io == null && socket.getCtx().isIoInline()) {
+            io = socket.getCtx();
+        }
+
+        //  The socket may already be ready.
+        queue(member);
+        return true;
+    }
+
+    /**
+     * Removes a socket from the group.
+     *
+     * @param item the item given when adding the socket.
+     * @return true if the item was in the group.
+     */
+    public boolean remove(PollItem item)
+    {
+        Member member = members.remove(item);
+        if (member == null) {
+            return false;
+        }
+        //  It may still be in the queue.
+        member.removed = true;
+        item.getSocket().setCommandListener(null);
+        return true;
+    }
+
+    public int size()
+    {
+        return members.size();
+    }
+
+    /**
+     * Polls the sockets of the group.
+     *
+     * @param events the array filled with the items of the ready sockets, the number of which is returned.
+     * @param timeout the maximum time to wait for events, in milliseconds. 0 to return immediately, -1 to wait forever.
+     * @return the number of ready sockets, at most the length of the array,
+     * or -1 if one of the sockets is closed or the thread is interrupted.
+     */
+    public int poll(PollItem[] events, long timeout)
+    {
+        //  Without new commands, the sockets found ready last time are not queued again.
+        for (int idx = 0; idx < reportedCount; ++idx) {
+            Member member = reported[idx];
+            reported[idx] = null;
+            member.reported = false;
+            queue(member);
+        }
+        reportedCount = 0;
+
+        final long deadline = timeout <= 0 ? 0 : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        //  Set before sleeping on the queue, so that the waker sees it.
+        waiter = Thread.currentThread();
+        try {
+            int count = 0;
+            while (true) {
+                Member member;
+                while (count < events.length && (member = ready.pollOrSleep()) != null) {
+                    //  Cleared before checking the events, so that the next commands queue it again.
+                    member.queued.set(false);
+                    if (member.removed || member.reported) {
+                        continue;
+                    }
+                    int ops = member.item.readyOps(null, 0);
+                    if (ops < 0) {
+                        return -1;
+                    }
+                    if (ops > 0) {
+                        member.reported = true;
+                        if (reportedCount == reported.length) {
+                            reported = Arrays.copyOf(reported, reportedCount * 2);
+                        }
+                        reported[reportedCount++] = member;
+                        events[count++] = member.item;
+                    }
+                }
+                if (count > 0 || timeout == 0) {
+                    return count;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return -1;
+                }
+                long remaining = -1;
+                if (timeout > 0) {
+                    remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return 0;
+                    }
+                }
+                Ctx ctx = io;
+                if (ctx != null) {
+                    if (ctx.driveIo(remaining < 0 ? -1 : Math.max(TimeUnit.NANOSECONDS.toMillis(remaining), 1))) {
+                        continue;
+                    }
+                    //  Another thread runs the I/O, until it returns.
+                    remaining = remaining < 0 ? TimeUnit.MILLISECONDS.toNanos(1) : Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(1));
+                }
+                if (remaining < 0) {
+                    LockSupport.park(this);
+                }
+                else {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+        }
+        finally {
+            waiter = null;
+        }
+    }
+
+    //  Queues a member, if not already. Called by any thread.
+    private void queue(Member member)
+    {
+        if (member.queued.compareAndSet(false, true) && !ready.push(member)) {
+            //  The poller is asleep, wake it up.
+            Thread thread = waiter;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+                Ctx ctx = io;
+                if (ctx != null) {
+                    ctx.wakeupIo();
+                }
+            }
+        }
+    }
+}
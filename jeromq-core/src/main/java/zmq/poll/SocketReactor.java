@@ -0,0 +1,151 @@
+package zmq.poll;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+import zmq.util.Utils;
+
+/**
+ * Delivers the messages received by a socket to a handler, without a thread of the application polling it.
+ * <p>
+ * When a command arrives for the socket, the reactor reads its messages in batches and gives them to the handler,
+ * either directly from the thread that delivered the command, usually an I/O thread, or from the given executor.
+ * The handler is called by one thread at a time, and the next messages are read only once it returns,
+ * so a slow handler lets the messages pile up in the pipes of the socket until its high-water mark
+ * pushes back on the senders. An exception thrown by the handler goes to the notification exception handler
+ * of the context.
+ * <p>
+ * While started, the reactor owns the socket: its options shall be set before, and it shall be closed after stopping.
+ * As it relies on the command listener of the socket, the socket cannot be in a {@link SocketGroup} too.
+ * A thread-safe socket is rejected, as the reactor has to be the only one receiving from the socket.
+ */
+public final class SocketReactor
+{
+    /**
+     * Handles the messages received by a socket.
+     */
+    @FunctionalInterface
+    public interface Handler
+    {
+        /**
+         * Called with a batch of messages, in the order they were received.
+         *
+         * @param socket the socket that received the messages.
+         * @param messages the messages, only valid until the call returns.
+         */
+        void handle(SocketBase socket, List<Msg> messages);
+    }
+
+    private static final int BATCH_SIZE_DEFAULT = 64;
+
+    private final SocketBase socket;
+    private final Handler    handler;
+    private final Executor   executor;
+    private final List<Msg>  batch;
+    private final int        batchSize;
+
+    //  Number of notifications since the last pass on the socket. The one moving it from 0 schedules a pass.
+    private final AtomicInteger signals = new AtomicInteger();
+    private final Runnable      drain   = this::drain;
+
+    private volatile boolean stopped = true;
+
+    /**
+     * Creates a reactor calling the handler from the threads delivering the commands to the socket.
+     */
+    public SocketReactor(SocketBase socket, Handler handler)
+    {
+        this(socket, handler, null, BATCH_SIZE_DEFAULT);
+    }
+
+    /**
+     * @param socket the socket to read from, not thread-safe.
+     * @param handler the handler of the messages.
+     * @param executor the executor calling the handler, or null to call it from the threads delivering the commands.
+     * @param batchSize the maximum number of messages given at once to the handler.
+     */
+    public SocketReactor(SocketBase socket, Handler handler, Executor executor, int batchSize)
+    {
+        Utils.checkArgument(socket != null, "A socket is required");
+        Utils.checkArgument(handler != null, "A handler is required");
+        Utils.checkArgument(batchSize > 0, "Batch size has to be positive");
+        this.socket = socket;
+        this.handler = handler;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        batch = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Starts delivering the messages of the socket to the handler, including the ones already received.
+     *
+     * @return false if the socket is thread-safe, as other threads could receive from it concurrently.
+     */
+    public boolean start()
+    {
+        stopped = false;
+        if (!socket.setCommandListener(this::signal)) {
+            stopped = true;
+            return false;
+        }
+        signal();
+        return true;
+    }
+
+    /**
+     * Stops delivering the messages. A batch being handled is completed.
+     */
+    public void stop()
+    {
+        stopped = true;
+        socket.setCommandListener(null);
+    }
+
+    //  Called by any thread when the events of the socket may have changed.
+    private void signal()
+    {
+        if (signals.getAndIncrement() == 0) {
+            if (executor == null) {
+                drain();
+            }
+            else {
+                executor.execute(drain);
+            }
+        }
+    }
+
+    //  Reads the messages until none is left and no notification arrived meanwhile.
+    private void drain()
+    {
+        int seen;
+        do {
+            seen = signals.get();
+            while (!stopped) {
+                Msg msg = socket.recv(ZMQ.ZMQ_DONTWAIT);
+                if (msg != null) {
+                    batch.add(msg);
+                }
+                if (batch.size() == batchSize || (msg == null && !batch.isEmpty())) {
+                    try {
+                        handler.handle(socket, batch);
+                    }
+                    catch (RuntimeException e) {
+                        //  The thread may be an I/O thread, that shall not be disrupted by the handler.
+                        socket.getCtx().getNotificationExceptionHandler().uncaughtException(Thread.currentThread(), e);
+                    }
+                    finally {
+                        batch.clear();
+                    }
+                }
+                if (msg == null) {
+                    break;
+                }
+            }
+        } while (!signals.compareAndSet(seen, 0));
+    }
+}
@@ -151,14 +151,21 @@ public class Dist
     {
         //  If there are no matching pipes available, simply drop the message.
         if (matching == 0) {
+            msg.release();
             return;
         }
 
-        // TODO isVsm
+        //  The same message is pushed to each matching pipe. If its payload is owned,
+        //  each pipe holds a reference on it, and the payload will be given back
+        //  when the last of them is done with it.
+        if (matching > 1 && msg.isReleasable()) {
+            msg.addRefs(matching - 1);
+        }
 
-        //  Push copy of the message to each matching pipe.
         for (int idx = 0; idx < matching; ++idx) {
             if (!write(pipes.get(idx), msg)) {
+                //  The pipe won't get the message, drop its reference.
+                msg.release();
                 --idx; //  Retry last write because index will have been swapped
             }
         }
@@ -0,0 +1,62 @@
+package zmq.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.BitSet;
+import java.util.Optional;
+
+/**
+ * Hook pinning the I/O and reaper threads of a context to CPUs.
+ * <p>
+ * It is called by each of these threads when it starts, so it applies to the calling thread.
+ * {@link #sched(BitSet)} provides an implementation for Linux.
+ */
+@FunctionalInterface
+public interface ThreadAffinity
+{
+    //  The implementation in the multi-release jar, not visible on older runtimes.
+    String SCHED_CLASS = "zmq.util.SchedAffinity";
+
+    /**
+     * Pins the calling thread.
+     *
+     * @param name the name of the thread, as given to the thread factory of the context.
+     */
+    void pin(String name);
+
+    /**
+     * Creates a hook pinning threads to a set of CPUs on Linux, by calling sched_setaffinity.
+     * <p>
+     * It relies on the foreign function API, which requires Java 22 or later.
+     * It is only shipped in the multi-release jar, when built with Java 22 or later.
+     *
+     * @param cpus the indexes of the CPUs the threads are allowed to run on.
+     * @return the hook, or empty if the runtime, the jar or the operating system does not provide it.
+     * @throws IllegalArgumentException if there is no CPU to run on.
+     */
+    static Optional<ThreadAffinity> sched(BitSet cpus)
+    {
+        final Class<? extends ThreadAffinity> type;
+        try {
+            type = Class.forName(SCHED_CLASS, true, ThreadAffinity.class.getClassLoader())
+                    .asSubclass(ThreadAffinity.class);
+        }
+        catch (ClassNotFoundException | LinkageError e) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(type.getConstructor(BitSet.class).newInstance(cpus));
+        }
+        catch (InvocationTargetException e) {
+            if (e.getCause() instanceof UnsupportedOperationException) {
+                return Optional.empty();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to create the CPU affinity hook", e.getCause());
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create the CPU affinity hook", e);
+        }
+    }
+}
@@ -484,15 +484,17 @@ public class TestZPoller
             zPoller.register(new ZPoller.ZPollItem(sub, null, ZPoller.POLLIN));
 
             Thread server = new Thread(() -> {
-                while (true) {
+                while (!Thread.currentThread().isInterrupted()) {
                     try {
                         pub.send("hello");
                         Thread.sleep(100);
                     }
                     catch (InterruptedException ignored) {
+                        break;
                     }
                     catch (ZMQException exc) {
                         assertThat(exc.getErrorCode(), is(ZError.ETERM));
+                        break;
                     }
                 }
             });
@@ -14,6 +14,7 @@ import org.zeromq.ZMQ.Socket;
 import org.zeromq.ZMonitor.Event;
 import org.zeromq.ZMonitor.ZEvent;
 
+import zmq.ZError;
 import zmq.io.mechanism.curve.Curve;
 
 public class ZMonitorTest
@@ -209,12 +210,22 @@ public class ZMonitorTest
         //  Check server connected to client
         boolean rc = client.connect("tcp://127.0.0.1:" + 34782);
         Assert.assertTrue(rc);
-        Thread.sleep(100);
-        client.send("hello");
+
+        //  Wait for the connection before sending.
+        ZEvent received;
+        do {
+            received = clientMonitor.nextEvent(1000);
+            Assert.assertNotNull(received);
+            receivedEventsClient.add(received);
+        } while (received.type != Event.CONNECTED);
+
+        //  The pipe of the connection is terminated once the handshake has failed,
+        //  the message is queued only if it is still there.
+        rc = client.send("hello", ZMQ.DONTWAIT);
+        Assert.assertTrue(rc || client.errno() == ZError.EAGAIN);
         Thread.sleep(100);
         client.close();
 
-        ZEvent received;
         while ((received = clientMonitor.nextEvent(100)) != null) {
             receivedEventsClient.add(received);
         }
@@ -301,14 +312,22 @@ public class ZMonitorTest
             boolean rc = client.connect("tcp://127.0.0.1:" + port);
             Assert.assertTrue(rc);
 
-            //  Send a single message from server to client
-            rc = server.send("Hello");
-            Assert.assertTrue(rc);
+            //  Wait for the connection before sending a single message from server to client.
+            ZEvent received;
+            do {
+                received = serverMonitor.nextEvent(1000);
+                Assert.assertNotNull(received);
+                receivedEventsServer.add(received);
+            } while (received.type != Event.ACCEPTED);
+
+            //  The pipe of the connection is terminated once the authentication has failed,
+            //  the message is queued only if it is still there.
+            rc = server.send("Hello", ZMQ.DONTWAIT);
+            Assert.assertTrue(rc || server.errno() == ZError.EAGAIN);
 
             ZAuth.ZapReply reply = auth.nextReply();
             Assert.assertEquals(400, reply.statusCode);
 
-            ZEvent received;
             while ((received = clientMonitor.nextEvent(100)) != null) {
                 receivedEventsClient.add(received);
             }
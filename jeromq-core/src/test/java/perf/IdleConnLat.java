@@ -0,0 +1,169 @@
+package perf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+//  Latency of a few hot connections sharing the IO thread with many idle ones.
+public class IdleConnLat
+{
+    private IdleConnLat()
+    {
+    }
+
+    static class Client implements Runnable
+    {
+        private final SocketBase s;
+        private final int        messageSize;
+        private final int        roundtripCount;
+
+        Client(SocketBase s, int messageSize, int roundtripCount)
+        {
+            this.s = s;
+            this.messageSize = messageSize;
+            this.roundtripCount = roundtripCount;
+        }
+
+        @Override
+        public void run()
+        {
+            Msg smsg = ZMQ.msgInitWithSize(messageSize);
+            for (int i = 0; i != roundtripCount; i++) {
+                int r = ZMQ.sendMsg(s, smsg, 0);
+                if (r < 0) {
+                    printf("error in sendmsg: %s\n");
+                    return;
+                }
+                Msg msg = ZMQ.recvMsg(s, 0);
+                if (msg == null) {
+                    printf("error in recvmsg: %s\n");
+                    return;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] argv) throws Exception
+    {
+        if (argv.length != 4) {
+            printf("usage: idle_conn_lat <idle-connections> <hot-connections> <message-size> <roundtrip-count>\n");
+            return;
+        }
+        int idleCount = atoi(argv[0]);
+        int hotCount = atoi(argv[1]);
+        int messageSize = atoi(argv[2]);
+        int roundtripCount = atoi(argv[3]);
+
+        //  One IO thread handles both ends of all the connections.
+        Ctx ctx = ZMQ.init(1);
+        if (ctx == null) {
+            printf("error in init");
+            return;
+        }
+
+        SocketBase rep = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
+        boolean rc = ZMQ.bind(rep, "tcp://127.0.0.1:*");
+        if (!rc) {
+            printf("error in bind: %s\n");
+            return;
+        }
+        String endpoint = (String) ZMQ.getSocketOptionExt(rep, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase sink = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.bind(sink, "tcp://127.0.0.1:*");
+        if (!rc) {
+            printf("error in bind: %s\n");
+            return;
+        }
+        String idleEndpoint = (String) ZMQ.getSocketOptionExt(sink, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        //  All the idle connections are made by the same socket, that never sends.
+        SocketBase idle = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        for (int i = 0; i != idleCount; i++) {
+            rc = ZMQ.connect(idle, idleEndpoint);
+            if (!rc) {
+                printf("error in connect: %s\n");
+                return;
+            }
+        }
+
+        List<SocketBase> hots = new ArrayList<>();
+        for (int i = 0; i != hotCount; i++) {
+            SocketBase s = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+            rc = ZMQ.connect(s, endpoint);
+            if (!rc) {
+                printf("error in connect: %s\n");
+                return;
+            }
+            hots.add(s);
+        }
+
+        //  Let all the connections be established.
+        Thread.sleep(1000 + idleCount / 10);
+
+        printf("idle connections: %d\n", idleCount);
+        printf("hot connections: %d\n", hotCount);
+        printf("message size: %d [B]\n", messageSize);
+        printf("roundtrip count: %d\n", roundtripCount);
+
+        List<Thread> clients = new ArrayList<>();
+        for (SocketBase s : hots) {
+            clients.add(new Thread(new Client(s, messageSize, roundtripCount)));
+        }
+
+        long watch = ZMQ.startStopwatch();
+        for (Thread client : clients) {
+            client.start();
+        }
+        for (int i = 0; i != roundtripCount * hotCount; i++) {
+            Msg msg = ZMQ.recvMsg(rep, 0);
+            if (msg == null) {
+                printf("error in recvmsg: %s\n");
+                return;
+            }
+            int r = ZMQ.sendMsg(rep, msg, 0);
+            if (r < 0) {
+                printf("error in sendmsg: %s\n");
+                return;
+            }
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        long elapsed = ZMQ.stopStopwatch(watch);
+
+        double latency = (double) elapsed / (roundtripCount * 2);
+
+        printf("average latency: %.3f [us]\n", latency);
+
+        ZMQ.setSocketOption(idle, ZMQ.ZMQ_LINGER, 0);
+        ZMQ.close(idle);
+        for (SocketBase s : hots) {
+            ZMQ.setSocketOption(s, ZMQ.ZMQ_LINGER, 0);
+            ZMQ.close(s);
+        }
+        ZMQ.close(rep);
+        ZMQ.close(sink);
+
+        ZMQ.term(ctx);
+    }
+
+    private static int atoi(String string)
+    {
+        return Integer.parseInt(string);
+    }
+
+    private static void printf(String string)
+    {
+        System.out.println(string);
+    }
+
+    private static void printf(String string, Object... args)
+    {
+        System.out.printf((string) + "%n", args);
+    }
+}
@@ -3,6 +3,7 @@ package perf;
 import zmq.Ctx;
 import zmq.Msg;
 import zmq.SocketBase;
+import zmq.WaitStrategy;
 import zmq.ZMQ;
 
 public class InprocLat
@@ -13,13 +14,15 @@ public class InprocLat
 
     static class Worker implements Runnable
     {
-        private final Ctx ctx;
-        private final int roundtripCount;
+        private final Ctx          ctx;
+        private final int          roundtripCount;
+        private final WaitStrategy strategy;
 
-        Worker(Ctx ctx, int roundtripCount)
+        Worker(Ctx ctx, int roundtripCount, WaitStrategy strategy)
         {
             this.ctx = ctx;
             this.roundtripCount = roundtripCount;
+            this.strategy = strategy;
         }
 
         @Override
@@ -30,6 +33,7 @@ public class InprocLat
                 printf("error in socket: %s\n");
                 exit(1);
             }
+            ZMQ.setSocketOption(s, ZMQ.ZMQ_WAIT_STRATEGY, strategy);
 
             boolean rc = ZMQ.connect(s, "inproc://lat_test");
             if (!rc) {
@@ -63,14 +67,27 @@ public class InprocLat
 
     public static void main(String[] argv) throws Exception
     {
-        if (argv.length != 2) {
-            printf("usage: inproc_lat <message-size> <roundtrip-count>\n");
+        if (argv.length != 2 && argv.length != 3) {
+            printf("usage: inproc_lat <message-size> <roundtrip-count> [wait-strategy]\n");
             return;
         }
 
         int messageSize = atoi(argv[0]);
         int roundtripCount = atoi(argv[1]);
 
+        printf("message size: %d [B]\n", messageSize);
+        printf("roundtrip count: %d\n", roundtripCount);
+
+        //  Without wait strategy, each of them is measured.
+        WaitStrategy[] strategies = argv.length == 3 ? new WaitStrategy[] { WaitStrategy.valueOf(argv[2]) }
+                : WaitStrategy.values();
+        for (WaitStrategy strategy : strategies) {
+            measure(messageSize, roundtripCount, strategy);
+        }
+    }
+
+    private static void measure(int messageSize, int roundtripCount, WaitStrategy strategy) throws Exception
+    {
         Ctx ctx = ZMQ.init(1);
         if (ctx == null) {
             printf("error in init:");
@@ -82,6 +99,7 @@ public class InprocLat
             printf("error in socket: ");
             return;
         }
+        ZMQ.setSocketOption(s, ZMQ.ZMQ_WAIT_STRATEGY, strategy);
 
         boolean rc = ZMQ.bind(s, "inproc://lat_test");
         if (!rc) {
@@ -89,14 +107,11 @@ public class InprocLat
             return;
         }
 
-        Thread localThread = new Thread(new Worker(ctx, roundtripCount));
+        Thread localThread = new Thread(new Worker(ctx, roundtripCount, strategy));
         localThread.start();
 
         Msg smsg = ZMQ.msgInitWithSize(messageSize);
 
-        printf("message size: %d [B]\n", messageSize);
-        printf("roundtrip count: %d\n", roundtripCount);
-
         long watch = ZMQ.startStopwatch();
 
         for (int i = 0; i != roundtripCount; i++) {
@@ -122,7 +137,7 @@ public class InprocLat
 
         localThread.join();
 
-        printf("average latency: %.3f [us]\n", latency);
+        printf("wait strategy %s, average latency: %.3f [us]\n", strategy, latency);
 
         ZMQ.close(s);
 
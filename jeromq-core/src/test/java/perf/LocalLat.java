@@ -16,6 +16,9 @@ public class LocalLat
         String bindTo;
         int roundtripCount;
         int messageSize;
+        int busyPoll;
+        int speculativeWrite;
+        int ioInline;
         Ctx ctx;
         SocketBase s;
         boolean rc;
@@ -23,25 +26,33 @@ public class LocalLat
         int i;
         Msg msg;
 
-        if (args.length != 3) {
-            printf("usage: local_lat <bind-to> <message-size> " + "<roundtrip-count>\n");
+        if (args.length < 3 || args.length > 6) {
+            printf("usage: local_lat <bind-to> <message-size> " + "<roundtrip-count> [<busy-poll-us> [<speculative-write> [<io-inline>]]]\n");
             return;
         }
         bindTo = args[0];
         messageSize = atoi(args[1]);
         roundtripCount = atoi(args[2]);
+        busyPoll = args.length >= 4 ? atoi(args[3]) : 0;
+        //  When given, PAIR sockets are used, writing from the application thread if 1.
+        speculativeWrite = args.length >= 5 ? atoi(args[4]) : -1;
+        //  If 1, the I/O is run by the application thread.
+        ioInline = args.length == 6 ? atoi(args[5]) : 0;
 
         ctx = ZMQ.init(1);
         if (ctx == null) {
             printf("error in init: %s\n");
             return;
         }
+        ctx.set(ZMQ.ZMQ_IO_BUSY_POLL, busyPoll);
+        ctx.set(ZMQ.ZMQ_IO_INLINE, ioInline);
 
-        s = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
+        s = ZMQ.socket(ctx, speculativeWrite < 0 ? ZMQ.ZMQ_REP : ZMQ.ZMQ_PAIR);
         if (s == null) {
             printf("error in socket: %s\n", ZMQ.strerror(ctx.errno().get()));
             return;
         }
+        ZMQ.setSocketOption(s, ZMQ.ZMQ_SPECULATIVE_WRITE, speculativeWrite > 0);
 
         rc = ZMQ.bind(s, bindTo);
         if (!rc) {
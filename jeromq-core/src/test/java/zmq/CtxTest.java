@@ -4,13 +4,19 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.nio.channels.Selector;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import zmq.poll.PollItem;
 import zmq.socket.Sockets;
+import zmq.util.ThreadAffinity;
 
 public class CtxTest
 {
@@ -48,4 +54,149 @@ public class CtxTest
         Assert.assertThrows(IllegalStateException.class, () -> ctx.setUncaughtExceptionHandler(null));
         ZMQ.close(socket);
     }
+
+    @Test
+    public void testThreadAffinity()
+    {
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx.getThreadAffinity() == null, is(true));
+
+        List<String> pinned = new CopyOnWriteArrayList<>();
+        ctx.setThreadAffinity(name -> {
+            pinned.add(name);
+            throw new IllegalStateException("Unable to pin " + name);
+        });
+        SocketBase socket = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        Assert.assertThrows(IllegalStateException.class, () -> ctx.setThreadAffinity(null));
+        ZMQ.close(socket);
+        ZMQ.term(ctx);
+
+        //  Each thread has called the hook, and run unpinned when it failed.
+        Collections.sort(pinned);
+        assertThat(pinned.toString(), is("[iothread-2, reaper-1]"));
+    }
+
+    @Test
+    public void testSchedAffinityMissingFromCore()
+    {
+        BitSet cpus = new BitSet();
+        cpus.set(0);
+        assertThat(ThreadAffinity.sched(cpus).isPresent(), is(false));
+    }
+
+    @Test(timeout = 5000)
+    public void testIoBusyPoll()
+    {
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx.get(ZMQ.ZMQ_IO_BUSY_POLL), is(0));
+        assertThat(ctx.set(ZMQ.ZMQ_IO_BUSY_POLL, -2), is(false));
+        assertThat(ctx.set(ZMQ.ZMQ_IO_BUSY_POLL, 50), is(true));
+        assertThat(ctx.get(ZMQ.ZMQ_IO_BUSY_POLL), is(50));
+
+        SocketBase rep = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
+        boolean rc = ZMQ.bind(rep, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String addr = (String) ZMQ.getSocketOptionExt(rep, ZMQ.ZMQ_LAST_ENDPOINT);
+        Assert.assertThrows(IllegalStateException.class, () -> ctx.set(ZMQ.ZMQ_IO_BUSY_POLL, 0));
+
+        SocketBase req = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+        rc = ZMQ.connect(req, addr);
+        assertThat(rc, is(true));
+
+        //  Busy polling before blocking, and after having blocked.
+        for (int idx = 0; idx < 3; ++idx) {
+            int sent = ZMQ.send(req, "ping", 0);
+            assertThat(sent, is(4));
+            Msg msg = ZMQ.recv(rep, 0);
+            assertThat(msg.size(), is(4));
+            sent = ZMQ.send(rep, msg, 0);
+            assertThat(sent, is(4));
+            msg = ZMQ.recv(req, 0);
+            assertThat(msg.size(), is(4));
+            ZMQ.msleep(10);
+        }
+
+        ZMQ.close(req);
+        ZMQ.close(rep);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testIoInline() throws InterruptedException
+    {
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx.get(ZMQ.ZMQ_IO_INLINE), is(0));
+        assertThat(ctx.set(ZMQ.ZMQ_IO_INLINE, -1), is(false));
+        assertThat(ctx.set(ZMQ.ZMQ_IO_INLINE, 1), is(true));
+        assertThat(ctx.get(ZMQ.ZMQ_IO_INLINE), is(1));
+
+        SocketBase rep = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
+        assertThat(ctx.isIoInline(), is(true));
+        boolean rc = ZMQ.bind(rep, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String addr = (String) ZMQ.getSocketOptionExt(rep, ZMQ.ZMQ_LAST_ENDPOINT);
+        Assert.assertThrows(IllegalStateException.class, () -> ctx.set(ZMQ.ZMQ_IO_INLINE, 0));
+
+        //  Each thread runs the I/O while waiting on its socket, one blocked in a receive, the other in a poll.
+        final int count = 100;
+        Thread requester = new Thread(() -> {
+            SocketBase req = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+            ZMQ.connect(req, addr);
+            for (int idx = 0; idx < count; ++idx) {
+                ZMQ.send(req, "ping", 0);
+                ZMQ.recv(req, 0);
+            }
+            ZMQ.close(req);
+        });
+        requester.start();
+
+        Selector selector = ctx.createSelector();
+        PollItem[] items = new PollItem[] { new PollItem(rep, ZMQ.ZMQ_POLLIN) };
+        for (int idx = 0; idx < count; ++idx) {
+            int events = ZMQ.poll(selector, items, -1);
+            assertThat(events, is(1));
+            Msg msg = ZMQ.recv(rep, 0);
+            assertThat(msg.size(), is(4));
+            int sent = ZMQ.send(rep, msg, 0);
+            assertThat(sent, is(4));
+        }
+        requester.join();
+
+        ZMQ.close(rep);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testIoInlineLinger()
+    {
+        Ctx ctx = ZMQ.createContext();
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String addr = (String) ZMQ.getSocketOptionExt(pull, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        Ctx inline = ZMQ.createContext();
+        inline.set(ZMQ.ZMQ_IO_INLINE, 1);
+        SocketBase push = ZMQ.socket(inline, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_LINGER, -1);
+        rc = ZMQ.connect(push, addr);
+        assertThat(rc, is(true));
+
+        //  The messages queued before closing are written while terminating.
+        final int count = 1000;
+        for (int idx = 0; idx < count; ++idx) {
+            int sent = ZMQ.send(push, new Msg(100), 0);
+            assertThat(sent, is(100));
+        }
+        ZMQ.close(push);
+        ZMQ.term(inline);
+
+        for (int idx = 0; idx < count; ++idx) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg.size(), is(100));
+        }
+
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
 }
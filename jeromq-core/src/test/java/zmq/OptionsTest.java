@@ -69,6 +69,25 @@ public class OptionsTest
         assertThat(options.getSocketOpt(ZMQ.ZMQ_CONFLATE), is(true));
     }
 
+    @Test
+    public void testHwmBytes()
+    {
+        assertThat(options.getSocketOpt(ZMQ.ZMQ_SNDHWM_BYTES), is(0L));
+        assertThat(options.getSocketOpt(ZMQ.ZMQ_RCVHWM_BYTES), is(0L));
+        options.setSocketOpt(ZMQ.ZMQ_SNDHWM_BYTES, 1024L);
+        options.setSocketOpt(ZMQ.ZMQ_RCVHWM_BYTES, 2048L);
+        assertThat(options.getSocketOpt(ZMQ.ZMQ_SNDHWM_BYTES), is(1024L));
+        assertThat(options.getSocketOpt(ZMQ.ZMQ_RCVHWM_BYTES), is(2048L));
+    }
+
+    @Test
+    public void testPipeRing()
+    {
+        assertThat(options.getSocketOpt(ZMQ.ZMQ_PIPE_RING), is(false));
+        options.setSocketOpt(ZMQ.ZMQ_PIPE_RING, true);
+        assertThat(options.getSocketOpt(ZMQ.ZMQ_PIPE_RING), is(true));
+    }
+
     @Test
     public void testRate()
     {
@@ -0,0 +1,216 @@
+package zmq;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+
+import zmq.poll.PollItem;
+
+public class SignalerTest
+{
+    @Test(timeout = 5000)
+    public void testWaitWithoutFd() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        Signaler signaler = new Signaler(0, ctx.errno());
+
+        assertThat(signaler.waitEvent(0), is(false));
+        assertThat(signaler.waitEvent(10), is(false));
+        assertThat(ctx.errno().get(), is(ZError.EAGAIN));
+
+        CountDownLatch waiting = new CountDownLatch(1);
+        Thread sender = new Thread(() -> {
+            try {
+                waiting.await();
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            signaler.send();
+        });
+        sender.start();
+        waiting.countDown();
+
+        assertThat(signaler.waitEvent(-1), is(true));
+        signaler.recv();
+        assertThat(signaler.waitEvent(0), is(false));
+        sender.join();
+
+        signaler.close();
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testPendingSignalsPassedToFd() throws IOException
+    {
+        Ctx ctx = ZMQ.init(1);
+        Signaler signaler = new Signaler(0, ctx.errno());
+
+        //  Signals sent before the file descriptor is created are kept.
+        signaler.send();
+        signaler.send();
+
+        Selector selector = Selector.open();
+        assertThat(signaler.getFd(), notNullValue());
+        signaler.getFd().register(selector, SelectionKey.OP_READ);
+
+        assertThat(selector.select(1000), is(1));
+        selector.selectedKeys().clear();
+        signaler.recv();
+        signaler.recv();
+        assertThat(selector.selectNow(), is(0));
+
+        signaler.send();
+        assertThat(signaler.waitEvent(1000), is(true));
+        signaler.recv();
+        assertThat(signaler.waitEvent(0), is(false));
+
+        selector.close();
+        signaler.close();
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testWaitWithFdParks() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        Signaler signaler = new Signaler(0, ctx.errno());
+        assertThat(signaler.getFd(), notNullValue());
+
+        AtomicBoolean received = new AtomicBoolean();
+        Thread receiver = new Thread(() -> {
+            received.set(signaler.waitEvent(-1));
+            signaler.recv();
+        });
+        receiver.start();
+
+        //  The receiver parks instead of blocking its thread in a selector.
+        while (LockSupport.getBlocker(receiver) != signaler) {
+            Thread.sleep(10);
+        }
+        assertThat(receiver.getState(), is(Thread.State.WAITING));
+
+        signaler.send();
+        receiver.join();
+        assertThat(received.get(), is(true));
+        assertThat(signaler.waitEvent(0), is(false));
+
+        signaler.close();
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testSocketsWithoutFd()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(ZMQ.bind(pull, "inproc://signaler"), is(true));
+        assertThat(ZMQ.connect(push, "inproc://signaler"), is(true));
+
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVTIMEO, 50);
+        assertThat(ZMQ.recv(pull, 0), is((Msg) null));
+
+        assertThat(ZMQ.send(push, "hello", 0), is(5));
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(msg, notNullValue());
+
+        //  Polling creates the file descriptor of the socket.
+        assertThat(ZMQ.send(push, "world", 0), is(5));
+        PollItem[] items = { new PollItem(pull, ZMQ.ZMQ_POLLIN) };
+        Selector selector = ctx.createSelector();
+        assertThat(ZMQ.poll(selector, items, 1000), is(1));
+        ctx.closeSelector(selector);
+        msg = ZMQ.recv(pull, 0);
+        assertThat(msg, notNullValue());
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testWaitStrategies() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            Signaler signaler = new Signaler(0, ctx.errno());
+            signaler.setWaitStrategy(strategy);
+
+            assertThat(signaler.waitEvent(10), is(false));
+            assertThat(ctx.errno().get(), is(ZError.EAGAIN));
+
+            Thread sender = new Thread(() -> {
+                try {
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                signaler.send();
+            });
+            sender.start();
+
+            assertThat(signaler.waitEvent(-1), is(true));
+            signaler.recv();
+            sender.join();
+
+            //  Closing interrupts the wait.
+            Thread closer = new Thread(() -> {
+                try {
+                    Thread.sleep(20);
+                    signaler.close();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            closer.start();
+
+            assertThat(signaler.waitEvent(-1), is(false));
+            assertThat(ctx.errno().get(), is(ZError.EINTR));
+            closer.join();
+        }
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testSocketWaitStrategy()
+    {
+        Ctx ctx = ZMQ.init(1);
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(ZMQ.setSocketOption(pull, ZMQ.ZMQ_WAIT_STRATEGY, WaitStrategy.SPIN_YIELD), is(true));
+        assertThat(ZMQ.getSocketOptionExt(pull, ZMQ.ZMQ_WAIT_STRATEGY), is((Object) WaitStrategy.SPIN_YIELD));
+        assertThat(ZMQ.setSocketOption(push, ZMQ.ZMQ_WAIT_STRATEGY, WaitStrategy.BUSY_SPIN.ordinal()), is(true));
+        assertThat(ZMQ.setSocketOption(push, ZMQ.ZMQ_WAIT_STRATEGY, 42), is(false));
+        assertThat(ZMQ.bind(pull, "inproc://strategy"), is(true));
+        assertThat(ZMQ.connect(push, "inproc://strategy"), is(true));
+
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVTIMEO, 50);
+        assertThat(ZMQ.recv(pull, 0), is((Msg) null));
+
+        for (int idx = 0; idx < 100; ++idx) {
+            assertThat(ZMQ.send(push, "hello", 0), is(5));
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg, notNullValue());
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+}
@@ -66,4 +66,66 @@ public class TestHwm
         ZMQ.close(sb);
         ZMQ.term(ctx);
     }
+
+    @Test
+    public void testHwmBytes()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        int rc;
+        boolean brc;
+        //  Create pair of socket, each with high watermark of 1000 bytes and no limit
+        //  in messages. Thus the total buffer space should be 2000 bytes.
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(sb, notNullValue());
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_RCVHWM, 0);
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_RCVHWM_BYTES, 1000L);
+
+        brc = ZMQ.bind(sb, "inproc://a");
+        assertThat(brc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(sc, notNullValue());
+
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_SNDHWM, 0);
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_SNDHWM_BYTES, 1000L);
+
+        brc = ZMQ.connect(sc, "inproc://a");
+        assertThat(brc, is(true));
+
+        //  Try to send 10 messages of 300 bytes. The limit is checked before
+        //  each message, so only 7 should succeed.
+        byte[] data = new byte[300];
+        for (int i = 0; i < 10; i++) {
+            rc = ZMQ.send(sc, data, ZMQ.ZMQ_DONTWAIT);
+            if (i < 7) {
+                assertThat(rc, is(300));
+            }
+            else {
+                assertThat(rc, is(-1));
+            }
+        }
+
+        Msg m;
+        // There should be now 7 messages pending, consume them.
+        for (int i = 0; i != 7; i++) {
+            m = ZMQ.recv(sb, 0);
+            assertThat(m, notNullValue());
+            assertThat(m.size(), is(300));
+        }
+
+        // Now it should be possible to send one more.
+        rc = ZMQ.send(sc, data, 0);
+        assertThat(rc, is(300));
+
+        //  Consume the remaining message.
+        m = ZMQ.recv(sb, 0);
+        assertThat(m, notNullValue());
+        assertThat(m.size(), is(300));
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
 }
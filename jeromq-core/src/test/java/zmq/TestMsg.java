@@ -6,6 +6,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -104,6 +105,64 @@ public class TestMsg
         assertThat(dst, is(new byte[] { 4, 'd', 'a', 't', 'a' }));
     }
 
+    @Test
+    public void testBuilderInChunks()
+    {
+        final Msg.Builder builder = new Msg.Builder();
+        for (int idx = 0; idx < 20; ++idx) {
+            builder.put("0123456789".getBytes(ZMQ.CHARSET));
+        }
+        builder.put(ByteBuffer.wrap("abcdef".getBytes(ZMQ.CHARSET)), 1, 4);
+        builder.setFlags(Msg.MORE);
+        assertThat(builder.size(), is(204));
+
+        Msg msg = builder.build();
+        assertThat(msg.size(), is(204));
+        assertThat(msg.hasMore(), is(true));
+
+        // the chunks are kept as is
+        ByteBuffer[] segments = msg.segments();
+        assertThat(segments.length, is(3));
+        int total = 0;
+        for (ByteBuffer segment : segments) {
+            total += segment.remaining();
+        }
+        assertThat(total, is(204));
+
+        String content = new String(msg.data(), ZMQ.CHARSET);
+        assertThat(content.substring(190), is("0123456789bcde"));
+        assertThat(msg.get(203), is((byte) 'e'));
+        assertThat(msg.buf().remaining(), is(204));
+    }
+
+    @Test
+    public void testBuilderSingleChunk()
+    {
+        final Msg.Builder builder = new Msg.Builder();
+        builder.put("hello".getBytes(ZMQ.CHARSET));
+
+        Msg msg = builder.build();
+        assertThat(msg.segments(), is((ByteBuffer[]) null));
+        assertThat(msg.data(), is("hello".getBytes(ZMQ.CHARSET)));
+    }
+
+    @Test
+    public void testBuilderReleasesChunks()
+    {
+        final AtomicInteger released = new AtomicInteger();
+        final Msg.Builder builder = new Msg.Builder(size -> new Msg(ByteBuffer.allocate(size), released::incrementAndGet));
+        builder.put(new byte[100]);
+        builder.put(new byte[100]);
+
+        Msg msg = builder.build();
+        assertThat(msg.size(), is(200));
+        assertThat(msg.segments().length, is(2));
+        assertThat(msg.isReleasable(), is(true));
+
+        msg.release();
+        assertThat(released.get(), is(2));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testPutStringLongerThan255()
     {
@@ -0,0 +1,172 @@
+package zmq;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestMsgComposite
+{
+    @Test
+    public void testSegments()
+    {
+        ByteBuffer header = ByteBuffer.wrap("header:".getBytes(ZMQ.CHARSET));
+        ByteBuffer body = ByteBuffer.allocateDirect(4);
+        body.put("body".getBytes(ZMQ.CHARSET)).flip();
+        ByteBuffer trailer = ByteBuffer.wrap(":trailer!".getBytes(ZMQ.CHARSET), 0, 8);
+
+        Msg msg = new Msg(header, body, trailer);
+        assertThat(msg.size(), is(19));
+        assertThat(msg.segments().length, is(3));
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("header:body:trailer"));
+        // segments are untouched
+        assertThat(body.position(), is(0));
+        assertThat(trailer.remaining(), is(8));
+
+        // contiguous access flattens the message
+        assertThat(msg.get(7), is((byte) 'b'));
+        assertThat(msg.buf().remaining(), is(19));
+        assertThat(new String(msg.data(), ZMQ.CHARSET), is("header:body:trailer"));
+        assertThat(msg.segments() == null, is(true));
+    }
+
+    @Test(timeout = 5000)
+    public void testSharedConcurrentFlattening() throws InterruptedException
+    {
+        //  A shared message is read by several threads, as when fanned out to inproc readers.
+        for (int round = 0; round < 100; ++round) {
+            Msg msg = new Msg(ByteBuffer.wrap("head:".getBytes(ZMQ.CHARSET)), ByteBuffer.wrap("body".getBytes(ZMQ.CHARSET)));
+            final int readers = 4;
+            msg.addRefs(readers - 1);
+
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger failures = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int idx = 0; idx < readers; ++idx) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                        ByteBuffer[] segments = msg.segments();
+                        if (msg.get(5) != 'b' || !"head:body".equals(new String(msg.data(), ZMQ.CHARSET))
+                                || (segments != null && segments.length != 2)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    catch (RuntimeException | InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertThat(failures.get(), is(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullSegment()
+    {
+        new Msg(new ByteBuffer[] { ByteBuffer.allocate(1), null });
+    }
+
+    @Test
+    public void testSendCompositeOverTcp()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(pull, notNullValue());
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String host = (String) ZMQ.getSocketOptionExt(pull, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(push, notNullValue());
+        rc = ZMQ.connect(push, host);
+        assertThat(rc, is(true));
+
+        int[] sizes = { 0, 10, 2048, 9000, 65536, 300000 };
+        for (int size : sizes) {
+            byte[] payload = new byte[size];
+            Arrays.fill(payload, (byte) 'b');
+            Msg msg = new Msg(
+                    ByteBuffer.wrap("head".getBytes(ZMQ.CHARSET)),
+                    ByteBuffer.wrap(payload),
+                    ByteBuffer.wrap("tail".getBytes(ZMQ.CHARSET)));
+            int sent = ZMQ.send(push, msg, 0);
+            assertThat(sent, is(size + 8));
+        }
+
+        for (int size : sizes) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg, notNullValue());
+            assertThat(msg.size(), is(size + 8));
+            byte[] data = msg.data();
+            assertThat(new String(data, 0, 4, ZMQ.CHARSET), is("head"));
+            assertThat(new String(data, size + 4, 4, ZMQ.CHARSET), is("tail"));
+            for (int idx = 4; idx < size + 4; ++idx) {
+                assertThat(data[idx], is((byte) 'b'));
+            }
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testSentChunksAreReleased()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(pull, notNullValue());
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String host = (String) ZMQ.getSocketOptionExt(pull, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(push, notNullValue());
+        rc = ZMQ.connect(push, host);
+        assertThat(rc, is(true));
+
+        AtomicInteger allocated = new AtomicInteger();
+        AtomicInteger released = new AtomicInteger();
+        byte[] payload = new byte[50000];
+        Arrays.fill(payload, (byte) 'c');
+        for (int idx = 0; idx < 10; ++idx) {
+            Msg.Builder builder = new Msg.Builder(size -> {
+                allocated.incrementAndGet();
+                return new Msg(ByteBuffer.allocate(size), released::incrementAndGet);
+            });
+            builder.put(payload);
+            int sent = ZMQ.send(push, builder.build(), 0);
+            assertThat(sent, is(payload.length));
+        }
+        for (int idx = 0; idx < 10; ++idx) {
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg, notNullValue());
+            assertThat(msg.data(), is(payload));
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+
+        assertThat(released.get(), is(allocated.get()));
+    }
+}
@@ -0,0 +1,161 @@
+package zmq;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestOverflow
+{
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testMessagesBeyondHwmAreReplayed() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        File dir = tempFolder.newFolder();
+
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(sb, notNullValue());
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_RCVHWM, 2);
+
+        boolean brc = ZMQ.bind(sb, "inproc://overflow");
+        assertThat(brc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(sc, notNullValue());
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_SNDHWM, 2);
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_OVERFLOW_DIR, dir.getAbsolutePath());
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_OVERFLOW_SIZE, 1024L * 1024);
+
+        brc = ZMQ.connect(sc, "inproc://overflow");
+        assertThat(brc, is(true));
+
+        //  All the messages are accepted, most of them are stored in the overflow file.
+        for (int i = 0; i < 100; i++) {
+            int rc = ZMQ.send(sc, "part-" + i, ZMQ.ZMQ_SNDMORE | ZMQ.ZMQ_DONTWAIT);
+            assertThat(rc, is(("part-" + i).length()));
+            rc = ZMQ.send(sc, "msg-" + i, ZMQ.ZMQ_DONTWAIT);
+            assertThat(rc, is(("msg-" + i).length()));
+        }
+        assertThat(dir.list().length, is(1));
+
+        //  They are received in order.
+        for (int i = 0; i < 100; i++) {
+            Msg m = ZMQ.recv(sb, 0);
+            assertThat(m, notNullValue());
+            assertThat(new String(m.data(), ZMQ.CHARSET), is("part-" + i));
+            assertThat(m.hasMore(), is(true));
+            m = ZMQ.recv(sb, 0);
+            assertThat(m, notNullValue());
+            assertThat(new String(m.data(), ZMQ.CHARSET), is("msg-" + i));
+            assertThat(m.hasMore(), is(false));
+        }
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+
+        //  The file is deleted with the pipe.
+        assertThat(dir.list().length, is(0));
+    }
+
+    @Test
+    public void testMessagesBeyondHwmAreReplayedOverTcp() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        File dir = tempFolder.newFolder();
+
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(sb, notNullValue());
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_RCVHWM, 10);
+
+        boolean brc = ZMQ.bind(sb, "tcp://127.0.0.1:*");
+        assertThat(brc, is(true));
+        String host = (String) ZMQ.getSocketOptionExt(sb, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(sc, notNullValue());
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_SNDHWM, 10);
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_OVERFLOW_DIR, dir.getAbsolutePath());
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_OVERFLOW_SIZE, 1024L * 1024);
+
+        brc = ZMQ.connect(sc, host);
+        assertThat(brc, is(true));
+
+        for (int i = 0; i < 10000; i++) {
+            int rc = ZMQ.send(sc, "msg-" + i, ZMQ.ZMQ_DONTWAIT);
+            assertThat(rc, is(("msg-" + i).length()));
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            Msg m = ZMQ.recv(sb, 0);
+            assertThat(m, notNullValue());
+            assertThat(new String(m.data(), ZMQ.CHARSET), is("msg-" + i));
+        }
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testOverflowSizeLimit() throws Exception
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        File dir = tempFolder.newFolder();
+
+        SocketBase sb = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(sb, notNullValue());
+        ZMQ.setSocketOption(sb, ZMQ.ZMQ_RCVHWM, 1);
+
+        boolean brc = ZMQ.bind(sb, "inproc://overflow");
+        assertThat(brc, is(true));
+
+        SocketBase sc = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(sc, notNullValue());
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_SNDHWM, 1);
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_OVERFLOW_DIR, dir.getAbsolutePath());
+        ZMQ.setSocketOption(sc, ZMQ.ZMQ_OVERFLOW_SIZE, 1000L);
+
+        brc = ZMQ.connect(sc, "inproc://overflow");
+        assertThat(brc, is(true));
+
+        //  2 messages fit in memory, then the size of the overflow file is checked
+        //  before each message: 100 bytes of payload are stored with 15 bytes of header.
+        byte[] data = new byte[100];
+        int sent = 0;
+        while (ZMQ.send(sc, data, ZMQ.ZMQ_DONTWAIT) == data.length) {
+            sent++;
+        }
+        assertThat(sent, is(2 + 9));
+
+        for (int i = 0; i < sent; i++) {
+            Msg m = ZMQ.recv(sb, 0);
+            assertThat(m, notNullValue());
+            assertThat(m.size(), is(100));
+        }
+
+        //  Once the peer has caught up, messages can be sent again.
+        int rc = ZMQ.send(sc, data, 0);
+        assertThat(rc, is(100));
+        Msg m = ZMQ.recv(sb, 0);
+        assertThat(m, notNullValue());
+
+        ZMQ.close(sc);
+        ZMQ.close(sb);
+        ZMQ.term(ctx);
+    }
+}
@@ -0,0 +1,103 @@
+package zmq;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class VirtualThreadsTest
+{
+    private static final int CLIENTS    = 10000;
+    private static final int ROUNDTRIPS = 10;
+
+    @Test(timeout = 60000)
+    public void testReqRepInproc() throws Exception
+    {
+        testReqRep("inproc://virtual");
+    }
+
+    @Test(timeout = 60000)
+    public void testReqRepTcp() throws Exception
+    {
+        testReqRep("tcp://127.0.0.1:*");
+    }
+
+    //  Virtual threads are final from Java 21 on.
+    private static ExecutorService virtualThreads() throws ReflectiveOperationException
+    {
+        assumeTrue(Runtime.version().feature() >= 21);
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+
+    //  Each client blocks in recv on a virtual thread, far more of them than carrier threads:
+    //  if a blocked client held its carrier, the server would never get one to reply.
+    private void testReqRep(String address)
+            throws InterruptedException, ExecutionException, ReflectiveOperationException
+    {
+        ExecutorService service = virtualThreads();
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+        boolean rc = ctx.set(ZMQ.ZMQ_MAX_SOCKETS, CLIENTS + 1);
+        assertThat(rc, is(true));
+
+        SocketBase rep = ZMQ.socket(ctx, ZMQ.ZMQ_REP);
+        rc = ZMQ.bind(rep, address);
+        assertThat(rc, is(true));
+        String endpoint = (String) ZMQ.getSocketOptionExt(rep, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        try {
+            Future<Integer> server = service.submit(() -> {
+                int replies = 0;
+                while (replies < CLIENTS * ROUNDTRIPS) {
+                    Msg msg = ZMQ.recv(rep, 0);
+                    assertThat(msg, notNullValue());
+                    int sent = ZMQ.send(rep, msg, 0);
+                    assertThat(sent, is(msg.size()));
+                    ++replies;
+                }
+                return replies;
+            });
+
+            List<Future<Integer>> clients = new ArrayList<>(CLIENTS);
+            for (int idx = 0; idx < CLIENTS; ++idx) {
+                clients.add(service.submit(() -> {
+                    SocketBase req = ZMQ.socket(ctx, ZMQ.ZMQ_REQ);
+                    ZMQ.setSocketOption(req, ZMQ.ZMQ_LINGER, 0);
+                    assertThat(ZMQ.connect(req, endpoint), is(true));
+                    int roundtrips = 0;
+                    for (; roundtrips < ROUNDTRIPS; ++roundtrips) {
+                        int sent = ZMQ.send(req, "ping", 0);
+                        assertThat(sent, is(4));
+                        Msg msg = ZMQ.recv(req, 0);
+                        assertThat(msg, notNullValue());
+                        assertThat(new String(msg.data(), ZMQ.CHARSET), is("ping"));
+                    }
+                    ZMQ.close(req);
+                    return roundtrips;
+                }));
+            }
+
+            for (Future<Integer> client : clients) {
+                assertThat(client.get(), is(ROUNDTRIPS));
+            }
+            assertThat(server.get(), is(CLIENTS * ROUNDTRIPS));
+        }
+        finally {
+            service.shutdownNow();
+            service.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        ZMQ.close(rep);
+        ZMQ.term(ctx);
+    }
+}
@@ -0,0 +1,155 @@
+package zmq.io;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class IOThreadLoadTest
+{
+    private static final int MSG_SIZE = 1024;
+
+    @Test(timeout = 20000)
+    public void testLoadIsMeasured() throws Exception
+    {
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+        assertThat(ctx.getIoThreadLoads().isEmpty(), is(true));
+
+        SocketBase receiver = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(receiver, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String addr = (String) ZMQ.getSocketOptionExt(receiver, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase sender = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(sender, addr);
+        assertThat(rc, is(true));
+
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        Future<Integer> received = service.submit(() -> receive(receiver));
+
+        int sent = send(sender, () -> ctx.getIoThreadLoads().get(0).bytesPerSecond > 0);
+
+        assertThat(received.get(), is(sent));
+        service.shutdown();
+
+        List<IOThread.Load> loads = ctx.getIoThreadLoads();
+        assertThat(loads.size(), is(1));
+        assertThat(loads.get(0).messagesPerSecond > 0, is(true));
+        assertThat(loads.get(0).fds > 0, is(true));
+
+        ZMQ.close(sender);
+        ZMQ.close(receiver);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 20000)
+    public void testBusyConnectionMigrates() throws Exception
+    {
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+        boolean rc = ctx.set(ZMQ.ZMQ_IO_THREADS, 2);
+        assertThat(rc, is(true));
+        rc = ctx.set(ZMQ.ZMQ_IO_REBALANCE_IVL, 100);
+        assertThat(rc, is(true));
+        assertThat(ctx.get(ZMQ.ZMQ_IO_REBALANCE_IVL), is(100));
+
+        //  Idle connections pinned to the second thread, so that both ends
+        //  of the busy connection are first placed in the first thread.
+        SocketBase idleReceiver = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(idleReceiver, ZMQ.ZMQ_AFFINITY, 2L);
+        rc = ZMQ.bind(idleReceiver, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String idleAddr = (String) ZMQ.getSocketOptionExt(idleReceiver, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase idleSender = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(idleSender, ZMQ.ZMQ_AFFINITY, 2L);
+        for (int idx = 0; idx < 4; ++idx) {
+            rc = ZMQ.connect(idleSender, idleAddr);
+            assertThat(rc, is(true));
+        }
+        while (ctx.getIoThreadLoads().get(1).fds < 10) {
+            ZMQ.msleep(10);
+        }
+        //  Let the traffic of their handshakes out of the measures.
+        ZMQ.msleep(2500);
+        assertThat(ctx.getIoThreadLoads().get(1).bytesPerSecond, is(0L));
+
+        SocketBase receiver = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        rc = ZMQ.bind(receiver, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String addr = (String) ZMQ.getSocketOptionExt(receiver, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase sender = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(sender, addr);
+        assertThat(rc, is(true));
+
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        Future<Integer> received = service.submit(() -> receive(receiver));
+
+        //  One of the ends of the busy connection moves to the idle thread.
+        int sent = send(sender, () -> {
+            List<IOThread.Load> loads = ctx.getIoThreadLoads();
+            return loads.get(0).bytesPerSecond > 0 && loads.get(1).bytesPerSecond > 0;
+        });
+
+        //  No message has been lost or reordered on the way.
+        assertThat(received.get(), is(sent));
+        service.shutdown();
+
+        ZMQ.setSocketOption(idleSender, ZMQ.ZMQ_LINGER, 0);
+        ZMQ.close(idleSender);
+        ZMQ.close(idleReceiver);
+        ZMQ.close(sender);
+        ZMQ.close(receiver);
+        ZMQ.term(ctx);
+    }
+
+    private interface Condition
+    {
+        boolean met();
+    }
+
+    //  Sends numbered messages until the condition is met, then an empty message.
+    private int send(SocketBase sender, Condition condition)
+    {
+        int sent = 0;
+        while (sent % 1000 != 0 || !condition.met()) {
+            byte[] data = new byte[MSG_SIZE];
+            ByteBuffer.wrap(data).putInt(sent);
+            int rc = ZMQ.send(sender, new Msg(data), 0);
+            assertThat(rc, is(MSG_SIZE));
+            ++sent;
+        }
+        int rc = ZMQ.send(sender, new Msg(), 0);
+        assertThat(rc, is(0));
+        return sent;
+    }
+
+    //  Receives the numbered messages in order until the empty one.
+    private int receive(SocketBase receiver)
+    {
+        int received = 0;
+        while (true) {
+            Msg msg = ZMQ.recv(receiver, 0);
+            assertThat(msg, notNullValue());
+            if (msg.size() == 0) {
+                return received;
+            }
+            assertThat(msg.getInt(0), is(received));
+            ++received;
+        }
+    }
+}
@@ -4,6 +4,11 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 import zmq.Config;
@@ -53,6 +58,107 @@ public class StreamEngineTest
         ZMQ.term(ctx);
     }
 
+    @Test(timeout = 20000)
+    public void testSpeculativeWritePair()
+    {
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+
+        SocketBase bind = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(bind, notNullValue());
+        boolean rc = ZMQ.setSocketOption(bind, ZMQ.ZMQ_SPECULATIVE_WRITE, true);
+        assertThat(rc, is(true));
+        rc = ZMQ.bind(bind, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String addr = (String) ZMQ.getSocketOptionExt(bind, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase connect = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(connect, notNullValue());
+        rc = ZMQ.setSocketOption(connect, ZMQ.ZMQ_SPECULATIVE_WRITE, true);
+        assertThat(rc, is(true));
+        assertThat(ZMQ.getSocketOption(connect, ZMQ.ZMQ_SPECULATIVE_WRITE), is(1));
+        rc = ZMQ.connect(connect, addr);
+        assertThat(rc, is(true));
+
+        //  Ping-pong, where the messages are written from the sending threads.
+        for (int idx = 0; idx < 1000; ++idx) {
+            int sent = ZMQ.send(connect, msg(idx % 100), 0);
+            assertThat(sent, is(idx % 100));
+            Msg received = ZMQ.recv(bind, 0);
+            assertThat(received.data(), is(msg(idx % 100)));
+            sent = ZMQ.send(bind, received, 0);
+            assertThat(sent, is(idx % 100));
+            received = ZMQ.recv(connect, 0);
+            assertThat(received.size(), is(idx % 100));
+        }
+
+        //  Multi-part and large messages are mixed with the written ones.
+        exchange(connect, bind, msg(10), msg(Config.OUT_BATCH_SIZE.getValue() * 2), msg(0));
+        ZMQ.send(connect, msg(3), ZMQ.ZMQ_SNDMORE);
+        ZMQ.send(connect, msg(4), 0);
+        assertThat(ZMQ.recv(bind, 0).size(), is(3));
+        assertThat(ZMQ.recv(bind, 0).size(), is(4));
+
+        ZMQ.close(bind);
+        ZMQ.close(connect);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 20000)
+    public void testSpeculativeWriteDealerFlood() throws Exception
+    {
+        final int count = 20000;
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+
+        SocketBase router = ZMQ.socket(ctx, ZMQ.ZMQ_ROUTER);
+        assertThat(router, notNullValue());
+        boolean rc = ZMQ.setSocketOption(router, ZMQ.ZMQ_RCVBUF, 4096);
+        assertThat(rc, is(true));
+        rc = ZMQ.bind(router, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String addr = (String) ZMQ.getSocketOptionExt(router, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase dealer = ZMQ.socket(ctx, ZMQ.ZMQ_DEALER);
+        assertThat(dealer, notNullValue());
+        rc = ZMQ.setSocketOption(dealer, ZMQ.ZMQ_SPECULATIVE_WRITE, true);
+        assertThat(rc, is(true));
+        rc = ZMQ.setSocketOption(dealer, ZMQ.ZMQ_SNDBUF, 4096);
+        assertThat(rc, is(true));
+        rc = ZMQ.connect(dealer, addr);
+        assertThat(rc, is(true));
+
+        //  Once connected, the network cannot take all the messages at once, the I/O thread writes the rest.
+        int sent = ZMQ.send(dealer, "hello", 0);
+        assertThat(sent, is(5));
+        assertThat(ZMQ.recv(router, 0).hasMore(), is(true));
+        assertThat(ZMQ.recv(router, 0).size(), is(5));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> received = executor.submit(() -> {
+            ZMQ.msleep(200);
+            for (int idx = 0; idx < count; ++idx) {
+                Msg identity = ZMQ.recv(router, 0);
+                assertThat(identity.hasMore(), is(true));
+                Msg msg = ZMQ.recv(router, 0);
+                assertThat(msg.buf().getInt(0), is(idx));
+            }
+            return count;
+        });
+        for (int idx = 0; idx < count; ++idx) {
+            byte[] data = msg(3000);
+            ByteBuffer.wrap(data).putInt(idx);
+            sent = ZMQ.send(dealer, data, 0);
+            assertThat(sent, is(3000));
+        }
+        assertThat(received.get(), is(count));
+        executor.shutdown();
+
+        ZMQ.close(dealer);
+        ZMQ.close(router);
+        ZMQ.term(ctx);
+    }
+
     private byte[] msg(int length)
     {
         byte[] msg = new byte[length];
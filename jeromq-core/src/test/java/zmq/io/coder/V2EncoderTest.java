@@ -6,12 +6,17 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
 import zmq.Msg;
 import zmq.ZMQ;
 import zmq.io.coder.v2.V2Encoder;
+import zmq.msg.MsgAllocator;
+import zmq.msg.MsgAllocatorPooled;
 import zmq.util.Errno;
 import zmq.util.ValueReference;
 
@@ -78,4 +83,152 @@ public class V2EncoderTest
         assertThat(position, is(62));
         assertThat(limit, is(200));
     }
+
+    @Test
+    public void testCompositeMessage()
+    {
+        Msg.Builder builder = new Msg.Builder();
+        for (int i = 0; i < 20; i++) {
+            builder.put("0123456789".getBytes(ZMQ.CHARSET));
+        }
+        Msg msg = builder.build();
+        assertThat(msg.segments().length, is(3));
+
+        encoder.loadMsg(msg);
+        ByteBuffer encoded = ByteBuffer.allocate(202);
+        ValueReference<ByteBuffer> ref = new ValueReference<>();
+        int total = 0;
+        while (total < 202) {
+            ref.set(null);
+            int outsize = encoder.encode(ref, 0);
+            assertThat(outsize > 0, is(true));
+            encoder.encoded();
+            ByteBuffer out = ref.get();
+            assertThat(out.remaining(), is(outsize));
+            encoded.put(out);
+            total += outsize;
+        }
+        ref.set(null);
+        assertThat(encoder.encode(ref, 0), is(0));
+
+        encoded.flip();
+        assertThat(encoded.get(), is((byte) 0));
+        assertThat(encoded.get(), is((byte) 200));
+        byte[] body = new byte[200];
+        encoded.get(body);
+        assertThat(body, is(readLongMessage1().data()));
+    }
+
+    @Test
+    public void testGatheringLargeBody()
+    {
+        EncoderBase encoder = new V2Encoder(new Errno(), 8192);
+        byte[] large = new byte[4000];
+        large[3999] = 'x';
+        Msg header = new Msg("head".getBytes(ZMQ.CHARSET));
+        header.setFlags(Msg.MORE);
+        Msg body = new Msg(ByteBuffer.wrap("small-".getBytes(ZMQ.CHARSET)), ByteBuffer.wrap(large));
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        encoder.loadMsg(header);
+        int outsize = encoder.encode(buffers, 8192);
+        assertThat(outsize, is(6));
+        encoder.loadMsg(body);
+        outsize += encoder.encode(buffers, 8192 - outsize);
+        assertThat(outsize, is(6 + 9 + 4006));
+
+        // header frame, body header and small segment are copied, large segment is referenced
+        assertThat(buffers.size(), is(2));
+        assertThat(buffers.get(0).remaining(), is(6 + 9 + 6));
+        assertThat(buffers.get(1).remaining(), is(4000));
+        assertThat(buffers.get(1).get(3999), is((byte) 'x'));
+
+        ByteBuffer first = buffers.get(0);
+        assertThat(first.get(), is((byte) 1));
+        assertThat(first.get(), is((byte) 4));
+    }
+
+    @Test
+    public void testBatchBufferFromAllocator()
+    {
+        AtomicInteger released = new AtomicInteger();
+        ByteBuffer batch = ByteBuffer.allocateDirect(64);
+        MsgAllocator allocator = new MsgAllocator()
+        {
+            @Override
+            public Msg allocate(int size)
+            {
+                return new Msg(size);
+            }
+
+            @Override
+            public Msg allocateBatch(int size)
+            {
+                assertThat(size, is(64));
+                return new Msg(batch, released::incrementAndGet);
+            }
+        };
+        EncoderBase encoder = new V2Encoder(new Errno(), 64, allocator);
+        encoder.loadMsg(readShortMessage());
+
+        ValueReference<ByteBuffer> ref = new ValueReference<>();
+        int outsize = encoder.encode(ref, 0);
+        assertThat(outsize, is(7));
+        assertThat(batch.get(0), is((byte) 0));
+        assertThat(batch.get(1), is((byte) 5));
+        assertThat(batch.get(2), is((byte) 'h'));
+
+        encoder.destroy();
+        assertThat(released.get(), is(1));
+    }
+
+    @Test
+    public void testGatheringPooledBodyAcrossBatches()
+    {
+        MsgAllocatorPooled allocator = new MsgAllocatorPooled();
+        EncoderBase encoder = new V2Encoder(new Errno(), 8192);
+        Msg msg = allocator.allocate(20000);
+        ByteBuffer payload = msg.buf();
+        for (int idx = 0; idx < 20000; ++idx) {
+            payload.put(idx, (byte) idx);
+        }
+        encoder.loadMsg(msg);
+
+        ByteBuffer encoded = ByteBuffer.allocate(20009);
+        List<ByteBuffer> buffers = new ArrayList<>();
+        int batches = 0;
+        while (encoded.hasRemaining()) {
+            //  A new batch, once the previous one has been written.
+            buffers.clear();
+            int outsize = encoder.encode(buffers, 8192);
+            assertThat(outsize > 0, is(true));
+            for (ByteBuffer buffer : buffers) {
+                encoded.put(buffer);
+            }
+            ++batches;
+
+            //  The payload of the message being sent is not given back to the pool in between.
+            Msg other = allocator.allocate(20000);
+            ByteBuffer overwritten = other.buf();
+            for (int idx = 0; idx < 20000; ++idx) {
+                overwritten.put(idx, (byte) 0x55);
+            }
+            other.release();
+        }
+        assertThat(batches, is(3));
+
+        encoded.flip();
+        encoded.position(9);
+        for (int idx = 0; idx < 20000; ++idx) {
+            assertThat(encoded.get(), is((byte) idx));
+        }
+
+        //  The last batch has been written, the message is given back and its buffer reused.
+        buffers.clear();
+        assertThat(encoder.encode(buffers, 8192), is(0));
+        Msg reused = allocator.allocate(20000);
+        assertThat(reused.buf().get(1), is((byte) 1));
+        reused.release();
+        encoder.destroy();
+    }
 }
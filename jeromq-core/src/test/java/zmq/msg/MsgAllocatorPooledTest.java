@@ -0,0 +1,192 @@
+package zmq.msg;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class MsgAllocatorPooledTest
+{
+    @Test
+    public void testAllocateSizes()
+    {
+        MsgAllocator allocator = new MsgAllocatorPooled(16, 1024, 1024, 1024);
+
+        Msg msg = allocator.allocate(0);
+        assertThat(msg.size(), is(0));
+        assertThat(msg.isReleasable(), is(false));
+
+        msg = allocator.allocate(1);
+        assertThat(msg.size(), is(1));
+        assertThat(msg.buf().capacity(), is(1));
+        assertThat(msg.buf().isDirect(), is(true));
+        assertThat(msg.isReleasable(), is(true));
+
+        msg = allocator.allocate(1000);
+        assertThat(msg.size(), is(1000));
+        assertThat(msg.isReleasable(), is(true));
+
+        msg = allocator.allocate(1025);
+        assertThat(msg.size(), is(1025));
+        assertThat(msg.isReleasable(), is(false));
+    }
+
+    @Test
+    public void testReuseInSameSizeClass()
+    {
+        MsgAllocator allocator = new MsgAllocatorPooled(16, 1024, 1024, 1024);
+
+        Msg msg = allocator.allocate(100);
+        String marker = mark(msg, "abc");
+        msg.release();
+        assertThat(msg.isReleasable(), is(false));
+
+        Msg other = allocator.allocate(128);
+        assertThat(other.size(), is(128));
+        assertThat(content(other, 3), is(marker));
+
+        // releasing twice is a no-op
+        msg.release();
+        Msg third = allocator.allocate(100);
+        assertThat(content(third, 3), is(not(marker)));
+    }
+
+    @Test
+    public void testReleaseInOtherThread() throws InterruptedException, ExecutionException
+    {
+        MsgAllocator allocator = new MsgAllocatorPooled(16, 1024, 0, 1024);
+
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        try {
+            // the thread cache keeps one buffer, the next one goes to the shared pool
+            Msg first = allocator.allocate(64);
+            Msg second = allocator.allocate(64);
+            String marker = mark(second, "abc");
+            service.submit(first::release).get();
+            service.submit(second::release).get();
+
+            Msg msg = allocator.allocate(64);
+            assertThat(content(msg, 3), is(marker));
+        }
+        finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testDataIsCopied()
+    {
+        MsgAllocator allocator = new MsgAllocatorPooled();
+
+        Msg msg = allocator.allocate(3);
+        msg.put("abc".getBytes(ZMQ.CHARSET));
+        byte[] data = msg.data();
+        msg.release();
+
+        allocator.allocate(3).put("xyz".getBytes(ZMQ.CHARSET));
+        assertThat(new String(data, ZMQ.CHARSET), is("abc"));
+    }
+
+    @Test
+    public void testSendReceiveOverTcp()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        MsgAllocator allocator = new MsgAllocatorPooled();
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(pull, notNullValue());
+        boolean rc = ZMQ.setSocketOption(pull, ZMQ.ZMQ_MSG_ALLOCATOR, allocator);
+        assertThat(rc, is(true));
+        rc = ZMQ.bind(pull, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String host = (String) ZMQ.getSocketOptionExt(pull, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(push, notNullValue());
+        rc = ZMQ.connect(push, host);
+        assertThat(rc, is(true));
+
+        for (int idx = 0; idx < 100; ++idx) {
+            String content = "message " + idx;
+            int sent = ZMQ.send(push, content, 0);
+            assertThat(sent, is(content.length()));
+
+            Msg msg = ZMQ.recv(pull, 0);
+            assertThat(msg, notNullValue());
+            assertThat(msg.isReleasable(), is(true));
+            assertThat(new String(msg.data(), ZMQ.CHARSET), is(content));
+            msg.release();
+        }
+
+        Msg msg = ZMQ.recv(pull, ZMQ.ZMQ_DONTWAIT);
+        assertThat(msg, is((Msg) null));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testSentMessageIsReleased()
+    {
+        Ctx ctx = ZMQ.init(1);
+        assertThat(ctx, notNullValue());
+
+        MsgAllocator allocator = new MsgAllocatorPooled();
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(pull, notNullValue());
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String host = (String) ZMQ.getSocketOptionExt(pull, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(push, notNullValue());
+        rc = ZMQ.connect(push, host);
+        assertThat(rc, is(true));
+
+        Msg msg = allocator.allocate(5);
+        msg.put("hello".getBytes(ZMQ.CHARSET));
+        int sent = ZMQ.send(push, msg, 0);
+        assertThat(sent, is(5));
+
+        Msg received = ZMQ.recv(pull, 0);
+        assertThat(received, notNullValue());
+        assertThat(new String(received.data(), ZMQ.CHARSET), is("hello"));
+        assertThat(msg.isReleasable(), is(false));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    // a recycled buffer still holds the content of its previous message
+    private static String mark(Msg msg, String content)
+    {
+        msg.put(content.getBytes(ZMQ.CHARSET));
+        return content;
+    }
+
+    private static String content(Msg msg, int length)
+    {
+        ByteBuffer buf = msg.buf();
+        assertThat(buf.isDirect(), is(true));
+        byte[] data = new byte[length];
+        buf.get(data);
+        return new String(data, ZMQ.CHARSET);
+    }
+}
@@ -0,0 +1,16 @@
+package zmq.msg;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+public class OffHeapMsgAllocatorTest
+{
+    @Test
+    public void testArenaMissingFromCore()
+    {
+        assertThat(OffHeapMsgAllocator.arena().isPresent(), is(false));
+        assertThat(OffHeapMsgAllocator.arena(64, 1024, 1024 * 1024, false).isPresent(), is(false));
+    }
+}
@@ -0,0 +1,96 @@
+package zmq.pipe;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MpscQueueTest
+{
+    @Test
+    public void testPushPoll()
+    {
+        MpscQueue<Integer> queue = new MpscQueue<>();
+        assertThat(queue.poll(), nullValue());
+
+        //  The reader starts asleep
+        assertThat(queue.push(1), is(false));
+        assertThat(queue.push(2), is(true));
+
+        assertThat(queue.poll(), is(1));
+        assertThat(queue.poll(), is(2));
+        assertThat(queue.poll(), nullValue());
+    }
+
+    @Test
+    public void testWakeUpOnlyWhenAsleep()
+    {
+        MpscQueue<Integer> queue = new MpscQueue<>();
+        assertThat(queue.push(0), is(false));
+        assertThat(queue.pollOrSleep(), is(0));
+
+        //  The reader goes asleep on an empty queue
+        assertThat(queue.pollOrSleep(), nullValue());
+
+        //  Only the first writer is in charge of waking it up
+        assertThat(queue.push(1), is(false));
+        assertThat(queue.push(2), is(true));
+
+        assertThat(queue.pollOrSleep(), is(1));
+        assertThat(queue.pollOrSleep(), is(2));
+        assertThat(queue.pollOrSleep(), nullValue());
+
+        assertThat(queue.push(3), is(false));
+        assertThat(queue.pollOrSleep(), is(3));
+    }
+
+    @Test(timeout = 10000)
+    public void testManyWriters() throws InterruptedException
+    {
+        final int writers = 4;
+        final int count = 100000;
+
+        final MpscQueue<int[]> queue = new MpscQueue<>();
+        final Semaphore wakeups = new Semaphore(0);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        for (int idx = 0; idx < writers; ++idx) {
+            final int writer = idx;
+            executor.submit(() -> {
+                start.await();
+                for (int seq = 0; seq < count; ++seq) {
+                    if (!queue.push(new int[] { writer, seq })) {
+                        wakeups.release();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+
+        //  Each writer's items are read in order, and the reader is never left asleep with items.
+        int[] expected = new int[writers];
+        int received = 0;
+        while (received < writers * count) {
+            int[] item = queue.pollOrSleep();
+            if (item == null) {
+                assertThat(wakeups.tryAcquire(5, TimeUnit.SECONDS), is(true));
+                continue;
+            }
+            assertThat(item[1], is(expected[item[0]]));
+            expected[item[0]]++;
+            received++;
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+        assertThat(queue.poll(), nullValue());
+    }
+}
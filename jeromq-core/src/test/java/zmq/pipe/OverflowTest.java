@@ -0,0 +1,79 @@
+package zmq.pipe;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import zmq.Msg;
+import zmq.ZMQ;
+
+public class OverflowTest
+{
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static Overflow store(File dir, int count)
+    {
+        Overflow overflow = new Overflow(dir.toPath(), 1024 * 1024);
+        overflow.start();
+        for (int idx = 0; idx < count; ++idx) {
+            Msg msg = new Msg(Integer.toString(idx).getBytes(ZMQ.CHARSET));
+            assertThat(overflow.reserve(msg), is(true));
+            overflow.append(msg);
+        }
+        return overflow;
+    }
+
+    @Test
+    public void testCloseDeletesFile() throws IOException
+    {
+        File dir = tempFolder.newFolder();
+        Overflow overflow = store(dir, 10);
+        assertThat(dir.list().length, is(1));
+
+        assertThat(overflow.close(), nullValue());
+        assertThat(dir.list().length, is(0));
+        assertThat(overflow.close(), nullValue());
+    }
+
+    @Test
+    public void testCloseReportsFailure() throws IOException
+    {
+        File dir = tempFolder.newFolder();
+        Overflow overflow = store(dir, 10);
+
+        //  The file cannot be deleted anymore.
+        File file = dir.listFiles()[0];
+        assertThat(file.delete(), is(true));
+        assertThat(new File(file, "child").mkdirs(), is(true));
+
+        IOException failure = overflow.close();
+        assertThat(failure, notNullValue());
+        assertThat(Files.isDirectory(file.toPath()), is(true));
+    }
+
+    @Test
+    public void testReserveFailureReportedOnClose() throws IOException
+    {
+        File dir = new File(tempFolder.newFolder(), "missing");
+        Overflow overflow = new Overflow(dir.toPath(), 1024 * 1024);
+        overflow.start();
+
+        Msg msg = new Msg(new byte[10]);
+        assertThat(overflow.reserve(msg), is(false));
+        assertThat(overflow.accepts(), is(false));
+        assertThat(overflow.reserve(msg), is(false));
+
+        assertThat(overflow.close(), notNullValue());
+        assertThat(overflow.close(), nullValue());
+    }
+}
@@ -0,0 +1,253 @@
+package zmq.pipe;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+import zmq.ZObject;
+
+public class PipeTest
+{
+    private static final class Sink implements Pipe.IPipeEvents
+    {
+        @Override
+        public void readActivated(Pipe pipe)
+        {
+        }
+
+        @Override
+        public void writeActivated(Pipe pipe)
+        {
+        }
+
+        @Override
+        public void hiccuped(Pipe pipe)
+        {
+        }
+
+        @Override
+        public void pipeTerminated(Pipe pipe)
+        {
+        }
+    }
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Ctx        ctx;
+    private SocketBase writer;
+    private SocketBase reader;
+
+    @Before
+    public void setUp()
+    {
+        ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+        writer = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(writer, notNullValue());
+        reader = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        assertThat(reader, notNullValue());
+    }
+
+    @After
+    public void tearDown()
+    {
+        ZMQ.close(writer);
+        ZMQ.close(reader);
+        ZMQ.term(ctx);
+    }
+
+    private Pipe[] pair(int hwm)
+    {
+        Pipe[] pipes = Pipe.pair(new ZObject[] { writer, reader }, new int[] { hwm, hwm }, new boolean[] { false, false });
+        pipes[0].setEventSink(new Sink());
+        pipes[1].setEventSink(new Sink());
+        return pipes;
+    }
+
+    private static Msg msg(String text)
+    {
+        return new Msg(text.getBytes(ZMQ.CHARSET));
+    }
+
+    private static Msg msg(int idx, boolean more)
+    {
+        Msg msg = new Msg(Integer.toString(idx).getBytes(ZMQ.CHARSET));
+        if (more) {
+            msg.setFlags(Msg.MORE);
+        }
+        return msg;
+    }
+
+    private static int write(Pipe pipe, Msg... msgs)
+    {
+        int written = 0;
+        while (written < msgs.length && pipe.write(msgs[written])) {
+            written++;
+        }
+        pipe.flush();
+        return written;
+    }
+
+    private static Msg[] msgs(int count)
+    {
+        Msg[] msgs = new Msg[count];
+        for (int idx = 0; idx < msgs.length; ++idx) {
+            msgs[idx] = msg(idx, false);
+        }
+        return msgs;
+    }
+
+    private static String content(Msg msg)
+    {
+        return new String(msg.data(), ZMQ.CHARSET);
+    }
+
+    @Test
+    public void testReadInOrder()
+    {
+        Pipe[] pipes = pair(10);
+
+        assertThat(write(pipes[0], msgs(15)), is(10));
+        assertThat(pipes[0].checkWrite(), is(false));
+
+        for (int idx = 0; idx < 10; ++idx) {
+            Msg msg = pipes[1].read();
+            assertThat(msg, notNullValue());
+            assertThat(content(msg), is(Integer.toString(idx)));
+        }
+        assertThat(pipes[1].read(), nullValue());
+    }
+
+    @Test
+    public void testCreditAtLowWatermark()
+    {
+        Pipe[] pipes = pair(4);
+
+        assertThat(write(pipes[0], msgs(8)), is(4));
+
+        // the writer is credited only once the low watermark is reached
+        assertThat(pipes[1].read(), notNullValue());
+        ZMQ.getSocketOption(writer, ZMQ.ZMQ_EVENTS);
+        assertThat(pipes[0].checkWrite(), is(false));
+
+        // the low watermark is reached
+        assertThat(pipes[1].read(), notNullValue());
+        ZMQ.getSocketOption(writer, ZMQ.ZMQ_EVENTS);
+        assertThat(write(pipes[0], msgs(8)), is(2));
+        assertThat(pipes[0].checkWrite(), is(false));
+    }
+
+    @Test
+    public void testKeyedConflationUntilRead()
+    {
+        Pipe[] pipes = Pipe.pair(new ZObject[] { writer, reader }, new int[] { -1, -1 }, new boolean[] { true, true },
+                                 false, ConflateKey.prefix(1));
+        pipes[0].setEventSink(new Sink());
+        pipes[1].setEventSink(new Sink());
+
+        assertThat(write(pipes[0], msg("a1"), msg("b1")), is(2));
+        assertThat(content(pipes[1].read()), is("a1"));
+
+        //  The pending message of a key is replaced until it is read.
+        assertThat(write(pipes[0], msg("b2")), is(1));
+        assertThat(content(pipes[1].read()), is("b2"));
+        assertThat(pipes[1].read(), nullValue());
+    }
+
+    @Test
+    public void testHiccupWhileSpilling() throws IOException
+    {
+        Pipe[] pipes = pair(2);
+        pipes[0].setOverflow(tempFolder.newFolder().getAbsolutePath(), 1024 * 1024);
+
+        assertThat(write(pipes[0], msgs(5)), is(5));
+        pipes[0].sendHiccupMsg(msg("hiccup"));
+
+        //  The hiccup message comes after the stored messages.
+        for (int idx = 0; idx < 5; ++idx) {
+            assertThat(content(pipes[1].read()), is(Integer.toString(idx)));
+        }
+        assertThat(content(pipes[1].read()), is("hiccup"));
+        assertThat(pipes[1].read(), nullValue());
+    }
+
+    @Test
+    public void testOverflowFailureIsFull() throws IOException
+    {
+        Pipe[] pipes = pair(2);
+        pipes[0].setOverflow(new File(tempFolder.newFolder(), "missing").getAbsolutePath(), 1024 * 1024);
+
+        //  The overflow file cannot be created, the pipe is full at the high watermark.
+        assertThat(write(pipes[0], msgs(5)), is(2));
+        assertThat(pipes[0].checkWrite(), is(false));
+
+        assertThat(content(pipes[1].read()), is("0"));
+        assertThat(content(pipes[1].read()), is("1"));
+        assertThat(pipes[1].read(), nullValue());
+    }
+
+    @Test
+    public void testMultipart()
+    {
+        Pipe[] pipes = pair(2);
+
+        // the high watermark is only checked at message boundaries
+        Msg[] msgs = { msg(0, true), msg(1, true), msg(2, false), msg(3, true), msg(4, false), msg(5, true),
+                msg(6, false) };
+        assertThat(write(pipes[0], msgs), is(5));
+
+        for (int idx = 0; idx < 5; ++idx) {
+            Msg msg = pipes[1].read();
+            assertThat(content(msg), is(Integer.toString(idx)));
+            assertThat(msg.hasMore(), is(idx != 2 && idx != 4));
+        }
+        assertThat(pipes[1].read(), nullValue());
+    }
+
+    @Test
+    public void testIncompleteMessageNotVisible()
+    {
+        Pipe[] pipes = pair(0);
+
+        assertThat(write(pipes[0], msg(0, false), msg(1, true)), is(2));
+
+        assertThat(content(pipes[1].read()), is("0"));
+        // the reader is now asleep, waiting for an activation command
+        assertThat(pipes[1].read(), nullValue());
+    }
+
+    @Test
+    public void testActivateWriteCarriesLatestCounters()
+    {
+        Pipe[] pipes = pair(4);
+
+        assertThat(write(pipes[0], msgs(8)), is(4));
+        assertThat(pipes[0].checkWrite(), is(false));
+
+        // the low watermark is crossed twice, but the second notification
+        // is merged into the first one not processed yet by the writer
+        for (int idx = 0; idx < 4; ++idx) {
+            assertThat(pipes[1].read(), notNullValue());
+        }
+
+        // process the pending commands of the writer
+        ZMQ.getSocketOption(writer, ZMQ.ZMQ_EVENTS);
+
+        assertThat(write(pipes[0], msgs(8)), is(4));
+    }
+}
@@ -0,0 +1,184 @@
+package zmq.pipe;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class YPipeKeyedConflateTest
+{
+    @Test
+    public void testPrefixKey()
+    {
+        ConflateKey key = ConflateKey.prefix(3);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(5).put("topic".getBytes(ZMQ.CHARSET));
+        direct.flip();
+        assertThat(key.key(new Msg(direct)), is(key.key(msg("top"))));
+        assertThat(key.key(msg("to")), is(key.key(msg("to"))));
+        assertThat(key.key(msg("to")).equals(key.key(msg("top"))), is(false));
+    }
+
+    @Test
+    public void testLatestMessagePerKey()
+    {
+        YPipeKeyedConflate<Msg> pipe = new YPipeKeyedConflate<>(ConflateKey.prefix(1));
+
+        pipe.write(msg("a1"), false);
+        pipe.write(msg("b1"), false);
+        pipe.write(msg("a2"), false);
+        pipe.write(msg("c1"), false);
+        pipe.write(msg("b2"), false);
+        assertThat(pipe.flush(), is(true));
+
+        //  Keys are delivered in the order of their first message.
+        assertThat(pipe.checkRead(), is(true));
+        assertThat(text(pipe.probe()), is("a2"));
+        assertThat(text(pipe.read()), is("a2"));
+        assertThat(text(pipe.read()), is("b2"));
+        assertThat(text(pipe.read()), is("c1"));
+        assertThat(pipe.read(), nullValue());
+
+        //  Reader was asleep.
+        pipe.write(msg("a3"), false);
+        assertThat(pipe.flush(), is(false));
+        assertThat(text(pipe.read()), is("a3"));
+    }
+
+    @Test
+    public void testMultipartMessages()
+    {
+        YPipeKeyedConflate<Msg> pipe = new YPipeKeyedConflate<>(ConflateKey.frame());
+
+        pipe.write(msg("topic", ZMQ.ZMQ_MORE), true);
+        pipe.write(msg("1", ZMQ.ZMQ_MORE), true);
+        pipe.write(msg("2"), false);
+
+        pipe.write(msg("topic", ZMQ.ZMQ_MORE), true);
+        pipe.write(msg("3"), false);
+
+        //  Incomplete messages are not readable, and can be removed.
+        pipe.write(msg("topic", ZMQ.ZMQ_MORE), true);
+        pipe.write(msg("4", ZMQ.ZMQ_MORE), true);
+        assertThat(text(pipe.unwrite()), is("4"));
+        assertThat(text(pipe.unwrite()), is("topic"));
+        assertThat(pipe.unwrite(), nullValue());
+        pipe.flush();
+
+        assertThat(text(pipe.read()), is("topic"));
+        assertThat(text(pipe.read()), is("3"));
+        assertThat(pipe.read(), nullValue());
+    }
+
+    @Test
+    public void testMessagesWithoutKeyAreKept()
+    {
+        YPipeKeyedConflate<Msg> pipe = new YPipeKeyedConflate<>(msg -> msg.size() > 1 ? null : "key");
+
+        pipe.write(msg("a"), false);
+        pipe.write(msg("bb"), false);
+        pipe.write(msg("cc"), false);
+        pipe.write(msg("d"), false);
+
+        Msg delimiter = new Msg();
+        delimiter.initDelimiter();
+        pipe.write(delimiter, false);
+        pipe.flush();
+
+        assertThat(text(pipe.read()), is("d"));
+        assertThat(text(pipe.read()), is("bb"));
+        assertThat(text(pipe.read()), is("cc"));
+        assertThat(pipe.read().isDelimiter(), is(true));
+        assertThat(pipe.read(), nullValue());
+    }
+
+    @Test
+    public void testCredentialIsNotOvertaken()
+    {
+        YPipeKeyedConflate<Msg> pipe = new YPipeKeyedConflate<>(ConflateKey.prefix(1));
+
+        pipe.write(msg("a1"), false);
+        pipe.write(msg("b1"), false);
+        pipe.write(msg("credential", Msg.CREDENTIAL), false);
+        pipe.write(msg("a2"), false);
+        pipe.write(msg("c1"), false);
+        pipe.write(msg("a3"), false);
+        pipe.flush();
+
+        //  The newer message of a key pending before the credential is read after it,
+        //  and conflated at its new place afterward.
+        assertThat(text(pipe.read()), is("b1"));
+        Msg credential = pipe.read();
+        assertThat(credential.isCredential(), is(true));
+        assertThat(text(credential), is("credential"));
+        assertThat(text(pipe.read()), is("a3"));
+        assertThat(text(pipe.read()), is("c1"));
+        assertThat(pipe.read(), nullValue());
+    }
+
+    @Test
+    public void testSocketsWithConflateKey() throws InterruptedException
+    {
+        Ctx ctx = ZMQ.init(1);
+
+        SocketBase in = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(in, ZMQ.ZMQ_CONFLATE, true);
+        ZMQ.setSocketOption(in, ZMQ.ZMQ_CONFLATE_KEY, ConflateKey.frame());
+
+        boolean rc = ZMQ.bind(in, "tcp://localhost:*");
+        assertThat(rc, is(true));
+
+        SocketBase out = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        String ep = (String) ZMQ.getSocketOptionExt(in, ZMQ.ZMQ_LAST_ENDPOINT);
+        rc = ZMQ.connect(out, ep);
+        assertThat(rc, is(true));
+
+        String[] topics = { "A", "B", "C" };
+        for (int j = 0; j < 20; ++j) {
+            for (String topic : topics) {
+                ZMQ.send(out, topic, ZMQ.ZMQ_SNDMORE);
+                ZMQ.send(out, Integer.toString(j), 0);
+            }
+        }
+        Thread.sleep(200);
+
+        for (String topic : topics) {
+            Msg msg = ZMQ.recv(in, 0);
+            assertThat(text(msg), is(topic));
+            assertThat(msg.hasMore(), is(true));
+            msg = ZMQ.recv(in, 0);
+            assertThat(text(msg), is("19"));
+            assertThat(msg.hasMore(), is(false));
+        }
+        assertThat(ZMQ.recv(in, ZMQ.ZMQ_DONTWAIT), nullValue());
+
+        ZMQ.close(in);
+        ZMQ.close(out);
+        ZMQ.term(ctx);
+    }
+
+    private static Msg msg(String text)
+    {
+        return msg(text, 0);
+    }
+
+    private static Msg msg(String text, int flags)
+    {
+        Msg msg = new Msg(text.getBytes(ZMQ.CHARSET));
+        msg.setFlags(flags);
+        return msg;
+    }
+
+    private static String text(Msg msg)
+    {
+        return new String(msg.data(), ZMQ.CHARSET);
+    }
+}
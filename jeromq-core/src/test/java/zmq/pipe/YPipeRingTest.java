@@ -0,0 +1,196 @@
+package zmq.pipe;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class YPipeRingTest
+{
+    @Test
+    public void testWriteFlushRead()
+    {
+        YPipeRing<Integer> pipe = new YPipeRing<>(4);
+
+        assertThat(pipe.read(), nullValue());
+
+        pipe.write(1, false);
+        pipe.write(2, false);
+        assertThat(pipe.read(), nullValue());
+
+        // reader was asleep
+        assertThat(pipe.flush(), is(false));
+        assertThat(pipe.checkRead(), is(true));
+        assertThat(pipe.probe(), is(1));
+        assertThat(pipe.read(), is(1));
+        assertThat(pipe.read(), is(2));
+        assertThat(pipe.read(), nullValue());
+
+        pipe.write(3, false);
+        assertThat(pipe.flush(), is(false));
+        pipe.write(4, false);
+        assertThat(pipe.flush(), is(true));
+        assertThat(pipe.read(), is(3));
+        assertThat(pipe.read(), is(4));
+    }
+
+    @Test
+    public void testIncomplete()
+    {
+        YPipeRing<Integer> pipe = new YPipeRing<>(4);
+
+        pipe.write(1, true);
+        pipe.write(2, true);
+        pipe.flush();
+        assertThat(pipe.read(), nullValue());
+
+        assertThat(pipe.unwrite(), is(2));
+        assertThat(pipe.unwrite(), is(1));
+        assertThat(pipe.unwrite(), nullValue());
+
+        pipe.write(3, true);
+        pipe.write(4, false);
+        assertThat(pipe.unwrite(), nullValue());
+        pipe.flush();
+        assertThat(pipe.read(), is(3));
+        assertThat(pipe.read(), is(4));
+    }
+
+    @Test
+    public void testBeyondCapacity()
+    {
+        YPipeRing<Integer> pipe = new YPipeRing<>(4);
+
+        for (int idx = 0; idx < 100; ++idx) {
+            pipe.write(idx, false);
+        }
+        pipe.flush();
+        for (int idx = 0; idx < 50; ++idx) {
+            assertThat(pipe.read(), is(idx));
+        }
+        for (int idx = 100; idx < 120; ++idx) {
+            pipe.write(idx, false);
+        }
+        pipe.flush();
+        for (int idx = 50; idx < 120; ++idx) {
+            assertThat(pipe.read(), is(idx));
+        }
+        assertThat(pipe.read(), nullValue());
+    }
+
+    @Test
+    public void testUnwriteAcrossRings()
+    {
+        YPipeRing<Integer> pipe = new YPipeRing<>(4);
+
+        pipe.write(0, false);
+        pipe.write(1, false);
+        for (int idx = 2; idx < 12; ++idx) {
+            pipe.write(idx, true);
+        }
+        for (int idx = 11; idx >= 2; --idx) {
+            assertThat(pipe.unwrite(), is(idx));
+        }
+        assertThat(pipe.unwrite(), nullValue());
+
+        for (int idx = 2; idx < 12; ++idx) {
+            pipe.write(idx, idx < 11);
+        }
+        pipe.flush();
+        for (int idx = 0; idx < 12; ++idx) {
+            assertThat(pipe.read(), is(idx));
+        }
+        assertThat(pipe.read(), nullValue());
+    }
+
+    @Test
+    public void testConcurrentReadWrite() throws Exception
+    {
+        final int count = 1_000_000;
+        final YPipeRing<Integer> pipe = new YPipeRing<>(64);
+
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> reader = service.submit(() -> {
+                long sum = 0;
+                int expected = 0;
+                while (expected < count) {
+                    Integer value = pipe.read();
+                    if (value == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    assertThat(value, is(expected++));
+                    sum += value;
+                }
+                return sum;
+            });
+
+            for (int idx = 0; idx < count; ++idx) {
+                pipe.write(idx, idx % 3 != 0);
+                if (idx % 3 == 0) {
+                    pipe.flush();
+                }
+            }
+            pipe.write(count, false);
+            pipe.flush();
+
+            assertThat(reader.get(), is((long) count * (count - 1) / 2));
+        }
+        finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testInprocPushPull()
+    {
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        assertThat(pull, notNullValue());
+        boolean rc = ZMQ.bind(pull, "inproc://pipe-ring");
+        assertThat(rc, is(true));
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        assertThat(push, notNullValue());
+        rc = ZMQ.setSocketOption(push, ZMQ.ZMQ_PIPE_RING, true);
+        assertThat(rc, is(true));
+        rc = ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 100);
+        assertThat(rc, is(true));
+        rc = ZMQ.connect(push, "inproc://pipe-ring");
+        assertThat(rc, is(true));
+
+        for (int round = 0; round < 10; ++round) {
+            for (int idx = 0; idx < 500; ++idx) {
+                int sent = ZMQ.send(push, "part", ZMQ.ZMQ_SNDMORE);
+                assertThat(sent, is(4));
+                sent = ZMQ.send(push, Integer.toString(idx), 0);
+                assertThat(sent, is(Integer.toString(idx).length()));
+            }
+            for (int idx = 0; idx < 500; ++idx) {
+                Msg msg = ZMQ.recv(pull, 0);
+                assertThat(msg, notNullValue());
+                assertThat(msg.hasMore(), is(true));
+                msg = ZMQ.recv(pull, 0);
+                assertThat(new String(msg.data(), ZMQ.CHARSET), is(Integer.toString(idx)));
+            }
+        }
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+}
@@ -0,0 +1,166 @@
+package zmq.poll;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import org.junit.Test;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class PollSetTest
+{
+    @Test(timeout = 5000)
+    public void testSocketsAndChannels() throws IOException
+    {
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "inproc://pollset");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "inproc://pollset");
+        assertThat(rc, is(true));
+
+        Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+
+        Selector selector = ctx.createSelector();
+        PollSet pollSet = new PollSet(selector);
+        PollItem socketItem = new PollItem(pull, ZMQ.ZMQ_POLLIN);
+        PollItem channelItem = new PollItem(pipe.source(), ZMQ.ZMQ_POLLIN);
+        assertThat(pollSet.add(socketItem), is(true));
+        assertThat(pollSet.add(channelItem), is(true));
+        assertThat(pollSet.size(), is(2));
+
+        assertThat(pollSet.poll(0), is(0));
+        assertThat(pollSet.poll(10), is(0));
+
+        int sent = ZMQ.send(push, "hello", 0);
+        assertThat(sent, is(5));
+        assertThat(pollSet.poll(1000), is(1));
+        assertThat(socketItem.isReadable(), is(true));
+        assertThat(channelItem.isReadable(), is(false));
+        Msg msg = ZMQ.recv(pull, 0);
+        assertThat(msg, notNullValue());
+
+        pipe.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+        assertThat(pollSet.poll(1000), is(1));
+        assertThat(socketItem.isReadable(), is(false));
+        assertThat(channelItem.isReadable(), is(true));
+        pipe.source().read(ByteBuffer.allocate(1));
+        assertThat(pollSet.poll(0), is(0));
+
+        //  The removed items are no longer polled.
+        assertThat(pollSet.remove(channelItem), is(true));
+        assertThat(pollSet.remove(channelItem), is(false));
+        pipe.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+        assertThat(pollSet.poll(0), is(0));
+        assertThat(pipe.source().keyFor(selector) == null, is(true));
+
+        pipe.sink().close();
+        pipe.source().close();
+        ctx.closeSelector(selector);
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testSharedChannel() throws IOException
+    {
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+
+        Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        pipe.sink().configureBlocking(false);
+
+        Selector selector = ctx.createSelector();
+        PollSet readers = new PollSet(selector);
+        PollSet writers = new PollSet(selector);
+        PollItem reader = new PollItem(pipe.sink(), ZMQ.ZMQ_POLLERR);
+        PollItem writer = new PollItem(pipe.sink(), ZMQ.ZMQ_POLLOUT);
+        assertThat(readers.add(reader), is(true));
+        assertThat(writers.add(writer), is(true));
+
+        //  The channel is registered once, for the operations of both items.
+        SelectionKey key = pipe.sink().keyFor(selector);
+        assertThat(key.interestOps(), is(SelectionKey.OP_WRITE));
+
+        assertThat(writers.poll(0), is(1));
+        assertThat(writer.isWritable(), is(true));
+        assertThat(readers.poll(0), is(0));
+        assertThat(reader.isWritable(), is(false));
+
+        assertThat(writers.remove(writer), is(true));
+        assertThat(key.isValid(), is(true));
+        assertThat(key.interestOps(), is(0));
+        readers.clear();
+        assertThat(key.isValid(), is(false));
+
+        //  The canceled key does not prevent the channel from being registered again.
+        assertThat(writers.add(writer), is(true));
+        assertThat(writers.poll(0), is(1));
+        assertThat(writer.isWritable(), is(true));
+
+        pipe.sink().close();
+        pipe.source().close();
+        ctx.closeSelector(selector);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 10000)
+    public void testPollDoesNotAllocate()
+    {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "inproc://allocation");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "inproc://allocation");
+        assertThat(rc, is(true));
+
+        Selector selector = ctx.createSelector();
+        PollSet pollSet = new PollSet(selector);
+        pollSet.add(new PollItem(pull, ZMQ.ZMQ_POLLIN));
+        pollSet.add(new PollItem(push, ZMQ.ZMQ_POLLOUT));
+
+        for (int idx = 0; idx < 20000; ++idx) {
+            assertThat(pollSet.poll(0), is(1));
+        }
+        long thread = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(thread);
+        int events = 0;
+        for (int idx = 0; idx < 10000; ++idx) {
+            events += pollSet.poll(0);
+        }
+        long allocated = bean.getThreadAllocatedBytes(thread) - before;
+        assertThat(events, is(10000));
+
+        //  Less than a byte per poll.
+        assertThat("Allocated " + allocated + " bytes", allocated < 10000, is(true));
+
+        ctx.closeSelector(selector);
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+}
@@ -3,6 +3,11 @@ package zmq.poll;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
@@ -153,4 +158,198 @@ public class PollerBaseTest
         assertThat(timeout, is(0L));
         assertThat(poller.isEmpty(), is(true));
     }
+
+    @Test
+    public void testTimersExpireInOrder()
+    {
+        final PollerBaseTested poller = new PollerBaseTested();
+
+        final List<Integer> expired = new ArrayList<>();
+        PollEvents sink = new PollEvents()
+        {
+            @Override
+            public void timerEvent(int id)
+            {
+                expired.add(id);
+            }
+        };
+
+        //  timeouts spread over several rounds of the wheel
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; id <= 5000; ++id) {
+            ids.add(id);
+        }
+        Collections.shuffle(ids, new Random(42));
+        for (int id : ids) {
+            poller.addTimer(id, sink, id);
+        }
+        assertThat(poller.executeTimers(), is(1L));
+
+        for (long now = 7; now < 5000 + 7; now += 7) {
+            poller.clock(now);
+            long timeout = poller.executeTimers();
+
+            assertThat(expired.size(), is((int) Math.min(now, 5000)));
+            assertThat(timeout, is(now < 5000 ? 1L : 0L));
+        }
+        for (int idx = 0; idx < expired.size(); ++idx) {
+            assertThat(expired.get(idx), is(idx + 1));
+        }
+        assertThat(poller.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testTimerBeyondWheel()
+    {
+        final PollerBaseTested poller = new PollerBaseTested();
+
+        final AtomicInteger counter = new AtomicInteger();
+        PollEvents sink = new PollEvents()
+        {
+            @Override
+            public void timerEvent(int id)
+            {
+                counter.incrementAndGet();
+            }
+        };
+        poller.addTimer(100000, sink, 1);
+        assertThat(poller.executeTimers(), is(100000L));
+
+        //  the slot of the timer is visited before its expiration
+        poller.clock(100000 % 1024);
+        assertThat(poller.executeTimers(), is(100000L - 100000 % 1024));
+        assertThat(counter.get(), is(0));
+
+        poller.clock(99999);
+        assertThat(poller.executeTimers(), is(1L));
+        assertThat(counter.get(), is(0));
+
+        //  late execution
+        poller.clock(200000);
+        assertThat(poller.executeTimers(), is(0L));
+        assertThat(counter.get(), is(1));
+        assertThat(poller.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testTimersBeyondWheel()
+    {
+        final PollerBaseTested poller = new PollerBaseTested();
+
+        final List<Integer> expired = new ArrayList<>();
+        PollEvents sink = new PollEvents()
+        {
+            @Override
+            public void timerEvent(int id)
+            {
+                expired.add(id);
+            }
+        };
+        poller.addTimer(100000, sink, 1);
+        poller.addTimer(100600, sink, 2);
+        poller.addTimer(102000, sink, 3);
+        poller.addTimer(300000, sink, 4);
+        poller.addTimer(300000, sink, 5);
+        poller.cancelTimer(sink, 5);
+        assertThat(poller.executeTimers(), is(100000L));
+
+        //  the far timers of the next round are moved to the wheel with the due one
+        poller.clock(100000);
+        assertThat(poller.executeTimers(), is(600L));
+        assertThat(expired, is(Arrays.asList(1)));
+
+        poller.clock(100600);
+        assertThat(poller.executeTimers(), is(1400L));
+        assertThat(expired, is(Arrays.asList(1, 2)));
+
+        poller.clock(102000);
+        assertThat(poller.executeTimers(), is(198000L));
+        assertThat(expired, is(Arrays.asList(1, 2, 3)));
+
+        poller.clock(300000);
+        assertThat(poller.executeTimers(), is(0L));
+        assertThat(expired, is(Arrays.asList(1, 2, 3, 4)));
+        assertThat(poller.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testReplaceTimer()
+    {
+        final PollerBaseTested poller = new PollerBaseTested();
+
+        final AtomicInteger counter = new AtomicInteger();
+        PollEvents sink = new PollEvents()
+        {
+            @Override
+            public void timerEvent(int id)
+            {
+                counter.incrementAndGet();
+            }
+        };
+        poller.addTimer(100, sink, 1);
+        poller.addTimer(300, sink, 1);
+
+        poller.clock(100);
+        long timeout = poller.executeTimers();
+        assertThat(counter.get(), is(0));
+        assertThat(timeout, is(200L));
+
+        poller.clock(300);
+        timeout = poller.executeTimers();
+        assertThat(counter.get(), is(1));
+        assertThat(timeout, is(0L));
+    }
+
+    @Test
+    public void testCancelNextTimerInTimerEvent()
+    {
+        final PollerBaseTested poller = new PollerBaseTested();
+
+        final List<Integer> expired = new ArrayList<>();
+        PollEvents sink = new PollEvents()
+        {
+            @Override
+            public void timerEvent(int id)
+            {
+                expired.add(id);
+                poller.cancelTimer(this, id + 1);
+            }
+        };
+        poller.addTimer(100, sink, 1);
+        poller.addTimer(100, sink, 2);
+        poller.addTimer(100, sink, 3);
+        poller.addTimer(100, sink, 4);
+
+        poller.clock(100);
+        long timeout = poller.executeTimers();
+        assertThat(expired, is(Arrays.asList(1, 3)));
+        assertThat(timeout, is(0L));
+        assertThat(poller.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testAddDueTimerInTimerEvent()
+    {
+        final PollerBaseTested poller = new PollerBaseTested();
+
+        final List<Integer> expired = new ArrayList<>();
+        PollEvents sink = new PollEvents()
+        {
+            @Override
+            public void timerEvent(int id)
+            {
+                expired.add(id);
+                if (id < 3) {
+                    poller.addTimer(0, this, id + 1);
+                }
+            }
+        };
+        poller.addTimer(100, sink, 1);
+
+        poller.clock(100);
+        long timeout = poller.executeTimers();
+        assertThat(expired, is(Arrays.asList(1, 2, 3)));
+        assertThat(timeout, is(0L));
+        assertThat(poller.isEmpty(), is(true));
+    }
 }
@@ -0,0 +1,181 @@
+package zmq.poll;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class SocketGroupTest
+{
+    @Test(timeout = 30000)
+    public void testThousandsOfSockets()
+    {
+        final int count = 10000;
+        Ctx ctx = ZMQ.createContext();
+        assertThat(ctx, notNullValue());
+        boolean rc = ctx.set(ZMQ.ZMQ_MAX_SOCKETS, count + 1);
+        assertThat(rc, is(true));
+
+        SocketGroup group = new SocketGroup();
+        List<PollItem> items = new ArrayList<>(count);
+        for (int idx = 0; idx < count; ++idx) {
+            SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+            rc = ZMQ.bind(pull, "inproc://group-" + idx);
+            assertThat(rc, is(true));
+            PollItem item = new PollItem(pull, ZMQ.ZMQ_POLLIN);
+            assertThat(group.add(item), is(true));
+            items.add(item);
+        }
+        assertThat(group.add(items.get(0)), is(false));
+        assertThat(group.size(), is(count));
+
+        PollItem[] events = new PollItem[16];
+        assertThat(group.poll(events, 0), is(0));
+
+        //  Only the sockets receiving a message are ready.
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        List<Integer> receivers = Arrays.asList(7, 4242, 9999);
+        for (int idx : receivers) {
+            rc = ZMQ.connect(push, "inproc://group-" + idx);
+            assertThat(rc, is(true));
+        }
+        for (int idx = 0; idx < receivers.size(); ++idx) {
+            int sent = ZMQ.send(push, "hello", 0);
+            assertThat(sent, is(5));
+        }
+
+        Set<PollItem> ready = new HashSet<>();
+        while (ready.size() < receivers.size()) {
+            int nevents = group.poll(events, 1000);
+            assertThat(nevents > 0, is(true));
+            for (int idx = 0; idx < nevents; ++idx) {
+                assertThat(events[idx].isReadable(), is(true));
+                ready.add(events[idx]);
+            }
+        }
+        Set<PollItem> expected = new HashSet<>();
+        for (int idx : receivers) {
+            expected.add(items.get(idx));
+        }
+        assertThat(ready, is(expected));
+
+        for (PollItem item : ready) {
+            Msg msg = ZMQ.recv(item.getSocket(), 0);
+            assertThat(msg, notNullValue());
+        }
+        assertThat(group.poll(events, 0), is(0));
+
+        ZMQ.close(push);
+        for (PollItem item : items) {
+            assertThat(group.remove(item), is(true));
+            ZMQ.close(item.getSocket());
+        }
+        assertThat(group.size(), is(0));
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testReadyUntilConsumed()
+    {
+        Ctx ctx = ZMQ.createContext();
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "inproc://consumed");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "inproc://consumed");
+        assertThat(rc, is(true));
+
+        SocketGroup group = new SocketGroup();
+        PollItem item = new PollItem(pull, ZMQ.ZMQ_POLLIN);
+        group.add(item);
+
+        ZMQ.send(push, "one", 0);
+        ZMQ.send(push, "two", 0);
+
+        PollItem[] events = new PollItem[1];
+        assertThat(group.poll(events, 1000), is(1));
+        assertThat(events[0], is(item));
+        assertThat(ZMQ.recv(pull, 0).size(), is(3));
+
+        //  Without any new command, the socket is still ready.
+        assertThat(group.poll(events, 0), is(1));
+        assertThat(ZMQ.recv(pull, 0).size(), is(3));
+        assertThat(group.poll(events, 0), is(0));
+
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 5000)
+    public void testWakeUp() throws InterruptedException
+    {
+        wakeUp(ZMQ.createContext());
+    }
+
+    @Test(timeout = 5000)
+    public void testWakeUpIoInline() throws InterruptedException
+    {
+        //  The poll runs the I/O, until the sender does.
+        Ctx ctx = ZMQ.createContext();
+        ctx.set(ZMQ.ZMQ_IO_INLINE, 1);
+        wakeUp(ctx);
+    }
+
+    private void wakeUp(Ctx ctx) throws InterruptedException
+    {
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String addr = (String) ZMQ.getSocketOptionExt(pull, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        SocketGroup group = new SocketGroup();
+        PollItem item = new PollItem(pull, ZMQ.ZMQ_POLLIN);
+        group.add(item);
+        PollItem[] events = new PollItem[1];
+        assertThat(group.poll(events, 10), is(0));
+
+        Thread sender = new Thread(() -> {
+            SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+            ZMQ.connect(push, addr);
+            ZMQ.msleep(50);
+            ZMQ.send(push, "hello", 0);
+            ZMQ.close(push);
+        });
+        sender.start();
+
+        assertThat(group.poll(events, -1), is(1));
+        assertThat(ZMQ.recv(pull, 0).size(), is(5));
+        sender.join();
+
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test
+    public void testThreadSafeSocket()
+    {
+        Ctx ctx = ZMQ.createContext();
+        SocketBase client = ZMQ.socket(ctx, ZMQ.ZMQ_CLIENT);
+
+        SocketGroup group = new SocketGroup();
+        Assert.assertThrows(IllegalArgumentException.class, () -> group.add(new PollItem(client, ZMQ.ZMQ_POLLIN)));
+        assertThat(group.size(), is(0));
+
+        ZMQ.close(client);
+        ZMQ.term(ctx);
+    }
+}
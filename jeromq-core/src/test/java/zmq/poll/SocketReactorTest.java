@@ -0,0 +1,171 @@
+package zmq.poll;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZError;
+import zmq.ZMQ;
+
+public class SocketReactorTest
+{
+    private static final int COUNT = 10000;
+
+    //  Checks that the messages arrive in order, counting down when all have.
+    private static class Receiver implements SocketReactor.Handler
+    {
+        private final AtomicInteger  received = new AtomicInteger();
+        private final AtomicInteger  batches  = new AtomicInteger();
+        private final CountDownLatch done     = new CountDownLatch(1);
+        private volatile Thread      thread;
+
+        @Override
+        public void handle(SocketBase socket, List<Msg> messages)
+        {
+            thread = Thread.currentThread();
+            batches.incrementAndGet();
+            for (Msg msg : messages) {
+                assertThat(msg.getInt(0), is(received.getAndIncrement()));
+            }
+            if (received.get() == COUNT) {
+                done.countDown();
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testHandlerOnIoThread() throws Exception
+    {
+        Ctx ctx = ZMQ.createContext();
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "tcp://127.0.0.1:*");
+        assertThat(rc, is(true));
+        String addr = (String) ZMQ.getSocketOptionExt(pull, ZMQ.ZMQ_LAST_ENDPOINT);
+
+        Receiver receiver = new Receiver();
+        SocketReactor reactor = new SocketReactor(pull, receiver);
+        assertThat(reactor.start(), is(true));
+
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, addr);
+        assertThat(rc, is(true));
+        send(push, COUNT);
+
+        assertThat(receiver.done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(receiver.thread.getName().startsWith("iothread"), is(true));
+        assertThat(receiver.batches.get() < COUNT, is(true));
+
+        reactor.stop();
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 10000)
+    public void testHandlerOnExecutor() throws Exception
+    {
+        Ctx ctx = ZMQ.createContext();
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        boolean rc = ZMQ.bind(pull, "inproc://reactor");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        rc = ZMQ.connect(push, "inproc://reactor");
+        assertThat(rc, is(true));
+
+        //  Messages received before the start are delivered too.
+        send(push, 10);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "handler"));
+        Receiver receiver = new Receiver();
+        SocketReactor reactor = new SocketReactor(pull, receiver, executor, 16);
+        assertThat(reactor.start(), is(true));
+
+        send(push, COUNT - 10, 10);
+
+        assertThat(receiver.done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(receiver.thread.getName(), is("handler"));
+
+        reactor.stop();
+        executor.shutdown();
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    @Test(timeout = 10000)
+    public void testBackPressure() throws Exception
+    {
+        Ctx ctx = ZMQ.createContext();
+        SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+        ZMQ.setSocketOption(pull, ZMQ.ZMQ_RCVHWM, 10);
+        boolean rc = ZMQ.bind(pull, "inproc://backpressure");
+        assertThat(rc, is(true));
+        SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+        ZMQ.setSocketOption(push, ZMQ.ZMQ_SNDHWM, 10);
+        rc = ZMQ.connect(push, "inproc://backpressure");
+        assertThat(rc, is(true));
+
+        //  The handler is stuck on the first message.
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger received = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        SocketReactor reactor = new SocketReactor(pull, (socket, messages) -> {
+            blocked.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.addAndGet(messages.size());
+        }, executor, 1);
+        assertThat(reactor.start(), is(true));
+
+        int sent = 0;
+        while (ZMQ.send(push, new Msg(4), ZMQ.ZMQ_DONTWAIT) == 4) {
+            ++sent;
+        }
+        assertThat(push.errno(), is(ZError.EAGAIN));
+        assertThat(blocked.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(sent < 100, is(true));
+
+        release.countDown();
+        while (received.get() < sent) {
+            ZMQ.msleep(10);
+        }
+
+        reactor.stop();
+        executor.shutdown();
+        ZMQ.close(push);
+        ZMQ.close(pull);
+        ZMQ.term(ctx);
+    }
+
+    private static void send(SocketBase socket, int count)
+    {
+        send(socket, count, 0);
+    }
+
+    private static void send(SocketBase socket, int count, int first)
+    {
+        for (int idx = first; idx < first + count; ++idx) {
+            byte[] data = new byte[4];
+            ByteBuffer.wrap(data).putInt(idx);
+            int rc = ZMQ.send(socket, new Msg(data), 0);
+            assertThat(rc, is(4));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package zmq.socket.pubsub;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -145,4 +148,38 @@ public class DistTest
         // second pipe is not a matching one
         assertThat(dist.matching(), is(1));
     }
+
+    @Test
+    public void testSharedPayloadReleasedByLastOwner()
+    {
+        dist.attach(second);
+        // simulate HWM
+        second.write(new Msg());
+
+        AtomicInteger released = new AtomicInteger();
+        Msg msg = new Msg(ByteBuffer.allocate(3), released::incrementAndGet);
+        dist.sendToAll(msg);
+
+        // second pipe did not get the message and gave back its reference
+        assertThat(msg.isShared(), is(true));
+        assertThat(released.get(), is(0));
+
+        Msg received = second.read();
+        assertThat(received, is(msg));
+        received.release();
+        assertThat(released.get(), is(1));
+    }
+
+    @Test
+    public void testDroppedPayloadReleased()
+    {
+        dist.attach(second);
+
+        AtomicInteger released = new AtomicInteger();
+        Msg msg = new Msg(ByteBuffer.allocate(3), released::incrementAndGet);
+        dist.sendToMatching(msg);
+
+        assertThat(msg.isShared(), is(false));
+        assertThat(released.get(), is(1));
+    }
 }
@@ -0,0 +1,187 @@
+package zmq.msg;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import zmq.Msg;
+import zmq.util.Utils;
+
+/**
+ * Allocator of messages in off-heap slabs, managed by the foreign memory API.
+ * <p>
+ * Payloads are carved out of large slabs, sorted by power-of-two size classes,
+ * and come back to the allocator when {@link Msg#release()} is called,
+ * either by the library once a message has been sent, or by the application once it is done with a received message.
+ * <p>
+ * The slabs are freed deterministically when the allocator is closed.
+ * The messages too large for a size class, or allocated once the capacity of the allocator has been reached,
+ * are held in their own memory, reclaimed by the garbage collector once the message is not reachable anymore,
+ * so that a message never released by the application does not leak.
+ * <p>
+ * The batch buffers of the engines can be allocated the same way.
+ */
+public class MsgAllocatorArena implements OffHeapMsgAllocator
+{
+    private static final int ALIGNMENT = 64;
+
+    // a block of a slab, also used as the release hook of the messages built on top of it
+    private final class Block implements Runnable
+    {
+        private final MemorySegment segment;
+        private final int           sizeClass;
+
+        private Block(MemorySegment segment, int sizeClass)
+        {
+            this.segment = segment;
+            this.sizeClass = sizeClass;
+        }
+
+        @Override
+        public void run()
+        {
+            free(this);
+        }
+    }
+
+    private final int     minShift;
+    private final int     maxShift;
+    private final long    slabSize;
+    private final long    capacity;
+    private final boolean batches;
+
+    private final Arena              arena = Arena.ofShared();
+    private final Deque<Block>[]     blocks;
+    private final Object             lock  = new Object();
+
+    // the slab being carved, and the offset of its free part
+    private MemorySegment slab;
+    private long          offset;
+    // the size of all the slabs allocated so far
+    private long          allocated;
+    private boolean       closed;
+
+    public MsgAllocatorArena()
+    {
+        this(64, 1024 * 1024, 64L * 1024 * 1024, true);
+    }
+
+    /**
+     * @param minSize the size of the smallest size class. Rounded up to the next power of two.
+     * @param maxSize the size of the largest size class. Rounded up to the next power of two.
+     * @param capacity the maximum number of bytes held in slabs.
+     * @param batches true to allocate the batch buffers of the engines in the slabs too.
+     */
+    @SuppressWarnings("unchecked")
+    public MsgAllocatorArena(int minSize, int maxSize, long capacity, boolean batches)
+    {
+        Utils.checkArgument(minSize > 0, "Minimum size shall be strictly positive");
+        Utils.checkArgument(maxSize >= minSize, "Maximum size shall be greater than minimum size");
+        Utils.checkArgument(maxSize <= 1 << 30, "Maximum size shall be at most 1GB");
+        Utils.checkArgument(capacity >= 0, "Capacity shall be positive");
+
+        this.minShift = Math.max(shift(minSize), shift(ALIGNMENT));
+        this.maxShift = Math.max(shift(maxSize), minShift);
+        this.slabSize = Math.max(1L << maxShift, 4L * 1024 * 1024);
+        this.capacity = capacity;
+        this.batches = batches;
+
+        blocks = new Deque[maxShift - minShift + 1];
+        for (int idx = 0; idx < blocks.length; ++idx) {
+            blocks[idx] = new ArrayDeque<>();
+        }
+    }
+
+    @Override
+    public Msg allocate(int size)
+    {
+        if (size == 0) {
+            return new Msg();
+        }
+        final int shift = shift(size);
+        Block block = null;
+        if (shift <= maxShift) {
+            block = poll(Math.max(shift, minShift) - minShift);
+        }
+        if (block == null) {
+            return dedicated(size);
+        }
+        return new Msg(block.segment.asSlice(0, size).asByteBuffer(), block);
+    }
+
+    @Override
+    public Msg allocateBatch(int size)
+    {
+        if (batches) {
+            return allocate(size);
+        }
+        return OffHeapMsgAllocator.super.allocateBatch(size);
+    }
+
+    /**
+     * Frees all the slabs. The messages allocated in the slabs cannot be used anymore.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Deque<Block> free : blocks) {
+                free.clear();
+            }
+            slab = null;
+        }
+        arena.close();
+    }
+
+    private Block poll(int sizeClass)
+    {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Allocator is closed");
+            }
+            Block block = blocks[sizeClass].pollFirst();
+            if (block != null) {
+                return block;
+            }
+            final long size = 1L << (sizeClass + minShift);
+            if (slab == null || offset + size > slab.byteSize()) {
+                if (allocated + slabSize > capacity) {
+                    return null;
+                }
+                slab = arena.allocate(slabSize, ALIGNMENT);
+                offset = 0;
+                allocated += slabSize;
+            }
+            block = new Block(slab.asSlice(offset, size), sizeClass);
+            offset += size;
+            return block;
+        }
+    }
+
+    private void free(Block block)
+    {
+        synchronized (lock) {
+            if (!closed) {
+                blocks[block.sizeClass].offerFirst(block);
+            }
+        }
+    }
+
+    // a message held in its own memory, reclaimed by the garbage collector
+    private static Msg dedicated(int size)
+    {
+        final MemorySegment segment = Arena.ofAuto().allocate(size, ALIGNMENT);
+        return new Msg(segment.asByteBuffer());
+    }
+
+    // the exponent of the smallest power of two greater or equal to the given size
+    private static int shift(int size)
+    {
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
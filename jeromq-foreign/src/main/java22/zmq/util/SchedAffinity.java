@@ -0,0 +1,77 @@
+package zmq.util;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.BitSet;
+
+/**
+ * Pins threads to a set of CPUs on Linux, by calling sched_setaffinity with the foreign function API.
+ * <p>
+ * Given to {@link zmq.Ctx#setThreadAffinity(ThreadAffinity)}, the I/O and reaper threads of the context
+ * pin themselves to the CPUs when they start.
+ * A thread started afterward by one of these threads inherits its CPUs, as usual on Linux.
+ * <p>
+ * Applications built for older runtimes get it with {@link ThreadAffinity#sched(BitSet)}.
+ */
+public class SchedAffinity implements ThreadAffinity
+{
+    // int sched_setaffinity(pid_t pid, size_t cpusetsize, const cpu_set_t *mask)
+    private static final MethodHandle SCHED_SETAFFINITY = lookup();
+
+    private final long[] mask;
+
+    /**
+     * @param cpus the indexes of the CPUs the threads are allowed to run on.
+     */
+    public SchedAffinity(BitSet cpus)
+    {
+        if (SCHED_SETAFFINITY == null) {
+            throw new UnsupportedOperationException("CPU affinity requires Linux");
+        }
+        if (cpus.isEmpty()) {
+            throw new IllegalArgumentException("No CPU to run on");
+        }
+        // cpu_set_t is an array of unsigned longs, with the lowest CPU in the lowest bit of the first one
+        mask = cpus.toLongArray();
+    }
+
+    @Override
+    public void pin(String name)
+    {
+        int rc;
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment set = arena.allocateFrom(ValueLayout.JAVA_LONG, mask);
+            // pid 0 is the calling thread
+            rc = (int) SCHED_SETAFFINITY.invokeExact(0, set.byteSize(), set);
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("Unable to pin " + name, e);
+        }
+        if (rc != 0) {
+            throw new IllegalStateException("Unable to pin " + name + " to CPUs " + BitSet.valueOf(mask));
+        }
+    }
+
+    private static MethodHandle lookup()
+    {
+        if (!System.getProperty("os.name", "").startsWith("Linux")) {
+            return null;
+        }
+        Linker linker = Linker.nativeLinker();
+        FunctionDescriptor descriptor = FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT,
+                                                              ValueLayout.JAVA_LONG, ValueLayout.ADDRESS);
+        return linker.defaultLookup().find("sched_setaffinity")
+                .map(address -> linker.downcallHandle(address, descriptor))
+                .orElse(null);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SchedAffinity" + BitSet.valueOf(mask);
+    }
+}
@@ -0,0 +1,157 @@
+package zmq.msg;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import zmq.Ctx;
+import zmq.Msg;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class MsgAllocatorArenaTest
+{
+    @Test
+    public void testAllocateSizes()
+    {
+        try (MsgAllocatorArena allocator = new MsgAllocatorArena(64, 1024, 4 * 1024 * 1024, true)) {
+            Msg msg = allocator.allocate(0);
+            assertThat(msg.size(), is(0));
+            assertThat(msg.isReleasable(), is(false));
+
+            msg = allocator.allocate(1);
+            assertThat(msg.size(), is(1));
+            assertThat(msg.buf().isDirect(), is(true));
+            assertThat(msg.isReleasable(), is(true));
+
+            msg = allocator.allocate(2000);
+            assertThat(msg.size(), is(2000));
+            assertThat(msg.isReleasable(), is(true));
+            msg.release();
+        }
+    }
+
+    @Test
+    public void testReuseInSameSizeClass()
+    {
+        try (MsgAllocatorArena allocator = new MsgAllocatorArena(64, 1024, 4 * 1024 * 1024, true)) {
+            Msg msg = allocator.allocate(100);
+            msg.put("abc".getBytes(ZMQ.CHARSET));
+            msg.release();
+
+            Msg other = allocator.allocate(128);
+            assertThat(other.size(), is(128));
+            assertThat(content(other, 3), is("abc"));
+        }
+    }
+
+    @Test
+    public void testBeyondCapacity()
+    {
+        try (MsgAllocatorArena allocator = new MsgAllocatorArena(64, 1024, 0, true)) {
+            Msg msg = allocator.allocate(100);
+            assertThat(msg.size(), is(100));
+            assertThat(msg.isReleasable(), is(false));
+            msg.release();
+        }
+    }
+
+    @Test
+    public void testDedicatedMessageOutlivesAllocator()
+    {
+        Msg msg;
+        try (MsgAllocatorArena allocator = new MsgAllocatorArena(64, 1024, 0, true)) {
+            msg = allocator.allocate(2000);
+            msg.buf().put(1999, (byte) 42);
+        }
+        assertThat(msg.get(1999), is((byte) 42));
+    }
+
+    @Test
+    public void testDiscovery()
+    {
+        try (OffHeapMsgAllocator allocator = OffHeapMsgAllocator.arena().get()) {
+            assertThat(allocator, instanceOf(MsgAllocatorArena.class));
+            Msg msg = allocator.allocate(10);
+            assertThat(msg.isReleasable(), is(true));
+            msg.release();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed()
+    {
+        MsgAllocatorArena allocator = new MsgAllocatorArena();
+        allocator.close();
+        allocator.allocate(10);
+    }
+
+    @Test
+    public void testBatches()
+    {
+        try (MsgAllocatorArena allocator = new MsgAllocatorArena(64, 1024 * 1024, 4 * 1024 * 1024, false)) {
+            Msg msg = allocator.allocateBatch(8192);
+            assertThat(msg.isReleasable(), is(false));
+        }
+        try (MsgAllocatorArena allocator = new MsgAllocatorArena(64, 1024 * 1024, 4 * 1024 * 1024, true)) {
+            Msg msg = allocator.allocateBatch(8192);
+            assertThat(msg.isReleasable(), is(true));
+            assertThat(msg.buf().capacity(), is(8192));
+        }
+    }
+
+    @Test
+    public void testSendReceiveOverTcp()
+    {
+        try (MsgAllocatorArena allocator = new MsgAllocatorArena()) {
+            Ctx ctx = ZMQ.init(1);
+            assertThat(ctx, notNullValue());
+
+            SocketBase pull = ZMQ.socket(ctx, ZMQ.ZMQ_PULL);
+            assertThat(pull, notNullValue());
+            boolean rc = ZMQ.setSocketOption(pull, ZMQ.ZMQ_MSG_ALLOCATOR, allocator);
+            assertThat(rc, is(true));
+            rc = ZMQ.bind(pull, "tcp://127.0.0.1:*");
+            assertThat(rc, is(true));
+            String host = (String) ZMQ.getSocketOptionExt(pull, ZMQ.ZMQ_LAST_ENDPOINT);
+
+            SocketBase push = ZMQ.socket(ctx, ZMQ.ZMQ_PUSH);
+            assertThat(push, notNullValue());
+            rc = ZMQ.setSocketOption(push, ZMQ.ZMQ_MSG_ALLOCATOR, allocator);
+            assertThat(rc, is(true));
+            rc = ZMQ.connect(push, host);
+            assertThat(rc, is(true));
+
+            for (int idx = 0; idx < 100; ++idx) {
+                String content = "message " + idx;
+                Msg msg = allocator.allocate(content.length());
+                msg.put(content.getBytes(ZMQ.CHARSET));
+                int sent = ZMQ.send(push, msg, 0);
+                assertThat(sent, is(content.length()));
+
+                Msg received = ZMQ.recv(pull, 0);
+                assertThat(received, notNullValue());
+                assertThat(received.isReleasable(), is(true));
+                assertThat(new String(received.data(), ZMQ.CHARSET), is(content));
+                received.release();
+            }
+
+            ZMQ.close(push);
+            ZMQ.close(pull);
+            ZMQ.term(ctx);
+        }
+    }
+
+    private static String content(Msg msg, int length)
+    {
+        ByteBuffer buf = msg.buf();
+        byte[] data = new byte[length];
+        buf.get(data);
+        return new String(data, ZMQ.CHARSET);
+    }
+}
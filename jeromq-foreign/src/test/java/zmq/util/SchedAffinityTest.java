@@ -0,0 +1,102 @@
+package zmq.util;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import zmq.Ctx;
+import zmq.SocketBase;
+import zmq.ZMQ;
+
+public class SchedAffinityTest
+{
+    @Test
+    public void testPinThread() throws Exception
+    {
+        assumeTrue(System.getProperty("os.name").startsWith("Linux"));
+
+        BitSet cpus = new BitSet();
+        cpus.set(0);
+        SchedAffinity affinity = new SchedAffinity(cpus);
+
+        // pins a thread of its own, not the one running the tests
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        String allowed = service.submit(() -> {
+            affinity.pin("test");
+            return allowedCpus();
+        }).get();
+        service.shutdown();
+
+        assertThat(allowed, is("0"));
+    }
+
+    @Test
+    public void testDiscovery()
+    {
+        assumeTrue(System.getProperty("os.name").startsWith("Linux"));
+
+        BitSet cpus = new BitSet();
+        cpus.set(0);
+        assertThat(ThreadAffinity.sched(cpus).get(), instanceOf(SchedAffinity.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoCpu()
+    {
+        assumeTrue(System.getProperty("os.name").startsWith("Linux"));
+
+        new SchedAffinity(new BitSet());
+    }
+
+    @Test
+    public void testPinContextThreads()
+    {
+        assumeTrue(System.getProperty("os.name").startsWith("Linux"));
+
+        BitSet cpus = new BitSet();
+        cpus.set(0);
+        SchedAffinity affinity = new SchedAffinity(cpus);
+
+        List<String> pinned = new CopyOnWriteArrayList<>();
+        Ctx ctx = ZMQ.createContext();
+        ctx.setThreadAffinity(name -> {
+            affinity.pin(name);
+            pinned.add(name + ":" + allowedCpus());
+        });
+
+        SocketBase socket = ZMQ.socket(ctx, ZMQ.ZMQ_PAIR);
+        ZMQ.close(socket);
+        ZMQ.term(ctx);
+
+        Collections.sort(pinned);
+        assertThat(pinned.toString(), is("[iothread-2:0, reaper-1:0]"));
+    }
+
+    private static String allowedCpus()
+    {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/thread-self/status"))) {
+                if (line.startsWith("Cpus_allowed_list:")) {
+                    return line.substring("Cpus_allowed_list:".length()).trim();
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return null;
+    }
+}